@@ -26,8 +26,16 @@ package com.synopsys.arc.jenkinsci.plugins.extratoolinstallers.installers;
 import static com.synopsys.arc.jenkinsci.plugins.extratoolinstallers.utils.EnvStringParseHelper.checkStringForMacro;
 import static com.synopsys.arc.jenkinsci.plugins.extratoolinstallers.utils.EnvStringParseHelper.substituteNodeVariables;
 import com.synopsys.arc.jenkinsci.plugins.extratoolinstallers.utils.ExtraToolInstallersException;
+import hudson.FilePath;
+import hudson.Launcher;
+import hudson.Proc;
+import hudson.Util;
 import hudson.model.Node;
+import hudson.model.TaskListener;
 import hudson.tools.ToolInstaller;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Abstract class, which encapsulates common methods for installers.
@@ -35,6 +43,23 @@ import hudson.tools.ToolInstaller;
  * @since 0.2.1
  */
 public abstract class AbstractExtraToolInstaller extends ToolInstaller {
+    /**
+     * Name of the file, within the installation folder, that records a hash of
+     * what was last installed there successfully.
+     */
+    protected static final String INSTALLATION_MARKER_FILENAME = ".installationHash";
+
+    /**
+     * How often we check if a command with a timeout has finished.
+     */
+    private static final long COMMAND_POLL_MILLIS = 1000L;
+
+    /**
+     * How much of a command's output we keep, once it has produced more than
+     * it is allowed to log, so we can show how it ended.
+     */
+    static final int OUTPUT_TAIL_BYTES = 16 * 1024;
+
     private boolean failOnSubstitution;
     private final String toolHome;
 
@@ -75,4 +100,162 @@ public abstract class AbstractExtraToolInstaller extends ToolInstaller {
         }
         return res;
     }
+
+    /**
+     * Calculates a hash of everything that determines what an installation
+     * does, for use with {@link #isInstallationUpToDate(FilePath, FilePath, String)}.
+     * @param inputs e.g. the command that's run and the (substituted) tool home.
+     * @return A hash that changes if any of the inputs change.
+     */
+    protected static String calcInstallationHash(String... inputs) {
+        final StringBuilder s = new StringBuilder();
+        for (String input : inputs) {
+            s.append(Util.fixNull(input)).append('\0');
+        }
+        return Util.getDigestOf(s.toString());
+    }
+
+    /**
+     * Checks if an installation with the same hash has already succeeded and
+     * the tool home is still there.
+     * @param dir The installation folder
+     * @param home The tool home, within (or relative to) the installation folder
+     * @param hash From {@link #calcInstallationHash(String...)}
+     * @return true if the installation need not be repeated.
+     * @throws IOException Failed to read the marker file
+     * @throws InterruptedException Interrupted
+     */
+    protected static boolean isInstallationUpToDate(FilePath dir, FilePath home, String hash)
+            throws IOException, InterruptedException {
+        final FilePath marker = dir.child(INSTALLATION_MARKER_FILENAME);
+        return marker.exists() && hash.equals(marker.readToString().trim()) && home.exists();
+    }
+
+    /**
+     * Records that an installation succeeded.
+     * @param dir The installation folder
+     * @param hash From {@link #calcInstallationHash(String...)}
+     * @throws IOException Failed to write the marker file
+     * @throws InterruptedException Interrupted
+     */
+    protected static void recordInstallation(FilePath dir, String hash) throws IOException, InterruptedException {
+        dir.child(INSTALLATION_MARKER_FILENAME).write(hash, StandardCharsets.UTF_8.name());
+    }
+
+    /**
+     * Removes any record of a previous installation, e.g. before starting a
+     * new one, so that a failed installation isn't mistaken for a good one.
+     * @param dir The installation folder
+     * @throws IOException Failed to delete the marker file
+     * @throws InterruptedException Interrupted
+     */
+    protected static void forgetInstallation(FilePath dir) throws IOException, InterruptedException {
+        final FilePath marker = dir.child(INSTALLATION_MARKER_FILENAME);
+        if (marker.exists()) {
+            marker.delete();
+        }
+    }
+
+    /**
+     * Runs an installation command, unless an identical installation has
+     * already succeeded (and, optionally, still passes a check).
+     * @param dir The installation folder
+     * @param home The tool home
+     * @param hash From {@link #calcInstallationHash(String...)}
+     * @param skipIfInstalled If false, the command is always run.
+     * @param command The installation command
+     * @param checkCommandOrNull Command that exits with zero if an up-to-date
+     *        installation is still good, or null to trust it without checking.
+     * @param log Where to report what we did
+     * @param runner Runs the commands
+     * @throws IOException The installation command failed
+     * @throws InterruptedException Interrupted
+     */
+    protected static void installUnlessUpToDate(FilePath dir, FilePath home, String hash, boolean skipIfInstalled,
+            String command, String checkCommandOrNull, TaskListener log, CommandRunner runner)
+            throws IOException, InterruptedException {
+        if (skipIfInstalled && isInstallationUpToDate(dir, home, hash)) {
+            if (checkCommandOrNull == null) {
+                log.getLogger().println(Messages.AbstractExtraToolInstaller_already_installed(home.getRemote()));
+                return;
+            }
+            int r = runner.run(checkCommandOrNull);
+            if (r == 0) {
+                log.getLogger().println(Messages.AbstractExtraToolInstaller_check_passed(home.getRemote()));
+                return;
+            }
+            log.getLogger().println(Messages.AbstractExtraToolInstaller_check_failed(r));
+        }
+        if (skipIfInstalled) {
+            forgetInstallation(dir);
+        }
+        int r = runner.run(command);
+        if (r != 0) {
+            throw new IOException("Command returned status " + r);
+        }
+        if (skipIfInstalled) {
+            recordInstallation(dir, hash);
+        }
+    }
+
+    /**
+     * Runs a command on a node, sending its output to the log, and kills it
+     * (and anything it started) if it takes too long.
+     * Output beyond <code>maxOutputBytes</code> is not logged, except for the
+     * last {@link #OUTPUT_TAIL_BYTES} bytes, which are logged once the command
+     * has finished (or been killed).
+     * @param node Where to run it
+     * @param dir The working directory
+     * @param log Where its output goes
+     * @param cmd The command line
+     * @param timeoutSeconds How long it may run for. Zero or less means forever.
+     * @param maxOutputBytes How much output may be logged. Zero or less means no limit.
+     * @return The command's exit status
+     * @throws ExtraToolInstallersException The command ran out of time
+     * @throws IOException The command could not be run
+     * @throws InterruptedException Interrupted (the command is killed)
+     */
+    protected int runCommand(Node node, FilePath dir, TaskListener log, String[] cmd, int timeoutSeconds,
+            long maxOutputBytes) throws IOException, InterruptedException {
+        final CappedOutputStream cappedOutput = maxOutputBytes > 0L
+                ? new CappedOutputStream(log.getLogger(), maxOutputBytes, OUTPUT_TAIL_BYTES) : null;
+        final Launcher.ProcStarter starter = node.createLauncher(log).launch().cmds(cmd).pwd(dir);
+        final Proc proc = (cappedOutput == null ? starter.stdout(log) : starter.stdout(cappedOutput)).start();
+        try {
+            if (timeoutSeconds > 0) {
+                final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+                while (proc.isAlive()) {
+                    final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remainingMillis <= 0L) {
+                        throw new ExtraToolInstallersException(this,
+                                Messages.AbstractExtraToolInstaller_timed_out(timeoutSeconds));
+                    }
+                    Thread.sleep(Math.min(remainingMillis, COMMAND_POLL_MILLIS));
+                }
+            }
+            return proc.join();
+        } finally {
+            if (proc.isAlive()) {
+                proc.kill(); // this kills the whole process tree
+            }
+            if (cappedOutput != null) {
+                cappedOutput.finish();
+            }
+        }
+    }
+
+    /**
+     * Something that can run a script.
+     */
+    @FunctionalInterface
+    protected interface CommandRunner {
+        /**
+         * Runs the script.
+         * @param script The contents of the script
+         * @return Its exit status
+         * @throws IOException The script could not be run
+         * @throws InterruptedException Interrupted
+         */
+        int run(String script) throws IOException, InterruptedException;
+    }
 }
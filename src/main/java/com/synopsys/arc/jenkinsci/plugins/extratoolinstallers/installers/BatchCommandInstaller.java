@@ -26,6 +26,7 @@ package com.synopsys.arc.jenkinsci.plugins.extratoolinstallers.installers;
 
 import hudson.Extension;
 import hudson.FilePath;
+import hudson.Util;
 import hudson.model.Node;
 import hudson.model.TaskListener;
 import hudson.tasks.CommandInterpreter;
@@ -34,6 +35,7 @@ import hudson.tools.ToolInstallerDescriptor;
 import hudson.util.FormValidation;
 import java.io.IOException;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
 /**
@@ -48,6 +50,28 @@ public class BatchCommandInstaller extends AbstractExtraToolInstaller {
      */
     private final String command;
 
+    /**
+     * If true, the command is not run again once it has succeeded, unless it
+     * (or the tool home) changes.
+     */
+    private boolean skipIfInstalled;
+
+    /**
+     * Optional command that verifies an existing installation.
+     */
+    private String checkCommand;
+
+    /**
+     * How long the command may run for, in seconds. Zero means forever.
+     */
+    private int timeoutSeconds;
+
+    /**
+     * How much of the command's output may be logged, in bytes. Zero means no
+     * limit.
+     */
+    private long maxOutputBytes;
+
     @DataBoundConstructor
     public BatchCommandInstaller(String label, String command, String toolHome, boolean failOnSubstitution) {
         super(label, toolHome, failOnSubstitution);
@@ -71,23 +95,90 @@ public class BatchCommandInstaller extends AbstractExtraToolInstaller {
         return command;
     }
 
+    public boolean isSkipIfInstalled() {
+        return skipIfInstalled;
+    }
+
+    /**
+     * Sets {@link #isSkipIfInstalled()}.
+     * @param skipIfInstalled If true, a successful installation is not repeated
+     *        unless the command or tool home changes.
+     */
+    @DataBoundSetter
+    public void setSkipIfInstalled(boolean skipIfInstalled) {
+        this.skipIfInstalled = skipIfInstalled;
+    }
+
+    public String getCheckCommand() {
+        return checkCommand;
+    }
+
+    /**
+     * Sets {@link #getCheckCommand()}.
+     * @param checkCommand Batch command that exits with zero if an existing
+     *        installation is still good, or null to trust the existing
+     *        installation without checking.
+     */
+    @DataBoundSetter
+    public void setCheckCommand(String checkCommand) {
+        final String fixed = Util.fixEmptyAndTrim(checkCommand);
+        this.checkCommand = fixed == null ? null : fixCrLf(fixed);
+    }
+
+    public int getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    /**
+     * Sets {@link #getTimeoutSeconds()}.
+     * @param timeoutSeconds How long the command (or check) may run for before
+     *        it, and anything it started, is killed. Zero or less means no limit.
+     */
+    @DataBoundSetter
+    public void setTimeoutSeconds(int timeoutSeconds) {
+        this.timeoutSeconds = Math.max(0, timeoutSeconds);
+    }
+
+    public long getMaxOutputBytes() {
+        return maxOutputBytes;
+    }
+
+    /**
+     * Sets {@link #getMaxOutputBytes()}.
+     * @param maxOutputBytes How much output may be logged before the rest is
+     *        dropped, keeping only the end of it. Zero or less means no limit.
+     */
+    @DataBoundSetter
+    public void setMaxOutputBytes(long maxOutputBytes) {
+        this.maxOutputBytes = Math.max(0L, maxOutputBytes);
+    }
+
     @Override
     public FilePath performInstallation(ToolInstallation tool, Node node, TaskListener log) throws IOException, InterruptedException {
         String substitutedHome = substituteNodeVariablesValidated("Tool Home", getToolHome(), node);   
         
         FilePath dir = preferredLocation(tool, node);
-        // XXX support Windows batch scripts, Unix scripts with interpreter line, etc. (see CommandInterpreter subclasses)
-        FilePath script = dir.createTextTempFile("hudson", ".bat", command);
+        FilePath home = dir.child(substitutedHome);
+        String hash = calcInstallationHash(command, substitutedHome);
+        installUnlessUpToDate(dir, home, hash, skipIfInstalled, command, checkCommand, log,
+                batch -> runBatch(node, dir, log, batch));
+        return home;
+    }
+
+    /**
+     * Runs a batch script in the installation folder.
+     * @return The exit code of the script.
+     */
+    private int runBatch(Node node, FilePath dir, TaskListener log, String batch)
+            throws IOException, InterruptedException {
+        // See ScriptInstaller for Unix scripts, interpreter lines etc.
+        FilePath script = dir.createTextTempFile("hudson", ".bat", batch);
         try {
             String[] cmd = {"cmd", "/c", "call", script.getRemote()};
-            int r = node.createLauncher(log).launch().cmds(cmd).stdout(log).pwd(dir).join();
-            if (r != 0) {
-                throw new IOException("Command returned status " + r);
-            }
+            return runCommand(node, dir, log, cmd, timeoutSeconds, maxOutputBytes);
         } finally {
             script.delete();
         }
-        return dir.child(substitutedHome);
     }
     
     @Extension
@@ -113,5 +204,13 @@ public class BatchCommandInstaller extends AbstractExtraToolInstaller {
                 return FormValidation.error(Messages.BatchCommandInstaller_no_toolHome());
             }
         }
+
+        public FormValidation doCheckTimeoutSeconds(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckMaxOutputBytes(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
     }
 }
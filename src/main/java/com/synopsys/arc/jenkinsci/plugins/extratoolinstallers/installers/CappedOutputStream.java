@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.synopsys.arc.jenkinsci.plugins.extratoolinstallers.installers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Passes output through to a log until a limit is reached, after which only
+ * the last few bytes are kept (in a ring buffer) and written out by
+ * {@link #finish()}, so that a noisy installer can't flood the build log.
+ * The underlying log is never closed.
+ */
+final class CappedOutputStream extends OutputStream {
+    private final PrintStream out;
+    private final long maxBytes;
+    private final byte[] tail;
+    /** Total number of bytes we've been given. */
+    private long received;
+    /** Where the next byte goes in {@link #tail}. */
+    private int tailEnd;
+    /** How many bytes of {@link #tail} are in use. */
+    private int tailLength;
+    private boolean finished;
+
+    /**
+     * @param out Where output goes.
+     * @param maxBytes How much output is passed straight through.
+     * @param tailBytes How much of the remaining output is kept, to be written
+     *        out at the end.
+     */
+    CappedOutputStream(PrintStream out, long maxBytes, int tailBytes) {
+        this.out = out;
+        this.maxBytes = maxBytes;
+        this.tail = new byte[Math.max(0, tailBytes)];
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            return; // too late; we've already said what we omitted
+        }
+        final long passThrough = Math.max(0L, Math.min(len, maxBytes - received));
+        if (passThrough > 0L) {
+            out.write(b, off, (int) passThrough);
+        }
+        if (received < maxBytes && received + len >= maxBytes && len > passThrough) {
+            out.println();
+            out.println(Messages.CappedOutputStream_limit_reached(maxBytes, tail.length));
+        }
+        received += len;
+        for (int i = off + (int) passThrough; i < off + len && tail.length > 0; i++) {
+            tail[tailEnd] = b[i];
+            tailEnd = (tailEnd + 1) % tail.length;
+            tailLength = Math.min(tailLength + 1, tail.length);
+        }
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Indicates whether any output was withheld.
+     *
+     * @return true if we were given more than the limit.
+     */
+    synchronized boolean isCapped() {
+        return received > maxBytes;
+    }
+
+    /**
+     * Writes out the tail of the output, if the limit was reached, saying how
+     * much was omitted. Calling this more than once does nothing.
+     */
+    synchronized void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (!isCapped()) {
+            return;
+        }
+        final byte[] lastBytes = new byte[tailLength];
+        final int tailStart = (tailEnd - tailLength + tail.length) % Math.max(1, tail.length);
+        for (int i = 0; i < tailLength; i++) {
+            lastBytes[i] = tail[(tailStart + i) % tail.length];
+        }
+        // start at the beginning of a line if we can
+        int from = 0;
+        if (received - maxBytes > tailLength) {
+            for (int i = 0; i < lastBytes.length; i++) {
+                if (lastBytes[i] == '\n') {
+                    from = i + 1;
+                    break;
+                }
+            }
+        }
+        final long omitted = received - maxBytes - (lastBytes.length - from);
+        out.println(Messages.CappedOutputStream_omitted(omitted));
+        out.write(lastBytes, from, lastBytes.length - from);
+        out.println();
+        out.flush();
+    }
+}
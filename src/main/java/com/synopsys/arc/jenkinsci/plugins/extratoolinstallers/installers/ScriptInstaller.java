@@ -0,0 +1,291 @@
+/*
+ * The MIT License
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.synopsys.arc.jenkinsci.plugins.extratoolinstallers.installers;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.tools.ToolInstallation;
+import hudson.tools.ToolInstallerDescriptor;
+import hudson.util.FormValidation;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
+import org.kohsuke.stapler.QueryParameter;
+
+/**
+ * Installs tool via execution of a script, on any platform.
+ * Unlike {@link BatchCommandInstaller}, the script is run by <code>sh</code>
+ * on Unix nodes and by <code>cmd</code> on Windows nodes, unless it starts with
+ * an interpreter line (e.g. <code>#!/usr/bin/env python3</code>), in which
+ * case that interpreter is used on any node.
+ * Node variables are substituted in the script before it is run.
+ */
+public class ScriptInstaller extends AbstractExtraToolInstaller {
+
+    /**
+     * Script to execute.
+     */
+    private final String command;
+
+    /**
+     * If true, the script is not run again once it has succeeded, unless it
+     * (or the tool home) changes.
+     */
+    private boolean skipIfInstalled;
+
+    /**
+     * Optional script that verifies an existing installation.
+     */
+    private String checkCommand;
+
+    /**
+     * How long the script may run for, in seconds. Zero means forever.
+     */
+    private int timeoutSeconds;
+
+    /**
+     * How much of the script's output may be logged, in bytes. Zero means no
+     * limit.
+     */
+    private long maxOutputBytes;
+
+    @DataBoundConstructor
+    public ScriptInstaller(String label, String command, String toolHome, boolean failOnSubstitution) {
+        super(label, toolHome, failOnSubstitution);
+        this.command = fixLineEndings(Util.fixNull(command));
+    }
+
+    /**
+     * Makes line endings Unix style. They are made Windows style when the
+     * script is written for <code>cmd</code> to run.
+     */
+    private static String fixLineEndings(String s) {
+        return s.replace("\r\n", "\n");
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public boolean isSkipIfInstalled() {
+        return skipIfInstalled;
+    }
+
+    /**
+     * Sets {@link #isSkipIfInstalled()}.
+     * @param skipIfInstalled If true, a successful installation is not repeated
+     *        unless the script or tool home changes.
+     */
+    @DataBoundSetter
+    public void setSkipIfInstalled(boolean skipIfInstalled) {
+        this.skipIfInstalled = skipIfInstalled;
+    }
+
+    public String getCheckCommand() {
+        return checkCommand;
+    }
+
+    /**
+     * Sets {@link #getCheckCommand()}.
+     * @param checkCommand Script that exits with zero if an existing
+     *        installation is still good, or null to trust the existing
+     *        installation without checking.
+     */
+    @DataBoundSetter
+    public void setCheckCommand(String checkCommand) {
+        final String fixed = Util.fixEmptyAndTrim(checkCommand);
+        this.checkCommand = fixed == null ? null : fixLineEndings(fixed);
+    }
+
+    public int getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    /**
+     * Sets {@link #getTimeoutSeconds()}.
+     * @param timeoutSeconds How long the script (or check) may run for before
+     *        it is killed. Zero or less means no limit.
+     */
+    @DataBoundSetter
+    public void setTimeoutSeconds(int timeoutSeconds) {
+        this.timeoutSeconds = Math.max(0, timeoutSeconds);
+    }
+
+    public long getMaxOutputBytes() {
+        return maxOutputBytes;
+    }
+
+    /**
+     * Sets {@link #getMaxOutputBytes()}.
+     * @param maxOutputBytes How much output may be logged before the rest is
+     *        dropped, keeping only the end of it. Zero or less means no limit.
+     */
+    @DataBoundSetter
+    public void setMaxOutputBytes(long maxOutputBytes) {
+        this.maxOutputBytes = Math.max(0L, maxOutputBytes);
+    }
+
+    @Override
+    public FilePath performInstallation(ToolInstallation tool, Node node, TaskListener log) throws IOException, InterruptedException {
+        final String substitutedHome = substituteNodeVariablesValidated("Tool Home", getToolHome(), node);
+        final String substitutedCommand = substituteNodeVariablesValidated("Command", command, node);
+        final String substitutedCheckCommand = checkCommand == null ? null
+                : substituteNodeVariablesValidated("Check Command", checkCommand, node);
+        final boolean isUnix = node.createLauncher(log).isUnix();
+
+        final FilePath dir = preferredLocation(tool, node);
+        final FilePath home = dir.child(substitutedHome);
+        final String hash = calcInstallationHash(substitutedCommand, substitutedHome);
+        installUnlessUpToDate(dir, home, hash, skipIfInstalled, substitutedCommand, substitutedCheckCommand, log,
+                script -> runScript(node, dir, log, script, isUnix));
+        return home;
+    }
+
+    /**
+     * Runs a script in the installation folder.
+     * @return The exit code of the script.
+     */
+    private int runScript(Node node, FilePath dir, TaskListener log, String script, boolean isUnix)
+            throws IOException, InterruptedException {
+        final String extension = calcScriptExtension(script, isUnix);
+        final String contents = ".bat".equals(extension) ? script.replace("\n", "\r\n") : script;
+        final FilePath scriptFile = dir.createTextTempFile("hudson", extension, contents);
+        try {
+            final String[] cmd = calcCommandLine(script, isUnix, scriptFile.getRemote());
+            return runCommand(node, dir, log, cmd, timeoutSeconds, maxOutputBytes);
+        } finally {
+            scriptFile.delete();
+        }
+    }
+
+    /**
+     * Works out how to run a script.
+     * @param script The script
+     * @param isUnix true if the node is a Unix node, false for Windows
+     * @param scriptPath Where the script has been written on the node
+     * @return The command line
+     */
+    static String[] calcCommandLine(String script, boolean isUnix, String scriptPath) {
+        final List<String> interpreter = parseInterpreterLine(script);
+        if (interpreter != null) {
+            final List<String> cmd = new ArrayList<>(interpreter);
+            if (!isUnix && cmd.size() > 1 && baseName(cmd.get(0)).equals("env")) {
+                cmd.remove(0); // Windows has no /usr/bin/env, so find it on the PATH instead
+            }
+            cmd.add(scriptPath);
+            return cmd.toArray(new String[0]);
+        }
+        if (isUnix) {
+            return new String[] {"sh", "-e", scriptPath};
+        }
+        return new String[] {"cmd", "/c", "call", scriptPath};
+    }
+
+    /**
+     * Works out what the script file needs to be called, as some
+     * interpreters care.
+     * @param script The script
+     * @param isUnix true if the node is a Unix node, false for Windows
+     * @return File extension, including the dot.
+     */
+    static String calcScriptExtension(String script, boolean isUnix) {
+        final List<String> interpreter = parseInterpreterLine(script);
+        if (interpreter == null) {
+            return isUnix ? ".sh" : ".bat";
+        }
+        String name = baseName(interpreter.get(0));
+        if (name.equals("env") && interpreter.size() > 1) {
+            name = baseName(interpreter.get(1));
+        }
+        if (name.equals("powershell") || name.equals("pwsh")) {
+            return ".ps1";
+        }
+        return name.startsWith("python") ? ".py" : ".sh";
+    }
+
+    /**
+     * Gets the name of an executable, without any folder or <code>.exe</code>.
+     */
+    private static String baseName(String executable) {
+        String name = executable.replace('\\', '/').toLowerCase(Locale.ENGLISH);
+        name = name.substring(name.lastIndexOf('/') + 1);
+        return name.endsWith(".exe") ? name.substring(0, name.length() - 4) : name;
+    }
+
+    /**
+     * Parses the interpreter line (aka shebang), if there is one.
+     * @param script The script
+     * @return The interpreter and its arguments, or null if there isn't one.
+     */
+    static List<String> parseInterpreterLine(String script) {
+        if (script == null || !script.startsWith("#!")) {
+            return null;
+        }
+        final int endOfLine = script.indexOf('\n');
+        final String line = (endOfLine < 0 ? script.substring(2) : script.substring(2, endOfLine)).trim();
+        if (line.isEmpty()) {
+            return null;
+        }
+        return Arrays.asList(line.split("\\s+"));
+    }
+
+    @Extension
+    public static class DescriptorImpl extends ToolInstallerDescriptor<ScriptInstaller> {
+
+        @Override
+        public String getDisplayName() {
+            return Messages.ScriptInstaller_DescriptorImpl_displayName();
+        }
+
+        public FormValidation doCheckCommand(@QueryParameter String value) {
+            if (value.length() > 0) {
+                return FormValidation.ok();
+            } else {
+                return FormValidation.error(Messages.ScriptInstaller_no_command());
+            }
+        }
+
+        public FormValidation doCheckToolHome(@QueryParameter String value) {
+            if (value.length() > 0) {
+                return FormValidation.ok();
+            } else {
+                return FormValidation.error(Messages.ScriptInstaller_no_toolHome());
+            }
+        }
+
+        public FormValidation doCheckTimeoutSeconds(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckMaxOutputBytes(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+    }
+}
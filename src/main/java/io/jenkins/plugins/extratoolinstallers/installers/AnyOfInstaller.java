@@ -2,32 +2,55 @@ package io.jenkins.plugins.extratoolinstallers.installers;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import org.jenkinsci.Symbol;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
 import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
+import com.synopsys.arc.jenkinsci.plugins.extratoolinstallers.installers.SharedDirectoryInstaller;
 import com.synopsys.arc.jenkinsci.plugins.extratoolinstallers.utils.ExtraToolInstallersException;
 
 import hudson.Extension;
 import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Computer;
 import hudson.model.Node;
 import hudson.model.TaskListener;
+import hudson.model.labels.LabelAtom;
 import hudson.tools.InstallSourceProperty;
 import hudson.tools.ToolInstallation;
 import hudson.tools.ToolInstaller;
 import hudson.tools.ToolInstallerDescriptor;
 import hudson.util.FormValidation;
+import jenkins.util.SystemProperties;
 
 /**
  * Installs tools using "any of" the installation methods provided. The
@@ -35,6 +58,8 @@ import hudson.util.FormValidation;
  * failures.
  */
 public class AnyOfInstaller extends ToolInstaller {
+    private static final Logger LOGGER = Logger.getLogger(AnyOfInstaller.class.getName());
+
     /**
      * The list of installers we will attempt. Cannot be empty for this to
      * be valid.
@@ -54,6 +79,74 @@ public class AnyOfInstaller extends ToolInstaller {
      */
     private /* almost final */ int attemptsOfWholeList;
 
+    /**
+     * If true, installers that only look for an existing tool get tried all at
+     * once, before anything else.
+     */
+    private /* almost final */ boolean raceProbes;
+
+    /**
+     * How long we wait before retrying an installer, doubling with each
+     * further retry. Zero means we retry immediately.
+     */
+    private /* almost final */ int retryDelaySeconds;
+
+    /**
+     * How long we wait before going through the list again, doubling with each
+     * further loop. Zero means we start again immediately.
+     */
+    private /* almost final */ int loopDelaySeconds;
+
+    /** Upper limit on any one delay. Zero means no limit. */
+    private /* almost final */ int maxDelaySeconds;
+
+    /** How long we keep trying for. Zero means no limit. */
+    private /* almost final */ int deadlineSeconds;
+
+    /**
+     * If true, we try installers in the order that's worked best on the node
+     * before, instead of in the configured order.
+     */
+    private /* almost final */ boolean learnInstallerOrder;
+
+    /**
+     * If true, we remember which installer worked on each node, and where it
+     * put the tool, and reuse that next time.
+     */
+    private /* almost final */ boolean rememberWinner;
+
+    /**
+     * What worked last time on each node, indexed by node and tool name. Only
+     * used if {@link #isRememberWinner()}. Not persisted, so that a restart or
+     * a change to our configuration forgets everything.
+     */
+    @CheckForNull
+    private transient volatile Map<String, RememberedWinner> rememberedWinners;
+
+    /**
+     * Which of our installers apply to each node, indexed by node name. Not
+     * persisted, and cleared whenever our installers change.
+     */
+    @CheckForNull
+    private transient volatile Map<String, Applicability> applicabilityByNode;
+
+    /**
+     * We forget everything in {@link #applicabilityByNode} (or
+     * {@link #rememberedWinners}) once it has this many entries in it, so that
+     * clouds churning through uniquely-named agents don't make it grow
+     * forever.
+     */
+    private static final int MAX_NODES_IN_APPLICABILITY_CACHE = 1000;
+
+    /**
+     * How long (in minutes) we trust a remembered winner for, before going
+     * through our installers again (e.g. so that a download installer can
+     * check for an update).
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Can be changed from the script console")
+    static /* almost final */ int REMEMBER_WINNER_MINUTES = SystemProperties
+            .getInteger(AnyOfInstaller.class.getName() + ".rememberWinnerMinutes", 60);
+
     /**
      * Default constructor.
      */
@@ -83,6 +176,7 @@ public class AnyOfInstaller extends ToolInstaller {
     @DataBoundSetter
     public void setInstallers(@Nullable final InstallSourceProperty installers) {
         this.installers = installers;
+        this.applicabilityByNode = null;
         if (super.tool != null) {
             installers.setTool(super.tool);
         }
@@ -130,6 +224,161 @@ public class AnyOfInstaller extends ToolInstaller {
         this.attemptsOfWholeList = attemptsOfWholeList;
     }
 
+    /**
+     * Whether we start all our "probe" installers (those that merely look for
+     * a tool that's already there, e.g. {@link IsAlreadyOnPath}) at the same
+     * time, taking whichever succeeds first, before trying the rest of our
+     * installers in order. This means that a slow probe doesn't hold up a
+     * fast one, and nobody has to wait for several probes to fail one after
+     * another.
+     * 
+     * @return true if probes are raced against each other.
+     */
+    public boolean isRaceProbes() {
+        return raceProbes;
+    }
+
+    /**
+     * Sets {@link #isRaceProbes()}.
+     * 
+     * @param raceProbes The new value.
+     */
+    @DataBoundSetter
+    public void setRaceProbes(final boolean raceProbes) {
+        this.raceProbes = raceProbes;
+    }
+
+    /**
+     * How long (in seconds) we wait before the first retry of an installer.
+     * Each subsequent retry of that installer waits twice as long as the one
+     * before, up to {@link #getMaxDelaySeconds()}. The actual delay is
+     * randomized between half and all of that, so that many nodes that failed
+     * at the same time don't all retry at the same time.
+     * 
+     * @return The value set by {@link #setRetryDelaySeconds(int)} if that was
+     *         positive, else 0 (don't wait).
+     */
+    public int getRetryDelaySeconds() {
+        return Math.max(0, retryDelaySeconds);
+    }
+
+    /**
+     * Sets {@link #getRetryDelaySeconds()}.
+     * 
+     * @param retryDelaySeconds The new value.
+     */
+    @DataBoundSetter
+    public void setRetryDelaySeconds(final int retryDelaySeconds) {
+        this.retryDelaySeconds = retryDelaySeconds;
+    }
+
+    /**
+     * How long (in seconds) we wait before the second attempt of the whole
+     * list. This grows, and is randomized, as per
+     * {@link #getRetryDelaySeconds()}.
+     * 
+     * @return The value set by {@link #setLoopDelaySeconds(int)} if that was
+     *         positive, else 0 (don't wait).
+     */
+    public int getLoopDelaySeconds() {
+        return Math.max(0, loopDelaySeconds);
+    }
+
+    /**
+     * Sets {@link #getLoopDelaySeconds()}.
+     * 
+     * @param loopDelaySeconds The new value.
+     */
+    @DataBoundSetter
+    public void setLoopDelaySeconds(final int loopDelaySeconds) {
+        this.loopDelaySeconds = loopDelaySeconds;
+    }
+
+    /**
+     * The longest (in seconds) we will wait between any two attempts.
+     * 
+     * @return The value set by {@link #setMaxDelaySeconds(int)} if that was
+     *         positive, else 0 (no limit).
+     */
+    public int getMaxDelaySeconds() {
+        return Math.max(0, maxDelaySeconds);
+    }
+
+    /**
+     * Sets {@link #getMaxDelaySeconds()}.
+     * 
+     * @param maxDelaySeconds The new value.
+     */
+    @DataBoundSetter
+    public void setMaxDelaySeconds(final int maxDelaySeconds) {
+        this.maxDelaySeconds = maxDelaySeconds;
+    }
+
+    /**
+     * How long (in seconds) we keep trying for. Once this much time has passed
+     * we won't start another attempt (or wait for one), even if we've not used
+     * up all our attempts.
+     * 
+     * @return The value set by {@link #setDeadlineSeconds(int)} if that was
+     *         positive, else 0 (no limit).
+     */
+    public int getDeadlineSeconds() {
+        return Math.max(0, deadlineSeconds);
+    }
+
+    /**
+     * Sets {@link #getDeadlineSeconds()}.
+     * 
+     * @param deadlineSeconds The new value.
+     */
+    @DataBoundSetter
+    public void setDeadlineSeconds(final int deadlineSeconds) {
+        this.deadlineSeconds = deadlineSeconds;
+    }
+
+    /**
+     * Whether we learn, for each node, which installers work and how long they
+     * take, and use that to decide the order in which we try them. Installers
+     * that keep failing on a node are left out for a while.
+     * 
+     * @return true if we use {@link InstallerHistory} to order our installers.
+     */
+    public boolean isLearnInstallerOrder() {
+        return learnInstallerOrder;
+    }
+
+    /**
+     * Sets {@link #isLearnInstallerOrder()}.
+     * 
+     * @param learnInstallerOrder The new value.
+     */
+    @DataBoundSetter
+    public void setLearnInstallerOrder(final boolean learnInstallerOrder) {
+        this.learnInstallerOrder = learnInstallerOrder;
+    }
+
+    /**
+     * Whether we remember which installer succeeded on each node, and the tool
+     * home it gave us, so that next time we can skip straight to that result
+     * (provided it still exists) instead of going through our installers
+     * again.
+     * 
+     * @return true if we remember what worked.
+     */
+    public boolean isRememberWinner() {
+        return rememberWinner;
+    }
+
+    /**
+     * Sets {@link #isRememberWinner()}.
+     * 
+     * @param rememberWinner The new value.
+     */
+    @DataBoundSetter
+    public void setRememberWinner(final boolean rememberWinner) {
+        this.rememberWinner = rememberWinner;
+    }
+
     @Override
     protected void setTool(final ToolInstallation t) {
         super.setTool(t);
@@ -142,13 +391,7 @@ public class AnyOfInstaller extends ToolInstaller {
     public boolean appliesTo(final Node node) {
         // We "apply" if any of our installers apply.
         // We have no separate existence of our own.
-        final List<? extends ToolInstaller> ourInstallers = getOurInstallers();
-        for (final ToolInstaller installer : ourInstallers) {
-            if (installer.appliesTo(node)) {
-                return true;
-            }
-        }
-        return false;
+        return !calcApplicability(node, getOurInstallers()).isEmpty();
     }
 
     @Override
@@ -157,26 +400,126 @@ public class AnyOfInstaller extends ToolInstaller {
         // Work out what we are going to do
         final List<? extends ToolInstaller> allDefinedInstallers = getOurInstallers();
         final int numberOfConfiguredInstallers = allDefinedInstallers.size();
-        final Map<Integer, ToolInstaller> allApplicableInstallersByIndex = calcInstallersThatApplyToNode(node,
-                allDefinedInstallers);
+        final Map<Integer, ToolInstaller> applicableInstallersInConfiguredOrder = calcInstallersThatApplyToNode(
+                node, allDefinedInstallers);
         final Map<Integer, String> allApplicableInstallerNamesByIndex = calcInstallerDisplayNames(
-                allApplicableInstallersByIndex);
+                applicableInstallersInConfiguredOrder);
+        final String nodeName = node.getNodeName();
+        final String toolName = tool == null ? "" : Util.fixNull(tool.getName());
+        // If what worked last time is still there, we're done
+        final String winnerKey = nodeName + '/' + toolName;
+        if (isRememberWinner()) {
+            final FilePath rememberedResult = recallWinner(winnerKey, tool, node,
+                    applicableInstallersInConfiguredOrder);
+            if (rememberedResult != null) {
+                return rememberedResult;
+            }
+        }
+        // If we're learning then we start with what worked best before
+        final InstallerHistory history = isLearnInstallerOrder() ? InstallerHistory.get() : null;
+        final Map<Integer, ToolInstaller> allApplicableInstallersByIndex = history == null
+                ? applicableInstallersInConfiguredOrder
+                : calcInstallerOrderFromHistory(history, nodeName, toolName, applicableInstallersInConfiguredOrder);
+        final AttemptRecorder recorder = (indexOfConfiguredInstaller, wholeListAttempt, installerAttempt, result,
+                failure, durationNanos) -> {
+            final String installerId = calcInstallerId(indexOfConfiguredInstaller,
+                    applicableInstallersInConfiguredOrder.get(indexOfConfiguredInstaller));
+            final InstallAttemptEvent.Outcome outcome;
+            if (result != null) {
+                outcome = InstallAttemptEvent.Outcome.SUCCESS;
+            } else if (isNotWorthRetrying(failure)) {
+                outcome = InstallAttemptEvent.Outcome.FATAL_FAILURE;
+            } else {
+                outcome = InstallAttemptEvent.Outcome.RETRYABLE_FAILURE;
+            }
+            fireAttemptEvent(new InstallAttemptEvent(toolName, nodeName, indexOfConfiguredInstaller,
+                    Util.fixNull(allApplicableInstallerNamesByIndex.get(indexOfConfiguredInstaller)),
+                    wholeListAttempt, installerAttempt, TimeUnit.NANOSECONDS.toMillis(durationNanos), outcome,
+                    failure));
+            if (history != null) {
+                history.record(nodeName, toolName, installerId, result != null,
+                        TimeUnit.NANOSECONDS.toMillis(durationNanos), System.currentTimeMillis());
+                history.saveSoon();
+            }
+            if (result != null && isRememberWinner()) {
+                rememberWinner(winnerKey, new RememberedWinner(indexOfConfiguredInstaller, installerId,
+                        result.getRemote(), System.currentTimeMillis()));
+            }
+        };
         final int maxWholeListAttempts = getAttemptsOfWholeList();
         final int maxAttemptsPerInstaller = getAttemptsPerInstaller();
+        final ExecutablesLocator executablesLocator = new ExecutablesLocator(node,
+                allApplicableInstallersByIndex.values());
+        final long startNanos = nanoTime();
+        final List<Exception> exceptionsEncountered = new ArrayList<>();
+        // Installers that have failed in a way that retrying won't fix
+        final Set<Integer> installersNotWorthRetrying = new HashSet<>();
+        // If we're racing probes then they all get their first attempt at once
+        final Map<Integer, ToolInstaller> racedInstallersByIndex = new LinkedHashMap<>();
+        if (isRaceProbes()) {
+            for (final Map.Entry<Integer, ToolInstaller> entry : allApplicableInstallersByIndex.entrySet()) {
+                if (isProbe(entry.getValue())) {
+                    racedInstallersByIndex.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        if (!racedInstallersByIndex.isEmpty()) {
+            final FilePath winner = raceInstallers(tool, node, log, recorder, racedInstallersByIndex,
+                    allApplicableInstallerNamesByIndex, executablesLocator, exceptionsEncountered,
+                    installersNotWorthRetrying, numberOfConfiguredInstallers, maxWholeListAttempts,
+                    maxAttemptsPerInstaller, startNanos);
+            if (winner != null) {
+                return winner;
+            }
+        }
         // Now loop through all attempts until either one works and we return
         // or until we run out of tries, in which case we throw the last
         // exception
-        Exception lastExceptionEncountered = null;
-        for (int wholeListAttempt = 1; wholeListAttempt <= maxWholeListAttempts; wholeListAttempt++) {
+        Exception lastExceptionEncountered = exceptionsEncountered.isEmpty() ? null
+                : exceptionsEncountered.get(exceptionsEncountered.size() - 1);
+        if (!racedInstallersByIndex.isEmpty() && !waitUnlessOutOfTime(log, startNanos, 0L)) {
+            throw new ExtraToolInstallersException(this, Messages.AnyOfInstaller_all_failed(),
+                    lastExceptionEncountered);
+        }
+        allAttempts: for (int wholeListAttempt = 1; wholeListAttempt <= maxWholeListAttempts; wholeListAttempt++) {
+            if (installersNotWorthRetrying.containsAll(allApplicableInstallersByIndex.keySet())) {
+                break; // no point waiting when there's nothing left to try
+            }
+            if (wholeListAttempt > 1 && !waitUnlessOutOfTime(log, startNanos,
+                    calcDelayMillis(wholeListAttempt - 1, getLoopDelaySeconds(), getMaxDelaySeconds()))) {
+                break;
+            }
             for (final Map.Entry<Integer, ToolInstaller> entry : allApplicableInstallersByIndex.entrySet()) {
                 final ToolInstaller installer = entry.getValue();
                 final Integer indexOfConfiguredInstaller = entry.getKey();
                 for (int installerAttempt = 1; installerAttempt <= maxAttemptsPerInstaller; installerAttempt++) {
+                    final boolean firstAttempt = wholeListAttempt == 1 && installerAttempt == 1;
+                    if (firstAttempt && racedInstallersByIndex.containsKey(indexOfConfiguredInstaller)) {
+                        continue; // already had its first go
+                    }
+                    if (installersNotWorthRetrying.contains(indexOfConfiguredInstaller)) {
+                        break;
+                    }
+                    final long delayMillis = installerAttempt > 1
+                            ? calcDelayMillis(installerAttempt - 1, getRetryDelaySeconds(), getMaxDelaySeconds())
+                            : 0L;
+                    if (!waitUnlessOutOfTime(log, startNanos, delayMillis)) {
+                        break allAttempts;
+                    }
+                    final long attemptStartNanos = nanoTime();
                     try {
-                        final FilePath result = installer.performInstallation(tool, node, log);
+                        final FilePath result = attemptInstallation(installer, tool, node, log,
+                                firstAttempt ? executablesLocator : null);
+                        recordAttempt(recorder, indexOfConfiguredInstaller, wholeListAttempt, installerAttempt,
+                                result, null, attemptStartNanos);
                         return result; // success
                     } catch (IOException | RuntimeException ex) {
+                        recordAttempt(recorder, indexOfConfiguredInstaller, wholeListAttempt, installerAttempt,
+                                null, ex, attemptStartNanos);
                         lastExceptionEncountered = ex;
+                        if (isNotWorthRetrying(ex)) {
+                            installersNotWorthRetrying.add(indexOfConfiguredInstaller);
+                        }
                         final String displayNameOfThisInstaller = allApplicableInstallerNamesByIndex
                                 .get(indexOfConfiguredInstaller);
                         final String whatToReport = ex.toString();
@@ -190,6 +533,357 @@ public class AnyOfInstaller extends ToolInstaller {
         throw new ExtraToolInstallersException(this, Messages.AnyOfInstaller_all_failed(), lastExceptionEncountered);
     }
 
+    /**
+     * Waits before our next attempt, unless doing so (or even making another
+     * attempt) would take us past our deadline.
+     * 
+     * @return true if we can carry on, false if we've run out of time.
+     */
+    private boolean waitUnlessOutOfTime(final TaskListener log, final long startNanos, final long delayMillis)
+            throws InterruptedException {
+        final int deadline = getDeadlineSeconds();
+        if (deadline > 0) {
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(nanoTime() - startNanos);
+            if (elapsedMillis + delayMillis >= TimeUnit.SECONDS.toMillis(deadline)) {
+                log.getLogger().println(Messages.AnyOfInstaller_deadline_reached(deadline));
+                return false;
+            }
+        }
+        if (delayMillis > 0L) {
+            log.getLogger().println(Messages.AnyOfInstaller_waiting(delayMillis));
+            sleep(delayMillis);
+        }
+        return true;
+    }
+
+    /**
+     * Calculates how long to wait before a retry: exponential backoff with
+     * "equal jitter".
+     * 
+     * @param retryNumber  1 for the first retry, 2 for the second etc.
+     * @param baseSeconds  The delay before the first retry.
+     * @param limitSeconds The limit, or zero for no limit.
+     * @return The delay, in milliseconds, somewhere between half and all of
+     *         <code>baseSeconds</code> doubled <code>retryNumber-1</code>
+     *         times (or <code>limitSeconds</code> if that's less).
+     */
+    static long calcDelayMillis(final int retryNumber, final int baseSeconds, final int limitSeconds) {
+        return calcDelayMillis(retryNumber, baseSeconds, limitSeconds, ThreadLocalRandom.current().nextDouble());
+    }
+
+    static long calcDelayMillis(final int retryNumber, final int baseSeconds, final int limitSeconds,
+            final double random) {
+        if (baseSeconds <= 0) {
+            return 0L;
+        }
+        final long baseMillis = TimeUnit.SECONDS.toMillis(baseSeconds);
+        final long limitMillis = limitSeconds > 0 ? TimeUnit.SECONDS.toMillis(limitSeconds) : Long.MAX_VALUE;
+        final int doublings = Math.min(Math.max(0, retryNumber - 1), 30);
+        final long uncapped = baseMillis > (Long.MAX_VALUE >> doublings) ? Long.MAX_VALUE : baseMillis << doublings;
+        final long delayMillis = Math.min(uncapped, limitMillis);
+        final long half = delayMillis / 2L;
+        return half + (long) (random * (delayMillis - half));
+    }
+
+    /**
+     * Determines whether an installation failure is one that won't go away if
+     * we try again, e.g. a download that the server says doesn't exist, or a
+     * tool that's the wrong version.
+     * 
+     * @param ex The failure.
+     * @return true if there's no point retrying that installer.
+     */
+    static boolean isNotWorthRetrying(@CheckForNull final Throwable ex) {
+        // we check the causes too as installers often wrap what went wrong
+        Throwable t = ex;
+        for (int depth = 0; t != null && depth < 10; depth++, t = t.getCause()) {
+            if (t instanceof WrongVersionException || t instanceof FindOnPathCallable.ExecutableNotOnPathException) {
+                return true;
+            }
+            if (t instanceof AuthenticatedDownloadCallable.HttpGetException) {
+                final Integer status = ((AuthenticatedDownloadCallable.HttpGetException) t).getHttpStatusCode();
+                // 408 (timeout) and 429 (too many requests) are worth retrying
+                return status != null && status >= 400 && status < 500 && status != 408 && status != 429;
+            }
+        }
+        return false;
+    }
+
+    /** Sleeps. Only exists so tests can avoid doing that. */
+    @Restricted(NoExternalUse.class)
+    void sleep(final long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    /** Gets the time. Only exists so tests can control time. */
+    @Restricted(NoExternalUse.class)
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Reorders (and maybe filters) our installers according to what's worked
+     * before on this node.
+     */
+    private static Map<Integer, ToolInstaller> calcInstallerOrderFromHistory(final InstallerHistory history,
+            final String nodeName, final String toolName, final Map<Integer, ToolInstaller> installersByIndex) {
+        final Map<String, Integer> indexesById = new LinkedHashMap<>(installersByIndex.size());
+        for (final Map.Entry<Integer, ToolInstaller> entry : installersByIndex.entrySet()) {
+            indexesById.put(calcInstallerId(entry.getKey(), entry.getValue()), entry.getKey());
+        }
+        final List<String> orderedIds = history.prioritize(nodeName, toolName, new ArrayList<>(indexesById.keySet()),
+                System.currentTimeMillis());
+        final Map<Integer, ToolInstaller> result = new LinkedHashMap<>(orderedIds.size());
+        for (final String id : orderedIds) {
+            final Integer index = indexesById.get(id);
+            result.put(index, installersByIndex.get(index));
+        }
+        return result;
+    }
+
+    /**
+     * Identifies one of our installers in the {@link InstallerHistory}. We
+     * include the installer type so that, if our list is edited, we don't
+     * credit one installer with another's history.
+     */
+    private static String calcInstallerId(final Integer indexOfConfiguredInstaller, final ToolInstaller installer) {
+        return indexOfConfiguredInstaller + ":" + installer.getDescriptor().getId();
+    }
+
+    /** Something that wants to know how each installation attempt went. */
+    private interface AttemptRecorder {
+        /**
+         * @param indexOfConfiguredInstaller Which installer was attempted.
+         * @param wholeListAttempt           Which loop we were on.
+         * @param installerAttempt           Which attempt of the installer.
+         * @param result                     What it returned, or null if it
+         *                                   failed.
+         * @param failure                    Why it failed, or null if it
+         *                                   worked.
+         * @param durationNanos              How long it took.
+         */
+        void record(Integer indexOfConfiguredInstaller, int wholeListAttempt, int installerAttempt,
+                @CheckForNull FilePath result, @CheckForNull Exception failure, long durationNanos);
+    }
+
+    private void recordAttempt(final AttemptRecorder recorder, final Integer indexOfConfiguredInstaller,
+            final int wholeListAttempt, final int installerAttempt, @CheckForNull final FilePath result,
+            @CheckForNull final Exception failure, final long attemptStartNanos) {
+        recorder.record(indexOfConfiguredInstaller, wholeListAttempt, installerAttempt, result, failure,
+                nanoTime() - attemptStartNanos);
+    }
+
+    /** Tells everyone about an attempt. Only exists so tests can listen in. */
+    @Restricted(NoExternalUse.class)
+    void fireAttemptEvent(final InstallAttemptEvent event) {
+        InstallAttemptListener.fireOnAttempt(event);
+    }
+
+    @NonNull
+    private Map<String, RememberedWinner> getRememberedWinners() {
+        Map<String, RememberedWinner> result = rememberedWinners;
+        if (result == null) {
+            synchronized (this) {
+                result = rememberedWinners;
+                if (result == null) {
+                    result = new ConcurrentHashMap<>();
+                    rememberedWinners = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remembers what worked, first forgetting anything that's too old to be
+     * trusted anyway, and then everything if there's still too much.
+     */
+    private void rememberWinner(final String winnerKey, final RememberedWinner winner) {
+        final Map<String, RememberedWinner> winners = getRememberedWinners();
+        final long oldestWorthKeeping = winner.rememberedAt - TimeUnit.MINUTES.toMillis(REMEMBER_WINNER_MINUTES);
+        winners.values().removeIf(w -> w.rememberedAt < oldestWorthKeeping);
+        if (winners.size() >= MAX_NODES_IN_APPLICABILITY_CACHE) {
+            winners.clear();
+        }
+        winners.put(winnerKey, winner);
+    }
+
+    /**
+     * Forgets everything we know about a node, e.g. because it has been
+     * deleted.
+     * 
+     * @param nodeName The name of the node.
+     */
+    void forgetNode(@NonNull final String nodeName) {
+        final Map<String, RememberedWinner> winners = rememberedWinners;
+        if (winners != null) {
+            final String prefix = nodeName + '/';
+            winners.keySet().removeIf(k -> k.startsWith(prefix));
+        }
+        final Map<String, Applicability> cache = applicabilityByNode;
+        if (cache != null) {
+            cache.remove(nodeName);
+        }
+    }
+
+    /**
+     * Tells us how many things we remember having worked. Only exists for
+     * tests.
+     */
+    @Restricted(NoExternalUse.class)
+    int countRememberedWinners() {
+        final Map<String, RememberedWinner> winners = rememberedWinners;
+        return winners == null ? 0 : winners.size();
+    }
+
+    /**
+     * Looks up what worked last time and checks it's still valid: not too old,
+     * the installer that produced it still applies to the node, and the tool
+     * home it gave us still exists. If the installer was an
+     * {@link AuthenticatedZipExtractionInstaller} then the installation is
+     * leased and marked as used, just as if it had been installed again.
+     * 
+     * @return The tool home from last time, or null if we have to go through
+     *         our installers again.
+     */
+    @CheckForNull
+    private FilePath recallWinner(final String winnerKey, @CheckForNull final ToolInstallation tool,
+            final Node node, final Map<Integer, ToolInstaller> applicableInstallersByIndex)
+            throws InterruptedException {
+        final Map<String, RememberedWinner> winners = getRememberedWinners();
+        final RememberedWinner winner = winners.get(winnerKey);
+        if (winner == null) {
+            return null;
+        }
+        final ToolInstaller installer = applicableInstallersByIndex.get(winner.indexOfConfiguredInstaller);
+        final long maxAgeMillis = TimeUnit.MINUTES.toMillis(REMEMBER_WINNER_MINUTES);
+        final boolean stillValid = installer != null
+                && winner.installerId.equals(calcInstallerId(winner.indexOfConfiguredInstaller, installer))
+                && System.currentTimeMillis() - winner.rememberedAt < maxAgeMillis
+                && (tool != null || !(installer instanceof AuthenticatedZipExtractionInstaller));
+        final FilePath toolHome = stillValid ? node.createPath(winner.remotePath) : null;
+        try {
+            if (toolHome != null && tool != null && installer instanceof AuthenticatedZipExtractionInstaller) {
+                ((AuthenticatedZipExtractionInstaller) installer).reuseInstallation(tool, node, toolHome);
+            }
+            if (toolHome != null && toolHome.exists()) {
+                return toolHome;
+            }
+        } catch (IOException ex) {
+            // we'll find out what's wrong when we try our installers
+        }
+        winners.remove(winnerKey, winner);
+        return null;
+    }
+
+    /** An installation that worked. */
+    private static final class RememberedWinner {
+        private final Integer indexOfConfiguredInstaller;
+        private final String installerId;
+        private final String remotePath;
+        private final long rememberedAt;
+
+        RememberedWinner(Integer indexOfConfiguredInstaller, String installerId, String remotePath,
+                long rememberedAt) {
+            this.indexOfConfiguredInstaller = indexOfConfiguredInstaller;
+            this.installerId = installerId;
+            this.remotePath = remotePath;
+            this.rememberedAt = rememberedAt;
+        }
+    }
+
+    /**
+     * Asks an installer to install.
+     */
+    private static FilePath attemptInstallation(final ToolInstaller installer, final ToolInstallation tool,
+            final Node node, final TaskListener log, @CheckForNull final ExecutablesLocator executablesLocator)
+            throws IOException, InterruptedException {
+        if (installer instanceof IsAlreadyOnPath && executablesLocator != null) {
+            final Map<String, FoundExecutable> executablesAlreadyLocated = executablesLocator.get();
+            if (executablesAlreadyLocated != null) {
+                return ((IsAlreadyOnPath) installer).performInstallation(tool, node, log, executablesAlreadyLocated);
+            }
+        }
+        return installer.performInstallation(tool, node, log);
+    }
+
+    /**
+     * Determines whether an installer merely looks for something that's
+     * already there, meaning that it is quick, has no side-effects and can
+     * safely be abandoned part way through.
+     * 
+     * @param installer The installer.
+     * @return true if it's safe to race it against others.
+     */
+    static boolean isProbe(final ToolInstaller installer) {
+        return installer instanceof IsAlreadyOnPath || installer instanceof SharedDirectoryInstaller;
+    }
+
+    /**
+     * Gives all the specified installers their first attempt, all at once,
+     * returning the first success and cancelling the rest.
+     * If we have a deadline then we stop waiting for them once it has passed.
+     * 
+     * @return The first successful result, or null if they all failed (or
+     *         we ran out of time).
+     */
+    @CheckForNull
+    private FilePath raceInstallers(final ToolInstallation tool, final Node node, final TaskListener log,
+            final AttemptRecorder recorder, final Map<Integer, ToolInstaller> installersByIndex,
+            final Map<Integer, String> installerNamesByIndex,
+            @CheckForNull final ExecutablesLocator executablesLocator,
+            final List<Exception> exceptionsEncountered, final Set<Integer> installersNotWorthRetrying,
+            final int numberOfConfiguredInstallers,
+            final int maxWholeListAttempts, final int maxAttemptsPerInstaller, final long startNanos)
+            throws InterruptedException {
+        final int deadline = getDeadlineSeconds();
+        final long deadlineNanos = startNanos + TimeUnit.SECONDS.toNanos(deadline);
+        final CompletionService<FilePath> race = new ExecutorCompletionService<>(Computer.threadPoolForRemoting);
+        final Map<Future<FilePath>, Integer> indexesOfRunners = new IdentityHashMap<>(installersByIndex.size());
+        final long raceStartNanos = nanoTime();
+        try {
+            for (final Map.Entry<Integer, ToolInstaller> entry : installersByIndex.entrySet()) {
+                final ToolInstaller installer = entry.getValue();
+                final Future<FilePath> runner = race
+                        .submit(() -> attemptInstallation(installer, tool, node, log, executablesLocator));
+                indexesOfRunners.put(runner, entry.getKey());
+            }
+            for (int i = 0; i < installersByIndex.size(); i++) {
+                final Future<FilePath> finished = deadline > 0
+                        ? race.poll(deadlineNanos - nanoTime(), TimeUnit.NANOSECONDS)
+                        : race.take();
+                if (finished == null) {
+                    return null; // out of time; the rest get cancelled below
+                }
+                final Integer indexOfConfiguredInstaller = indexesOfRunners.get(finished);
+                try {
+                    final FilePath result = finished.get();
+                    recordAttempt(recorder, indexOfConfiguredInstaller, 1, 1, result, null, raceStartNanos);
+                    return result; // success
+                } catch (ExecutionException ee) {
+                    final Throwable cause = ee.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    final Exception ex = cause instanceof Exception ? (Exception) cause : ee;
+                    recordAttempt(recorder, indexOfConfiguredInstaller, 1, 1, null, ex, raceStartNanos);
+                    exceptionsEncountered.add(ex);
+                    if (isNotWorthRetrying(ex)) {
+                        installersNotWorthRetrying.add(indexOfConfiguredInstaller);
+                    }
+                    logAttempt(log, ex.toString(), 1, maxWholeListAttempts, numberOfConfiguredInstallers,
+                            indexOfConfiguredInstaller, installerNamesByIndex.get(indexOfConfiguredInstaller),
+                            maxAttemptsPerInstaller, 1);
+                }
+            }
+            return null;
+        } finally {
+            for (final Future<FilePath> runner : indexesOfRunners.keySet()) {
+                runner.cancel(true);
+            }
+        }
+    }
+
     @NonNull
     private List<? extends ToolInstaller> getOurInstallers() {
         if (installers == null || installers.installers == null) {
@@ -208,17 +902,137 @@ public class AnyOfInstaller extends ToolInstaller {
      * @return A Map of installers, indexed by where they were in the list
      *         (starting from 1).
      */
-    private static Map<Integer, ToolInstaller> calcInstallersThatApplyToNode(final Node node,
+    private Map<Integer, ToolInstaller> calcInstallersThatApplyToNode(final Node node,
             final List<? extends ToolInstaller> installers) {
-        final Map<Integer, ToolInstaller> allApplicableInstallersByIndex = new LinkedHashMap<>(installers.size());
-        int index = 0;
+        final BitSet applicable = calcApplicability(node, installers);
+        final Map<Integer, ToolInstaller> allApplicableInstallersByIndex = new LinkedHashMap<>(
+                applicable.cardinality());
+        for (int i = applicable.nextSetBit(0); i >= 0; i = applicable.nextSetBit(i + 1)) {
+            allApplicableInstallersByIndex.put(i + 1, installers.get(i));
+        }
+        return allApplicableInstallersByIndex;
+    }
+
+    /**
+     * Determines which installers <code>appliesTo</code> the given node,
+     * re-using our previous answer for that node unless its labels have
+     * changed since. Jenkins asks us this a lot, and evaluating every
+     * installer's label expression every time adds up.
+     * <p>
+     * Note: This assumes that whether or not an installer applies to a node
+     * depends only on the node's labels, which is the case for
+     * {@link ToolInstaller#appliesTo(Node)}.
+     * </p>
+     * 
+     * @param node       The node
+     * @param installers All our installers.
+     * @return Bit <i>n</i> is set if installer <i>n</i> (counting from 0)
+     *         applies. Callers must not modify this.
+     */
+    @NonNull
+    private BitSet calcApplicability(final Node node, final List<? extends ToolInstaller> installers) {
+        final InstallSourceProperty ourInstallers = this.installers;
+        final Set<LabelAtom> nodeLabels = node.getAssignedLabels();
+        final String nodeName = Util.fixNull(node.getNodeName());
+        Map<String, Applicability> cache = applicabilityByNode;
+        if (cache != null) {
+            final Applicability cached = cache.get(nodeName);
+            if (cached != null && cached.installers == ourInstallers && cached.nodeLabels.equals(nodeLabels)) {
+                return cached.applicable;
+            }
+        }
+        final BitSet applicable = new BitSet(installers.size());
+        for (int i = 0; i < installers.size(); i++) {
+            if (installers.get(i).appliesTo(node)) {
+                applicable.set(i);
+            }
+        }
+        if (cache == null || cache.size() >= MAX_NODES_IN_APPLICABILITY_CACHE) {
+            cache = new ConcurrentHashMap<>();
+            applicabilityByNode = cache;
+        }
+        cache.put(nodeName, new Applicability(ourInstallers, nodeLabels, applicable));
+        return applicable;
+    }
+
+    /** Which of our installers applied to a node, and why. */
+    private static final class Applicability {
+        /** The installers we had at the time. */
+        @CheckForNull
+        private final InstallSourceProperty installers;
+        /** The node's labels at the time. */
+        private final Set<LabelAtom> nodeLabels;
+        private final BitSet applicable;
+
+        Applicability(@CheckForNull InstallSourceProperty installers, Set<LabelAtom> nodeLabels, BitSet applicable) {
+            this.installers = installers;
+            this.nodeLabels = nodeLabels;
+            this.applicable = applicable;
+        }
+    }
+
+    /**
+     * If we have several {@link IsAlreadyOnPath} installers then we look for
+     * all their executables in one go, rather than each of them making their
+     * own call to the node. Installers that customize their search path do
+     * their own search.
+     * 
+     * @param node
+     *            The node
+     * @param installers
+     *            The installers that apply to the node.
+     * @return The executables that were found, or null if there was no point
+     *         looking or if looking failed.
+     */
+    @CheckForNull
+    private static Map<String, FoundExecutable> locateExecutablesInOneGo(final Node node,
+            final Collection<ToolInstaller> installers) throws InterruptedException {
+        final Set<String> executableNames = new LinkedHashSet<>();
         for (final ToolInstaller installer : installers) {
-            index++;
-            if (installer.appliesTo(node)) {
-                allApplicableInstallersByIndex.put(index, installer);
+            if (installer instanceof IsAlreadyOnPath && ((IsAlreadyOnPath) installer).searchesDefaultPath()) {
+                final String exeName = ((IsAlreadyOnPath) installer).getExecutableName();
+                if (exeName != null) {
+                    executableNames.add(exeName);
+                }
             }
         }
-        return allApplicableInstallersByIndex;
+        if (executableNames.size() < 2) {
+            return null;
+        }
+        try {
+            return IsAlreadyOnPath.findExecutablesOnNode(node, executableNames);
+        } catch (IOException | RuntimeException ex) {
+            // each installer will have to look for itself, and report any problems
+            LOGGER.log(Level.FINE, "Failed to look for " + executableNames + " on " + node.getDisplayName(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Calls {@link #locateExecutablesInOneGo(Node, Collection)} the first time
+     * an {@link IsAlreadyOnPath} installer is about to run, so we don't pay for
+     * the search if an earlier installer works.
+     */
+    private static final class ExecutablesLocator {
+        private final Node node;
+        private final List<ToolInstaller> installers;
+        private boolean located;
+        @CheckForNull
+        private Map<String, FoundExecutable> executables;
+
+        ExecutablesLocator(final Node node, final Collection<ToolInstaller> installers) {
+            this.node = node;
+            this.installers = new ArrayList<>(installers);
+        }
+
+        @CheckForNull
+        synchronized Map<String, FoundExecutable> get() throws InterruptedException {
+            if (!located) {
+                executables = locateExecutablesInOneGo(node, installers);
+                located = true;
+            }
+            return executables;
+        }
     }
 
     /**
@@ -328,5 +1142,21 @@ public class AnyOfInstaller extends ToolInstaller {
         public FormValidation doCheckAttemptsOfWholeList(@QueryParameter String value) {
             return FormValidation.validatePositiveInteger(value);
         }
+
+        public FormValidation doCheckRetryDelaySeconds(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckLoopDelaySeconds(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckMaxDelaySeconds(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
+        public FormValidation doCheckDeadlineSeconds(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
     }
 }
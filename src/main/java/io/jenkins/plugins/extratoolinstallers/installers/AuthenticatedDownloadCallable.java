@@ -6,6 +6,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Serial;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
@@ -48,8 +49,6 @@ class AuthenticatedDownloadCallable extends MasterToSlaveFileCallable<Date> {
     private final String usernameOrNull;
     @CheckForNull
     private final String passwordOrNull;
-    @CheckForNull
-    private final Long timestampOfLocalContents;
     @NonNull
     private final String nodeName;
     @CheckForNull
@@ -57,11 +56,20 @@ class AuthenticatedDownloadCallable extends MasterToSlaveFileCallable<Date> {
 
     private final boolean fallbackToExistingInstallation;
 
+    private final boolean trustPreinstalledContents;
+
+    private final double diskSpaceExpansionFactor;
+
+    private final boolean versionedInstallations;
+
     /**
      * Passed to {@link FilePath#act(hudson.FilePath.FileCallable)} in order to
      * run
-     * {@link #doDownload(ClassicHttpResponse, FilePath, TaskListener, URI, String, String)}
-     * on a remote node.
+     * {@link #installIfNecessary(URI, String, String, String, FilePath, TaskListener, boolean, boolean, double)}
+     * (or
+     * {@link #installVersionIfNecessary(URI, String, String, String, FilePath, TaskListener, boolean, boolean, double)})
+     * on a remote node, so that the whole installation costs a single remote
+     * call.
      *
      * @param uri
      *            What to download.
@@ -70,33 +78,283 @@ class AuthenticatedDownloadCallable extends MasterToSlaveFileCallable<Date> {
      *            download.
      * @param passwordOrNull
      *            Password for the username, or null for no password.
-     * @param timestampOfLocalContents
-     *            null for an unconditional download, else the timestamp of what
-     *            we have locally.
      * @param nodeName
      *            The name of the node we are downloading onto. Used for logging
      *            purposes only.
      * @param logOrNull
      *            Where to log build progress. Can be null to suppress the
      *            normal running commentary.
+     * @param fallbackToExistingInstallation
+     *            See
+     *            {@link AuthenticatedZipExtractionInstaller#isFallbackToExistingInstallation()}.
+     * @param trustPreinstalledContents
+     *            See
+     *            {@link AuthenticatedZipExtractionInstaller#isTrustPreinstalledContents()}.
+     * @param diskSpaceExpansionFactor
+     *            How many times the download size must be free on disk before
+     *            we unpack. Zero or less disables the check.
+     * @param versionedInstallations
+     *            See
+     *            {@link AuthenticatedZipExtractionInstaller#isVersionedInstallations()}.
      */
     AuthenticatedDownloadCallable(@NonNull URI uri, @CheckForNull String usernameOrNull,
-            @CheckForNull String passwordOrNull, @CheckForNull Long timestampOfLocalContents, @NonNull String nodeName,
-            @CheckForNull TaskListener logOrNull, boolean fallbackToExistingInstallation) {
+            @CheckForNull String passwordOrNull, @NonNull String nodeName, @CheckForNull TaskListener logOrNull,
+            boolean fallbackToExistingInstallation, boolean trustPreinstalledContents,
+            double diskSpaceExpansionFactor, boolean versionedInstallations) {
         this.uri = uri;
         this.usernameOrNull = usernameOrNull;
         this.passwordOrNull = passwordOrNull;
-        this.timestampOfLocalContents = timestampOfLocalContents;
         this.nodeName = nodeName;
         this.logOrNull = logOrNull;
         this.fallbackToExistingInstallation = fallbackToExistingInstallation;
+        this.trustPreinstalledContents = trustPreinstalledContents;
+        this.diskSpaceExpansionFactor = diskSpaceExpansionFactor;
+        this.versionedInstallations = versionedInstallations;
     }
 
     @Override
     public Date invoke(@NonNull File d, VirtualChannel channel) throws IOException, InterruptedException {
-        final FilePath whereToDownloadTo = new FilePath(d);
-        return downloadAndUnpack(uri, usernameOrNull, passwordOrNull, timestampOfLocalContents, nodeName,
-                whereToDownloadTo, logOrNull, fallbackToExistingInstallation);
+        final FilePath whereToInstall = new FilePath(d);
+        if (versionedInstallations) {
+            return installVersionIfNecessary(uri, usernameOrNull, passwordOrNull, nodeName, whereToInstall, logOrNull,
+                    fallbackToExistingInstallation, trustPreinstalledContents, diskSpaceExpansionFactor);
+        }
+        return installIfNecessary(uri, usernameOrNull, passwordOrNull, nodeName, whereToInstall, logOrNull,
+                fallbackToExistingInstallation, trustPreinstalledContents, diskSpaceExpansionFactor);
+    }
+
+    /**
+     * Does everything needed to ensure that a folder contains up-to-date
+     * contents from the given URI: Checks what was installed before, downloads
+     * and unpacks if necessary, makes the contents executable and records what
+     * was installed for next time.
+     * <p>
+     * This is intended to be run on the node that owns the folder; if run
+     * elsewhere, every file operation becomes a remote call.
+     * </p>
+     *
+     * @param uri
+     *            What to download.
+     * @param usernameOrNull
+     *            Username to authenticate as, or null for an anonymous
+     *            download.
+     * @param passwordOrNull
+     *            Password for the username, or null for no password.
+     * @param nodeName
+     *            The name of the node we are installing onto. Used for logging
+     *            purposes only.
+     * @param dir
+     *            The installation folder.
+     * @param logOrNull
+     *            Where to log build progress. Can be null to suppress the
+     *            normal running commentary.
+     * @param fallbackToExistingInstallation
+     *            If true then an existing installation is acceptable if the
+     *            server returns an unexpected response.
+     * @param trustPreinstalledContents
+     *            If true then existing contents that was installed from the
+     *            same URI is used without checking with the server.
+     * @param diskSpaceExpansionFactor
+     *            How many times the download size must be free on disk before
+     *            we unpack. Zero or less disables the check.
+     * @return last-modified date of the remote contents if the contents was
+     *         downloaded. null if we did not download but did not error.
+     * @throws HttpGetException
+     *             if we got a bad response from the webserver.
+     * @throws InsufficientDiskSpaceException
+     *             if there isn't enough disk space to unpack the download.
+     * @throws IOException
+     *             if we failed to download for other reasons.
+     * @throws InterruptedException
+     *             if we were interrupted.
+     */
+    static Date installIfNecessary(@NonNull final URI uri, @CheckForNull final String usernameOrNull,
+            @CheckForNull final String passwordOrNull, @NonNull final String nodeName, @NonNull final FilePath dir,
+            @CheckForNull final TaskListener logOrNull, final boolean fallbackToExistingInstallation,
+            final boolean trustPreinstalledContents, final double diskSpaceExpansionFactor)
+            throws IOException, InterruptedException {
+        final Long timestampOfLocalContents;
+        final FilePath timestamp = dir.child(AuthenticatedZipExtractionInstaller.TIMESTAMP_FILENAME);
+        if (timestamp.exists()) {
+            timestampOfLocalContents = timestamp.lastModified();
+        } else {
+            timestampOfLocalContents = null;
+        }
+        final String url = uri.toString();
+        final FilePath installedFrom = dir.child(AuthenticatedZipExtractionInstaller.INSTALLED_FROM_FILENAME);
+        if (trustPreinstalledContents && timestampOfLocalContents != null && isInstalledFrom(installedFrom, url)) {
+            if (logOrNull != null) {
+                final String msg = Messages.AuthenticatedZipExtractionInstaller_preinstalled_contents(uri,
+                        dir.getRemote(), nodeName);
+                logOrNull.getLogger().println(msg);
+            }
+            markAsUsed(dir);
+            return null;
+        }
+        final Date timestampOfRemoteResource = downloadAndUnpack(uri, usernameOrNull, passwordOrNull,
+                timestampOfLocalContents, nodeName, dir, logOrNull, fallbackToExistingInstallation,
+                diskSpaceExpansionFactor);
+        if (timestampOfRemoteResource != null) {
+            dir.act(new AuthenticatedZipExtractionInstaller.ChmodRecAPlusX());
+            installedFrom.write(url, StandardCharsets.UTF_8.name());
+            timestamp.touch(timestampOfRemoteResource.getTime());
+        }
+        markAsUsed(dir);
+        return timestampOfRemoteResource;
+    }
+
+    /**
+     * Does the same as
+     * {@link #installIfNecessary(URI, String, String, String, FilePath, TaskListener, boolean, boolean, double)}
+     * except that, instead of replacing the contents of the installation
+     * folder, each download is unpacked into a new version folder within it
+     * and {@link AuthenticatedZipExtractionInstaller#CURRENT_VERSION_FILENAME}
+     * is then updated to say which version is current. Older versions are left
+     * for {@link ToolLeases} to delete once nothing is using them.
+     *
+     * @param dir
+     *            The installation folder, which holds the versions.
+     * @return last-modified date of the remote contents if the contents was
+     *         downloaded. null if we did not download but did not error.
+     * @throws IOException
+     *             if we failed to download, for any of the reasons given by
+     *             {@link #installIfNecessary(URI, String, String, String, FilePath, TaskListener, boolean, boolean, double)}.
+     * @throws InterruptedException
+     *             if we were interrupted.
+     * @see #getCurrentVersion(FilePath)
+     */
+    static Date installVersionIfNecessary(@NonNull final URI uri, @CheckForNull final String usernameOrNull,
+            @CheckForNull final String passwordOrNull, @NonNull final String nodeName, @NonNull final FilePath dir,
+            @CheckForNull final TaskListener logOrNull, final boolean fallbackToExistingInstallation,
+            final boolean trustPreinstalledContents, final double diskSpaceExpansionFactor)
+            throws IOException, InterruptedException {
+        final String url = uri.toString();
+        final FilePath current = getCurrentVersion(dir);
+        Long timestampOfLocalContents = null;
+        if (current != null) {
+            final FilePath timestamp = current.child(AuthenticatedZipExtractionInstaller.TIMESTAMP_FILENAME);
+            if (timestamp.exists()) {
+                timestampOfLocalContents = timestamp.lastModified();
+            }
+            final FilePath installedFrom = current
+                    .child(AuthenticatedZipExtractionInstaller.INSTALLED_FROM_FILENAME);
+            if (trustPreinstalledContents && timestampOfLocalContents != null
+                    && isInstalledFrom(installedFrom, url)) {
+                if (logOrNull != null) {
+                    final String msg = Messages.AuthenticatedZipExtractionInstaller_preinstalled_contents(uri,
+                            current.getRemote(), nodeName);
+                    logOrNull.getLogger().println(msg);
+                }
+                markAsUsed(current);
+                markAsUsed(dir);
+                return null;
+            }
+        }
+        final FilePath newVersion = calcNewVersionFolder(dir);
+        Date timestampOfRemoteResource;
+        try {
+            timestampOfRemoteResource = downloadAndUnpack(uri, usernameOrNull, passwordOrNull,
+                    timestampOfLocalContents, nodeName, newVersion, logOrNull, false, diskSpaceExpansionFactor);
+        } catch (HttpGetException ex) {
+            // we never download over the current version, so the fallback
+            // decision is ours to make, not downloadAndUnpack's.
+            final Integer status = ex.getHttpStatusCode();
+            if (!fallbackToExistingInstallation || current == null || status == null) {
+                throw ex;
+            }
+            if (logOrNull != null) {
+                logOrNull.getLogger().println(Messages.AuthenticatedDownloadCallable_fallback_to_existing(status));
+            }
+            timestampOfRemoteResource = null;
+        } catch (IOException | InterruptedException ex) {
+            // don't leave a half-unpacked version lying around
+            if (newVersion.exists()) {
+                newVersion.deleteRecursive();
+            }
+            throw ex;
+        }
+        if (timestampOfRemoteResource == null) {
+            if (current != null) {
+                markAsUsed(current);
+            }
+            markAsUsed(dir);
+            return null;
+        }
+        newVersion.act(new AuthenticatedZipExtractionInstaller.ChmodRecAPlusX());
+        newVersion.child(AuthenticatedZipExtractionInstaller.INSTALLED_FROM_FILENAME).write(url,
+                StandardCharsets.UTF_8.name());
+        newVersion.child(AuthenticatedZipExtractionInstaller.TIMESTAMP_FILENAME)
+                .touch(timestampOfRemoteResource.getTime());
+        markAsUsed(newVersion);
+        markAsUsed(dir);
+        // only now is the new version ready for use
+        dir.child(AuthenticatedZipExtractionInstaller.CURRENT_VERSION_FILENAME).write(newVersion.getName(),
+                StandardCharsets.UTF_8.name());
+        return timestampOfRemoteResource;
+    }
+
+    /**
+     * Finds the current version within an installation folder that holds
+     * versioned installations.
+     *
+     * @param dir
+     *            The installation folder.
+     * @return The current version's folder, or null if there isn't one.
+     */
+    @CheckForNull
+    static FilePath getCurrentVersion(@NonNull final FilePath dir) throws IOException, InterruptedException {
+        final FilePath currentVersion = dir.child(AuthenticatedZipExtractionInstaller.CURRENT_VERSION_FILENAME);
+        if (!currentVersion.exists()) {
+            return null;
+        }
+        final String name = currentVersion.readToString().trim();
+        if (name.isEmpty()) {
+            return null;
+        }
+        final FilePath result = dir.child(name);
+        return result.isDirectory() ? result : null;
+    }
+
+    /** Picks a name for a new version folder that isn't already in use. */
+    @NonNull
+    private static FilePath calcNewVersionFolder(@NonNull final FilePath dir)
+            throws IOException, InterruptedException {
+        long suffix = System.currentTimeMillis();
+        FilePath result;
+        do {
+            result = dir.child(AuthenticatedZipExtractionInstaller.VERSION_FOLDER_PREFIX + suffix++);
+        } while (result.exists());
+        return result;
+    }
+
+    /**
+     * Records that an installation folder is still in use, so that
+     * {@link UnusedToolInstallationsCleaner} leaves it alone.
+     */
+    private static void markAsUsed(@NonNull final FilePath dir) throws IOException, InterruptedException {
+        if (dir.exists()) {
+            dir.child(UnusedToolInstallationsCleaner.LAST_USED_FILENAME).touch(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Tests whether the contents of an installation folder came from the given
+     * URL.
+     *
+     * @param installedFrom
+     *            The
+     *            {@link AuthenticatedZipExtractionInstaller#INSTALLED_FROM_FILENAME}
+     *            file in the installation folder.
+     * @param url
+     *            The URL we would download from.
+     * @return true if the folder records that it was installed from the URL.
+     */
+    private static boolean isInstalledFrom(@NonNull final FilePath installedFrom, @NonNull final String url)
+            throws IOException, InterruptedException {
+        if (!installedFrom.exists()) {
+            return false;
+        }
+        return url.equals(installedFrom.readToString().trim());
     }
 
     /**
@@ -125,10 +383,15 @@ class AuthenticatedDownloadCallable extends MasterToSlaveFileCallable<Date> {
      * @param logOrNull
      *            Where to log build progress. Can be null to suppress the
      *            normal running commentary.
+     * @param diskSpaceExpansionFactor
+     *            How many times the download size must be free on disk before
+     *            we unpack. Zero or less disables the check.
      * @return last-modified date of the remote contents if the contents was
      *         downloaded. null if we did not download but did not error.
      * @throws HttpGetException
      *             if we got a bad response from the webserver.
+     * @throws InsufficientDiskSpaceException
+     *             if there isn't enough disk space to unpack the download.
      * @throws IOException
      *             if we failed to download for other reasons.
      * @throws InterruptedException
@@ -137,7 +400,8 @@ class AuthenticatedDownloadCallable extends MasterToSlaveFileCallable<Date> {
     static Date downloadAndUnpack(@NonNull final URI uri, @CheckForNull final String usernameOrNull,
             @CheckForNull final String passwordOrNull, @CheckForNull final Long timestampOfLocalContents,
             @NonNull final String nodeName, @CheckForNull final FilePath whereToDownloadToOrNull,
-            @CheckForNull final TaskListener logOrNull, final boolean fallbackToExistingInstallation) throws IOException, InterruptedException {
+            @CheckForNull final TaskListener logOrNull, final boolean fallbackToExistingInstallation,
+            final double diskSpaceExpansionFactor) throws IOException, InterruptedException {
         try (CloseableHttpClient httpClient = HttpClients.createDefault()) {
             final HttpClientContext httpClientContext = HttpClientContext.create();
             final HttpUriRequestBase httpRequest;
@@ -210,7 +474,8 @@ class AuthenticatedDownloadCallable extends MasterToSlaveFileCallable<Date> {
                         httpRequest.abort();
                         return null;
                     } else {
-                        doDownload(httpResponse, whereToDownloadToOrNull, logOrNull, uri, usernameOrNull, nodeName);
+                        doDownload(httpResponse, whereToDownloadToOrNull, logOrNull, uri, usernameOrNull, nodeName,
+                                diskSpaceExpansionFactor);
                     }
                 }
                 return dateOfRemoteContents;
@@ -250,8 +515,12 @@ class AuthenticatedDownloadCallable extends MasterToSlaveFileCallable<Date> {
 
     private static void doDownload(@NonNull final ClassicHttpResponse httpResponse, @NonNull final FilePath whereToDownloadTo,
             @CheckForNull final TaskListener logOrNull, @NonNull final URI uri,
-            @CheckForNull final String usernameOrNull, @NonNull final String nodeName)
-            throws IOException, InterruptedException {
+            @CheckForNull final String usernameOrNull, @NonNull final String nodeName,
+            final double diskSpaceExpansionFactor) throws IOException, InterruptedException {
+        final long expectedContentLength = httpResponse.getEntity().getContentLength();
+        // check before we delete anything, else we could lose what we had as
+        // well as failing to unpack what we wanted.
+        checkDiskSpace(whereToDownloadTo, expectedContentLength, diskSpaceExpansionFactor, uri, nodeName);
         if (whereToDownloadTo.exists()) {
             whereToDownloadTo.deleteContents();
             if (logOrNull != null) {
@@ -274,7 +543,6 @@ class AuthenticatedDownloadCallable extends MasterToSlaveFileCallable<Date> {
             }
         }
         final boolean isZipNotGzip = uri.getPath().endsWith(".zip");
-        final long expectedContentLength = httpResponse.getEntity().getContentLength();
         try (final BoundedInputStream bis = BoundedInputStream.builder().setInputStream(httpResponse.getEntity().getContent()).get()) {
             try {
                 if (isZipNotGzip) {
@@ -290,6 +558,66 @@ class AuthenticatedDownloadCallable extends MasterToSlaveFileCallable<Date> {
         }
     }
 
+    /**
+     * Ensures that there's enough free disk space to unpack a download.
+     *
+     * @param whereToDownloadTo
+     *            Where we'll unpack to. Need not exist yet.
+     * @param contentLength
+     *            The size of the download, or -ve if unknown.
+     * @param expansionFactor
+     *            How many times the download size must be free. Zero or less
+     *            disables the check.
+     * @throws InsufficientDiskSpaceException
+     *             if there isn't enough space.
+     */
+    private static void checkDiskSpace(@NonNull final FilePath whereToDownloadTo, final long contentLength,
+            final double expansionFactor, @NonNull final URI uri, @NonNull final String nodeName)
+            throws IOException, InterruptedException {
+        if (contentLength <= 0 || expansionFactor <= 0) {
+            return;
+        }
+        FilePath existingFolder = whereToDownloadTo;
+        while (existingFolder != null && !existingFolder.exists()) {
+            existingFolder = existingFolder.getParent();
+        }
+        if (existingFolder == null) {
+            return;
+        }
+        final long usableSpace = existingFolder.getUsableDiskSpace();
+        final long requiredSpace = (long) (contentLength * expansionFactor);
+        if (usableSpace < requiredSpace) {
+            throw new InsufficientDiskSpaceException(uri.toString(), whereToDownloadTo.getRemote(), nodeName,
+                    requiredSpace, usableSpace);
+        }
+    }
+
+    /**
+     * Indicates that there isn't enough free disk space to unpack a download.
+     */
+    static class InsufficientDiskSpaceException extends IOException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        private final long requiredSpace;
+        private final long usableSpace;
+
+        InsufficientDiskSpaceException(@NonNull final String uri, @NonNull final String folder,
+                @NonNull final String nodeName, final long requiredSpace, final long usableSpace) {
+            super(Messages.AuthenticatedZipExtractionInstaller_insufficient_disk_space(uri, folder, nodeName,
+                    requiredSpace, usableSpace));
+            this.requiredSpace = requiredSpace;
+            this.usableSpace = usableSpace;
+        }
+
+        public long getRequiredSpace() {
+            return requiredSpace;
+        }
+
+        public long getUsableSpace() {
+            return usableSpace;
+        }
+    }
+
     /**
      * Indicates that we were able to talk to the server but we did not like
      * what it said.
@@ -48,6 +48,7 @@ import hudson.util.ListBoxModel;
 import hudson.util.Secret;
 import jenkins.MasterToSlaveFileCallable;
 import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 
 /**
  * A {@link ToolInstaller} that downloads a zip or tar.gz and unpacks it in
@@ -67,6 +68,43 @@ public class AuthenticatedZipExtractionInstaller extends ToolInstaller {
 
     private boolean fallbackToExistingInstallation;
 
+    private boolean trustPreinstalledContents;
+
+    private boolean versionedInstallations;
+
+    /**
+     * Name of the file, within the installation folder, whose last-modified
+     * timestamp records the last-modified timestamp of the downloaded contents.
+     */
+    static final String TIMESTAMP_FILENAME = ".timestamp";
+
+    /**
+     * Name of the file, within the installation folder, that records the URL the
+     * contents were installed from.
+     */
+    static final String INSTALLED_FROM_FILENAME = ".installedFrom";
+
+    /**
+     * Name of the file, within the installation folder, that records which
+     * version folder is current when {@link #isVersionedInstallations()} is set.
+     */
+    static final String CURRENT_VERSION_FILENAME = ".currentVersion";
+
+    /**
+     * Start of the name of each version folder, within the installation folder,
+     * when {@link #isVersionedInstallations()} is set.
+     */
+    static final String VERSION_FOLDER_PREFIX = "version-";
+
+    /**
+     * How many times the size of a download must be free on disk before we'll
+     * delete the existing contents and unpack the download. Zero disables the
+     * check.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Can be changed from the script console")
+    static /* almost final */ double DISK_SPACE_EXPANSION_FACTOR = Double.parseDouble(SystemProperties
+            .getString(AuthenticatedZipExtractionInstaller.class.getName() + ".diskSpaceExpansionFactor", "2"));
+
     /**
      * Constructor that sets mandatory fields.
      * 
@@ -152,6 +190,52 @@ public class AuthenticatedZipExtractionInstaller extends ToolInstaller {
         this.fallbackToExistingInstallation = fallbackToExistingInstallation;
     }
 
+    /**
+     * If set, an installation folder that already holds contents installed from
+     * our {@link #getUrl()} (e.g. one that was restored from a snapshot baked
+     * into the agent's image) is used as-is, without asking the server whether
+     * there's anything newer.
+     * 
+     * @return true if pre-installed contents are trusted.
+     */
+    public boolean isTrustPreinstalledContents() {
+        return trustPreinstalledContents;
+    }
+
+    /**
+     * Sets {@link #isTrustPreinstalledContents()}.
+     * 
+     * @param trustPreinstalledContents
+     *            New value.
+     */
+    @DataBoundSetter
+    public void setTrustPreinstalledContents(boolean trustPreinstalledContents) {
+        this.trustPreinstalledContents = trustPreinstalledContents;
+    }
+
+    /**
+     * If set, each download is unpacked into a new folder, alongside the
+     * version(s) it replaces, instead of deleting the existing contents first.
+     * Builds that are still using an older version can carry on using it, and
+     * it's deleted once they have finished (see {@link ToolLeases}).
+     * 
+     * @return true if each version gets its own folder.
+     */
+    public boolean isVersionedInstallations() {
+        return versionedInstallations;
+    }
+
+    /**
+     * Sets {@link #isVersionedInstallations()}.
+     * 
+     * @param versionedInstallations
+     *            New value.
+     */
+    @DataBoundSetter
+    public void setVersionedInstallations(boolean versionedInstallations) {
+        this.versionedInstallations = versionedInstallations;
+    }
+
     @Override
     public FilePath performInstallation(@NonNull ToolInstallation tool, @NonNull Node node,
             @CheckForNull TaskListener log) throws IOException, InterruptedException {
@@ -176,28 +260,89 @@ public class AuthenticatedZipExtractionInstaller extends ToolInstaller {
             passwordOrNull = getPasswordFromCredentials(credentialsOrNull);
         }
         final FilePath dir = preferredLocation(tool, node);
-        final Long timestampOfLocalContents;
-        final FilePath timestamp = dir.child(".timestamp");
-        if (timestamp.exists()) {
-            timestampOfLocalContents = timestamp.lastModified();
-        } else {
-            timestampOfLocalContents = null;
-        }
         final String nodeName = node.getDisplayName();
         /*
          * if (log != null) { log.getLogger()
          * .println(this.getClass().getSimpleName() + ": credentialsId=" +
          * credentialsIdOrNull + ", user=" + usernameOrNull + ", pwd=" +
          * passwordOrNull + ", uri=" + uri.toString() +
-         * ", timestampOfLocalContents=" + timestampOfLocalContents +
          * ", nodeName=" + nodeName); }
          */
-        final Date timestampOfRemoteResource = downloadOnNodeWithFallbackToMaster(uri, timestampOfLocalContents,
-                usernameOrNull, passwordOrNull, nodeName, dir, log);
-        if (timestampOfRemoteResource != null) {
-            dir.act(new ChmodRecAPlusX());
-            timestamp.touch(timestampOfRemoteResource.getTime());
+        installOnNodeWithFallbackToMaster(uri, usernameOrNull, passwordOrNull, nodeName, dir, log);
+        if (!versionedInstallations) {
+            return getSubdirOf(dir);
         }
+        final FilePath currentVersion = AuthenticatedDownloadCallable.getCurrentVersion(dir);
+        if (currentVersion == null) {
+            throw new ExtraToolInstallersException(this,
+                    Messages.AuthenticatedZipExtractionInstaller_no_current_version(dir.getRemote(), nodeName));
+        }
+        final String owner = ToolLeases.getCurrentOwner();
+        if (owner != null) {
+            ToolLeases.get().acquire(owner, Util.fixNull(node.getNodeName()), dir.getRemote(),
+                    currentVersion.getName());
+        }
+        try {
+            ToolLeases.deleteUnusedVersions(node, dir, log);
+        } catch (IOException ex) {
+            if (log != null) {
+                Functions.printStackTrace(ex,
+                        log.error(Messages.AuthenticatedZipExtractionInstaller_delete_unused_versions_failed(
+                                dir.getRemote(), nodeName)));
+            }
+        }
+        return getSubdirOf(currentVersion);
+    }
+
+    /**
+     * Records that an installation we made earlier is being handed out again
+     * without {@link #performInstallation(ToolInstallation, Node, TaskListener)}
+     * being called, e.g. because {@link AnyOfInstaller} remembered it. As
+     * with a normal installation, the version (if
+     * {@link #isVersionedInstallations()}) is leased to the current build and
+     * the installation is marked as used, so that neither
+     * {@link ToolLeases#deleteUnusedVersions} nor
+     * {@link UnusedToolInstallationsCleaner} deletes it while it's in use.
+     * 
+     * @param tool
+     *            The tool.
+     * @param node
+     *            The node it is installed on.
+     * @param toolHome
+     *            What we returned last time.
+     * @throws IOException
+     *             If we couldn't talk to the node.
+     * @throws InterruptedException
+     *             If we were interrupted.
+     */
+    void reuseInstallation(@NonNull ToolInstallation tool, @NonNull Node node, @NonNull FilePath toolHome)
+            throws IOException, InterruptedException {
+        final FilePath dir = preferredLocation(tool, node);
+        final long now = System.currentTimeMillis();
+        if (versionedInstallations) {
+            FilePath versionFolder = toolHome;
+            while (versionFolder != null && !dir.equals(versionFolder.getParent())) {
+                versionFolder = versionFolder.getParent();
+            }
+            if (versionFolder == null || !versionFolder.getName().startsWith(VERSION_FOLDER_PREFIX)) {
+                return;
+            }
+            final String owner = ToolLeases.getCurrentOwner();
+            if (owner != null) {
+                ToolLeases.get().acquire(owner, Util.fixNull(node.getNodeName()), dir.getRemote(),
+                        versionFolder.getName());
+            }
+            if (versionFolder.exists()) {
+                versionFolder.child(UnusedToolInstallationsCleaner.LAST_USED_FILENAME).touch(now);
+            }
+        }
+        if (dir.exists()) {
+            dir.child(UnusedToolInstallationsCleaner.LAST_USED_FILENAME).touch(now);
+        }
+    }
+
+    @NonNull
+    private FilePath getSubdirOf(@NonNull final FilePath dir) {
         final String subdirOrNull = getSubdir();
         if (subdirOrNull == null) {
             return dir;
@@ -206,8 +351,7 @@ public class AuthenticatedZipExtractionInstaller extends ToolInstaller {
         }
     }
 
-    private Date downloadOnNodeWithFallbackToMaster(@NonNull final URI uri,
-            @CheckForNull final Long timestampOfLocalContents, @CheckForNull final String usernameOrNull,
+    private Date installOnNodeWithFallbackToMaster(@NonNull final URI uri, @CheckForNull final String usernameOrNull,
             @CheckForNull final String passwordOrNull, @NonNull final String nodeName, @NonNull final FilePath dir,
             @CheckForNull final TaskListener logOrNull) throws IOException, InterruptedException {
         if (dir.isRemote()) {
@@ -217,8 +361,8 @@ public class AuthenticatedZipExtractionInstaller extends ToolInstaller {
              * nodeName); }
              */
             try {
-                final Date timestampOfRemoteResource = downloadOnRemoteNode(uri, timestampOfLocalContents,
-                        usernameOrNull, passwordOrNull, dir, logOrNull, nodeName);
+                final Date timestampOfRemoteResource = installOnRemoteNode(uri, usernameOrNull, passwordOrNull, dir,
+                        logOrNull, nodeName);
                 /*
                  * if (log != null) { if (timestampOfRemoteResource != null) {
                  * log.getLogger().println("Download from remote node " +
@@ -229,7 +373,8 @@ public class AuthenticatedZipExtractionInstaller extends ToolInstaller {
                  * nodeName + " skipped"); } }
                  */
                 return timestampOfRemoteResource;
-            } catch (AuthenticatedDownloadCallable.HttpGetException | InterruptedException ex) {
+            } catch (AuthenticatedDownloadCallable.HttpGetException
+                    | AuthenticatedDownloadCallable.InsufficientDiskSpaceException | InterruptedException ex) {
                 // No point retrying from master. The failure was not caused by
                 // our inability to talk to URI.
                 throw ex;
@@ -244,8 +389,8 @@ public class AuthenticatedZipExtractionInstaller extends ToolInstaller {
          * if (log != null) { log.getLogger().println(
          * "Trying download from master, piping data to node " + nodeName); }
          */
-        final Date timestampOfRemoteResource = downloadOnFromMaster(uri, timestampOfLocalContents, usernameOrNull,
-                passwordOrNull, dir, logOrNull, nodeName);
+        final Date timestampOfRemoteResource = installFromMaster(uri, usernameOrNull, passwordOrNull, dir, logOrNull,
+                nodeName);
         /*
          * if (log != null) { if (timestampOfRemoteResource != null) {
          * log.getLogger() .println("Download from master to node " + nodeName +
@@ -272,23 +417,74 @@ public class AuthenticatedZipExtractionInstaller extends ToolInstaller {
         return credentialsOrNull;
     }
 
+    /**
+     * Installs from the master. Used when the node couldn't do it itself, or if
+     * we are installing onto the master. Every step the installation takes on
+     * the node's filesystem is a separate remote call, so this is slower than
+     * {@link #installOnRemoteNode(URI, String, String, FilePath, TaskListener, String)}
+     * if the node is remote.
+     */
+    protected Date installFromMaster(@NonNull final URI uri, @CheckForNull final String usernameOrNull,
+            @CheckForNull final String passwordOrNull, @NonNull final FilePath dir,
+            @CheckForNull final TaskListener logOrNull, @NonNull final String nodeName)
+            throws IOException, InterruptedException {
+        if (versionedInstallations) {
+            return AuthenticatedDownloadCallable.installVersionIfNecessary(uri, usernameOrNull, passwordOrNull,
+                    nodeName, dir, logOrNull, fallbackToExistingInstallation, trustPreinstalledContents,
+                    DISK_SPACE_EXPANSION_FACTOR);
+        }
+        final Date timestampOfRemoteResource = AuthenticatedDownloadCallable.installIfNecessary(uri, usernameOrNull,
+                passwordOrNull, nodeName, dir, logOrNull, fallbackToExistingInstallation, trustPreinstalledContents,
+                DISK_SPACE_EXPANSION_FACTOR);
+        return timestampOfRemoteResource;
+    }
+
+    /**
+     * Installs on the node itself, doing everything (checking what we have
+     * already, downloading, unpacking, setting permissions, recording what we
+     * did) in a single remote call.
+     */
+    protected Date installOnRemoteNode(@NonNull final URI uri, @CheckForNull final String usernameOrNull,
+            @CheckForNull final String passwordOrNull, @NonNull final FilePath dir,
+            @CheckForNull final TaskListener logOrNull, @NonNull final String nodeName)
+            throws IOException, InterruptedException {
+        final AuthenticatedDownloadCallable nodeOperation = new AuthenticatedDownloadCallable(uri, usernameOrNull,
+                passwordOrNull, nodeName, logOrNull, fallbackToExistingInstallation, trustPreinstalledContents,
+                DISK_SPACE_EXPANSION_FACTOR, versionedInstallations);
+        final Date timestampOfRemoteResource = dir.act(nodeOperation);
+        return timestampOfRemoteResource;
+    }
+
+    /**
+     * Installs from the master.
+     *
+     * @deprecated Use
+     *             {@link #installFromMaster(URI, String, String, FilePath, TaskListener, String)},
+     *             which works out <code>timestampOfLocalContents</code> for
+     *             itself.
+     */
+    @Deprecated
     protected Date downloadOnFromMaster(@NonNull final URI uri, @CheckForNull final Long timestampOfLocalContents,
             @CheckForNull final String usernameOrNull, @CheckForNull final String passwordOrNull,
             @NonNull final FilePath dir, @CheckForNull final TaskListener logOrNull, @NonNull final String nodeName)
             throws IOException, InterruptedException {
-        final Date timestampOfRemoteResource = AuthenticatedDownloadCallable.downloadAndUnpack(uri, usernameOrNull,
-                passwordOrNull, timestampOfLocalContents, nodeName, dir, logOrNull, fallbackToExistingInstallation);
-        return timestampOfRemoteResource;
+        return installFromMaster(uri, usernameOrNull, passwordOrNull, dir, logOrNull, nodeName);
     }
 
+    /**
+     * Installs on the node itself.
+     *
+     * @deprecated Use
+     *             {@link #installOnRemoteNode(URI, String, String, FilePath, TaskListener, String)},
+     *             which works out <code>timestampOfLocalContents</code> for
+     *             itself.
+     */
+    @Deprecated
     protected Date downloadOnRemoteNode(@NonNull final URI uri, @CheckForNull final Long timestampOfLocalContents,
             @CheckForNull final String usernameOrNull, @CheckForNull final String passwordOrNull,
             @NonNull final FilePath dir, @CheckForNull final TaskListener logOrNull, @NonNull final String nodeName)
             throws IOException, InterruptedException {
-        final AuthenticatedDownloadCallable nodeOperation = new AuthenticatedDownloadCallable(uri, usernameOrNull,
-                passwordOrNull, timestampOfLocalContents, nodeName, logOrNull, fallbackToExistingInstallation);
-        final Date timestampOfRemoteResource = dir.act(nodeOperation);
-        return timestampOfRemoteResource;
+        return installOnRemoteNode(uri, usernameOrNull, passwordOrNull, dir, logOrNull, nodeName);
     }
 
     /**
@@ -535,7 +731,7 @@ public class AuthenticatedZipExtractionInstaller extends ToolInstaller {
                  * whereToDownloadToOrNull + "," + log + ")");
                  */
                 AuthenticatedDownloadCallable.downloadAndUnpack(uri, usernameOrNull, passwordOrNull,
-                        timestampOfLocalContents, nodeName, whereToDownloadToOrNull, log, false);
+                        timestampOfLocalContents, nodeName, whereToDownloadToOrNull, log, false, 0);
             } catch (AuthenticatedDownloadCallable.HttpGetException ex) {
                 final Integer httpStatusCodeOrNull = ex.getHttpStatusCode();
                 if (httpStatusCodeOrNull != null) {
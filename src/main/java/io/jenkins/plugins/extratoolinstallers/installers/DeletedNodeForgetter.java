@@ -0,0 +1,82 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import hudson.Extension;
+import hudson.model.Node;
+import hudson.tools.InstallSourceProperty;
+import hudson.tools.ToolDescriptor;
+import hudson.tools.ToolInstallation;
+import hudson.tools.ToolInstaller;
+import jenkins.model.Jenkins;
+import jenkins.model.NodeListener;
+
+/**
+ * Forgets what we knew about a node when it is deleted, so that what we keep
+ * on the controller doesn't grow forever as agents come and go.
+ */
+@Extension
+public class DeletedNodeForgetter extends NodeListener {
+    @Override
+    protected void onDeleted(@NonNull Node node) {
+        final Jenkins jenkins = Jenkins.get();
+        final Set<String> existingNodeNames = new HashSet<>();
+        existingNodeNames.add(jenkins.getNodeName());
+        for (final Node n : jenkins.getNodes()) {
+            existingNodeNames.add(n.getNodeName());
+        }
+        existingNodeNames.remove(node.getNodeName()); // in case it's still listed
+        final InstallerHistory history = InstallerHistory.get();
+        history.retainNodes(existingNodeNames);
+        history.saveSoon();
+        InstallToolsBuildWrapper.forgetNode(node.getNodeName());
+        InstallAttemptStatistics.get().forgetNode(node.getNodeName());
+        for (final ToolDescriptor<?> descriptor : ToolInstallation.all()) {
+            for (final ToolInstallation installation : descriptor.getInstallations()) {
+                final InstallSourceProperty isp = installation.getProperties().get(InstallSourceProperty.class);
+                if (isp != null && isp.installers != null) {
+                    for (final AnyOfInstaller anyOf : findAnyOfInstallers(isp.installers.getAll(ToolInstaller.class))) {
+                        anyOf.forgetNode(node.getNodeName());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds all the {@link AnyOfInstaller}s in a list, including those nested
+     * within other {@link AnyOfInstaller}s.
+     * 
+     * @param installers The installers to look through.
+     * @return The {@link AnyOfInstaller}s, in the order found.
+     */
+    @NonNull
+    static List<AnyOfInstaller> findAnyOfInstallers(@CheckForNull final List<? extends ToolInstaller> installers) {
+        final List<AnyOfInstaller> result = new ArrayList<>();
+        addAnyOfInstallers(result, installers);
+        return result;
+    }
+
+    private static void addAnyOfInstallers(@NonNull final List<AnyOfInstaller> result,
+            @CheckForNull final List<? extends ToolInstaller> installers) {
+        if (installers == null) {
+            return;
+        }
+        for (final ToolInstaller installer : installers) {
+            if (installer instanceof AnyOfInstaller) {
+                final AnyOfInstaller anyOf = (AnyOfInstaller) installer;
+                result.add(anyOf);
+                final InstallSourceProperty nested = anyOf.getInstallers();
+                if (nested != null && nested.installers != null) {
+                    addAnyOfInstallers(result, nested.installers.getAll(ToolInstaller.class));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Remembers what version {@link IsAlreadyOnPath} detected for an executable on
+ * a node, so that we don't have to run the version command every time.
+ * <p>
+ * Entries are keyed on the node, the executable's path, size and timestamp,
+ * the PATH that was searched and the version command and pattern, so any
+ * change to the executable (or the configuration) causes the version command
+ * to be re-run.
+ * </p>
+ */
+final class DetectedVersionCache {
+    /** Limit on how many versions we remember. */
+    static final int MAX_ENTRIES = 1000;
+
+    private static final Map<Key, String> CACHE = Collections
+            .synchronizedMap(new LinkedHashMap<Key, String>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            });
+
+    private DetectedVersionCache() {
+    }
+
+    /**
+     * Looks up a previously detected version.
+     * 
+     * @param key What we're looking for.
+     * @return The version we detected before, or null if we don't know.
+     */
+    @CheckForNull
+    static String get(@NonNull final Key key) {
+        return CACHE.get(key);
+    }
+
+    /**
+     * Records a detected version.
+     * 
+     * @param key     What we detected the version of.
+     * @param version The version we detected.
+     */
+    static void put(@NonNull final Key key, @NonNull final String version) {
+        CACHE.put(key, version);
+    }
+
+    /** Forgets everything. */
+    static void clear() {
+        CACHE.clear();
+    }
+
+    /** What the version was detected for. */
+    static final class Key {
+        @NonNull
+        private final String nodeName;
+        @NonNull
+        private final FoundExecutable executable;
+        @NonNull
+        private final String[] versionCmd;
+        @NonNull
+        private final String versionPattern;
+
+        Key(@CheckForNull final String nodeName, @NonNull final FoundExecutable executable,
+                @NonNull final String[] versionCmd, @NonNull final String versionPattern) {
+            this.nodeName = nodeName == null ? "" : nodeName;
+            this.executable = executable;
+            this.versionCmd = Arrays.copyOf(versionCmd, versionCmd.length);
+            this.versionPattern = versionPattern;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return nodeName.equals(other.nodeName) && executable.equals(other.executable)
+                    && Arrays.equals(versionCmd, other.versionCmd) && versionPattern.equals(other.versionPattern);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(nodeName, executable, Arrays.hashCode(versionCmd), versionPattern);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.io.OutputStream;
+
+import org.kohsuke.args4j.Argument;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.cli.CLICommand;
+import hudson.model.Node;
+import hudson.util.DirScanner;
+import jenkins.model.Jenkins;
+
+/**
+ * CLI command that writes a snapshot of everything installed in a node's tools
+ * folder, as a tar.gz, to stdout.
+ * <p>
+ * The snapshot includes the metadata files (e.g.
+ * {@link AuthenticatedZipExtractionInstaller#TIMESTAMP_FILENAME}) that
+ * installers use to decide if the contents is up to date, so it can be
+ * extracted into the root folder of another agent (e.g. when baking an agent
+ * image) and the installers will treat it as already installed.
+ * </p>
+ */
+@Extension
+public class ExportToolSnapshotCommand extends CLICommand {
+    @Argument(metaVar = "NODE", usage = "Name of the node whose tools are to be exported.", required = true)
+    public Node node;
+
+    @Override
+    public String getShortDescription() {
+        return Messages.ExportToolSnapshotCommand_shortDescription();
+    }
+
+    @Override
+    protected int run() throws Exception {
+        Jenkins.get().checkPermission(Jenkins.ADMINISTER);
+        final FilePath rootPath = node.getRootPath();
+        if (rootPath == null) {
+            throw new IllegalStateException(Messages.ExportToolSnapshotCommand_agentIsOffline(node.getDisplayName()));
+        }
+        final FilePath toolsDir = rootPath.child("tools");
+        if (!toolsDir.isDirectory()) {
+            stderr.println(Messages.ExportToolSnapshotCommand_noTools(toolsDir.getRemote()));
+            return 1;
+        }
+        // don't use default excludes, we want our dot-files too
+        final DirScanner everything = new DirScanner.Glob("tools/**", null, false);
+        try (OutputStream out = FilePath.TarCompression.GZIP.compress(stdout)) {
+            rootPath.tar(out, everything);
+        }
+        return 0;
+    }
+}
@@ -2,6 +2,15 @@ package io.jenkins.plugins.extratoolinstallers.installers;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -10,6 +19,7 @@ import edu.umd.cs.findbugs.annotations.Nullable;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 
+import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Util;
 import hudson.model.TaskListener;
@@ -19,16 +29,23 @@ import jenkins.MasterToSlaveFileCallable;
 /**
  * Utility class that can find an executable on the path.
  */
-class FindOnPathCallable extends MasterToSlaveFileCallable<String> {
+class FindOnPathCallable extends MasterToSlaveFileCallable<FoundExecutable> {
     private static final long serialVersionUID = 1L;
     @NonNull
     private final String executableName;
     @CheckForNull
     private final TaskListener logOrNull;
+    @CheckForNull
+    private List<EnvVars> environmentOverrides;
+    @CheckForNull
+    private List<String> extraSearchDirs;
+    @CheckForNull
+    private List<String> alternativeNames;
+    private boolean searchPathExt;
 
     /**
      * Passed to {@link FilePath#act(hudson.FilePath.FileCallable)} in order to run
-     * {@link #findOnPath(String, TaskListener)} on a remote node.
+     * {@link #findOnPath(List, String, String)} on a remote node.
      * 
      * @param executableName What to look for.
      * @param logOrNull      Where to log build progress. Can be null to suppress
@@ -40,9 +57,103 @@ class FindOnPathCallable extends MasterToSlaveFileCallable<String> {
         this.logOrNull = logOrNull;
     }
 
+    /**
+     * Makes us search an effective PATH instead of the PATH of the JVM we run
+     * in.
+     * 
+     * @param environmentOverrides Environment variables to be applied, in
+     *                             order, on top of the JVM's environment, e.g.
+     *                             those set by node properties. These can
+     *                             change PATH, including via the
+     *                             <code>PATH+XYZ</code> syntax. Can be null.
+     * @param extraSearchDirs      Additional directories to be searched after
+     *                             everything else. These may contain variable
+     *                             references. Can be null.
+     */
+    @Restricted(NoExternalUse.class)
+    void setSearchPathOverrides(@CheckForNull List<EnvVars> environmentOverrides,
+            @CheckForNull List<String> extraSearchDirs) {
+        this.environmentOverrides = environmentOverrides == null ? null : new ArrayList<>(environmentOverrides);
+        this.extraSearchDirs = extraSearchDirs == null ? null : new ArrayList<>(extraSearchDirs);
+    }
+
+    /**
+     * Makes us look for more than just the one executable name.
+     * 
+     * @param alternativeNames Other names to try, in order of preference, if
+     *                         the main executable name isn't found in a
+     *                         directory. Can be null.
+     * @param searchPathExt    If true, names are also tried with each of the
+     *                         extensions listed in the PATHEXT environment
+     *                         variable, as Windows does.
+     */
+    @Restricted(NoExternalUse.class)
+    void setCandidateNames(@CheckForNull List<String> alternativeNames, boolean searchPathExt) {
+        this.alternativeNames = alternativeNames == null ? null : new ArrayList<>(alternativeNames);
+        this.searchPathExt = searchPathExt;
+    }
+
     @Override
-    public String invoke(@NonNull File d, VirtualChannel channel) throws IOException, InterruptedException {
-        return findOnPath(executableName, getPath(), logOrNull);
+    public FoundExecutable invoke(@NonNull File d, VirtualChannel channel) throws IOException, InterruptedException {
+        return findOnPath(calcCandidateNames(), executableName, getEffectivePath());
+    }
+
+    /**
+     * Creates a variant of this operation that returns every match on the
+     * PATH instead of just the first.
+     * 
+     * @return Something to pass to
+     *         {@link FilePath#act(hudson.FilePath.FileCallable)}.
+     */
+    @Restricted(NoExternalUse.class)
+    @NonNull
+    MasterToSlaveFileCallable<List<FoundExecutable>> findingAllMatches() {
+        return new FindAllMatchesCallable(this);
+    }
+
+    @NonNull
+    private List<String> calcCandidateNames() {
+        return calcCandidateNames(executableName, alternativeNames, searchPathExt ? getPathExt() : null);
+    }
+
+    /**
+     * Calculates the PATH we're to search, i.e. {@link #getPath()} plus any
+     * overrides we've been given.
+     * 
+     * @return The PATH to search.
+     */
+    @CheckForNull
+    String getEffectivePath() {
+        final String path = getPath();
+        final boolean haveOverrides = environmentOverrides != null && !environmentOverrides.isEmpty();
+        final boolean haveExtras = extraSearchDirs != null && !extraSearchDirs.isEmpty();
+        if (!haveOverrides && !haveExtras) {
+            return path;
+        }
+        final EnvVars env = new EnvVars(System.getenv());
+        if (path == null) {
+            env.remove("PATH");
+        } else {
+            env.put("PATH", path);
+        }
+        if (haveOverrides) {
+            for (final EnvVars overrides : environmentOverrides) {
+                env.overrideExpandingAll(overrides);
+            }
+        }
+        final StringBuilder result = new StringBuilder(Util.fixNull(env.get("PATH")));
+        if (haveExtras) {
+            for (final String extraSearchDir : extraSearchDirs) {
+                final String dir = Util.fixEmptyAndTrim(env.expand(extraSearchDir));
+                if (dir != null) {
+                    if (result.length() > 0) {
+                        result.append(File.pathSeparatorChar);
+                    }
+                    result.append(dir);
+                }
+            }
+        }
+        return result.toString();
     }
 
     // package access for test purposes only
@@ -52,32 +163,237 @@ class FindOnPathCallable extends MasterToSlaveFileCallable<String> {
         return System.getenv("PATH");
     }
 
+    // package access for test purposes only
+    @Restricted(NoExternalUse.class)
+    @CheckForNull
+    String getPathExt() {
+        return System.getenv("PATHEXT");
+    }
+
+    /**
+     * Works out all the file names that would satisfy a search for the
+     * executable, in order of preference.
+     * <p>
+     * If we have any file extensions then, like Windows, a name that already
+     * ends in one of those extensions is used as-is and any other name is
+     * tried with each extension in turn. If we have no extensions then names
+     * are used as-is.
+     * </p>
+     * 
+     * @param executableName   The main name to look for.
+     * @param alternativeNames Other names that would do. Can be null.
+     * @param pathExt          The list of executable file extensions, separated
+     *                         by semicolons, e.g. <code>.COM;.EXE;.BAT</code>.
+     *                         Can be null.
+     * @return A non-empty list of file names.
+     */
+    @NonNull
+    static List<String> calcCandidateNames(@NonNull final String executableName,
+            @CheckForNull final List<String> alternativeNames, @CheckForNull final String pathExt) {
+        final Set<String> names = new LinkedHashSet<>();
+        names.add(executableName);
+        if (alternativeNames != null) {
+            for (final String alternativeName : alternativeNames) {
+                final String name = Util.fixEmptyAndTrim(alternativeName);
+                if (name != null) {
+                    names.add(name);
+                }
+            }
+        }
+        final List<String> extensions = new ArrayList<>();
+        for (final String ext : Util.fixNull(pathExt).split(";")) {
+            final String e = Util.fixEmptyAndTrim(ext);
+            if (e != null) {
+                extensions.add(e);
+            }
+        }
+        if (extensions.isEmpty()) {
+            return new ArrayList<>(names);
+        }
+        final Set<String> result = new LinkedHashSet<>();
+        for (final String name : names) {
+            final String lowerCaseName = name.toLowerCase(Locale.ROOT);
+            boolean hasExtension = false;
+            for (final String ext : extensions) {
+                if (lowerCaseName.endsWith(ext.toLowerCase(Locale.ROOT))) {
+                    hasExtension = true;
+                    break;
+                }
+            }
+            if (hasExtension) {
+                result.add(name);
+            } else {
+                for (final String ext : extensions) {
+                    result.add(name + ext);
+                }
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
     /**
      * Finds an executable by searching the PATH for it.
+     * <p>
+     * Each directory on the PATH is checked for every candidate before we move
+     * on to the next directory, so the first directory containing any of the
+     * candidates wins.
+     * </p>
      * 
-     * @param executableName What to look for.
+     * @param candidateNames What to look for, in order of preference.
+     * @param executableName What we tell the user we were looking for.
      * @param pathToSearch   The system PATH to scan.
-     * @param logOrNull      Where to log build progress. Can be null to suppress
-     *                       the normal running commentary.
-     * @return Absolute path to the executable
+     * @return Details of the executable
      * @throws ExecutableNotOnPathException if the executable isn't on the path.
-     * @throws IOException                  if we failed for other reasons.
-     * @throws InterruptedException         if we were interrupted.
      */
     @NonNull
-    private static String findOnPath(@NonNull final String executableName, @CheckForNull final String pathToSearch,
-            @CheckForNull final TaskListener logOrNull) throws IOException, InterruptedException {
+    static FoundExecutable findOnPath(@NonNull final List<String> candidateNames,
+            @NonNull final String executableName, @CheckForNull final String pathToSearch)
+            throws ExecutableNotOnPathException {
         final String path = Util.fixNull(pathToSearch);
         final String[] pathElements = path.split(File.pathSeparator);
         for (final String dirOnPath : pathElements) {
-            final File possibleExecutable = new File(dirOnPath, executableName);
-            if (possibleExecutable.isFile() && possibleExecutable.canExecute()) {
-                return possibleExecutable.getAbsolutePath();
+            for (final String candidateName : candidateNames) {
+                final FoundExecutable found = findInDir(dirOnPath, candidateName, path);
+                if (found != null) {
+                    return found;
+                }
             }
         }
         throw new ExecutableNotOnPathException(executableName, path);
     }
 
+    /**
+     * Finds every instance of an executable on the PATH.
+     * 
+     * @param candidateNames What to look for, in order of preference.
+     * @param executableName What we tell the user we were looking for.
+     * @param pathToSearch   The system PATH to scan.
+     * @return Details of the executables found, in PATH order. Never empty.
+     * @throws ExecutableNotOnPathException if the executable isn't on the path.
+     */
+    @NonNull
+    static List<FoundExecutable> findAllMatchesOnPath(@NonNull final List<String> candidateNames,
+            @NonNull final String executableName, @CheckForNull final String pathToSearch)
+            throws ExecutableNotOnPathException {
+        final String path = Util.fixNull(pathToSearch);
+        final String[] pathElements = path.split(File.pathSeparator);
+        final Map<String, FoundExecutable> result = new LinkedHashMap<>();
+        for (final String dirOnPath : pathElements) {
+            for (final String candidateName : candidateNames) {
+                final FoundExecutable found = findInDir(dirOnPath, candidateName, path);
+                if (found != null) {
+                    // the same dir can be on the PATH more than once
+                    result.putIfAbsent(found.getAbsolutePath(), found);
+                }
+            }
+        }
+        if (result.isEmpty()) {
+            throw new ExecutableNotOnPathException(executableName, path);
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    @CheckForNull
+    private static FoundExecutable findInDir(@NonNull final String dirOnPath, @NonNull final String executableName,
+            @NonNull final String path) {
+        if (!PathIndex.mightContain(dirOnPath, executableName)) {
+            return null;
+        }
+        final File possibleExecutable = new File(dirOnPath, executableName);
+        if (possibleExecutable.isFile() && possibleExecutable.canExecute()) {
+            return FoundExecutable.of(possibleExecutable, path);
+        }
+        return null;
+    }
+
+    /**
+     * Finds several executables in a single pass over the PATH.
+     * <p>
+     * Directories are checked against the {@link PathIndex} first, so we only
+     * stat files that are actually there.
+     * </p>
+     * 
+     * @param executableNames What to look for.
+     * @param pathToSearch    The system PATH to scan.
+     * @return Details of each executable that was found, indexed by executable
+     *         name. Executables that were not found will not be present.
+     */
+    @NonNull
+    static Map<String, FoundExecutable> findAllOnPath(@NonNull final Collection<String> executableNames,
+            @CheckForNull final String pathToSearch) {
+        final String path = Util.fixNull(pathToSearch);
+        final Map<String, FoundExecutable> result = new LinkedHashMap<>();
+        final Set<String> stillToFind = new LinkedHashSet<>(executableNames);
+        final String[] pathElements = path.split(File.pathSeparator);
+        for (final String dirOnPath : pathElements) {
+            for (final Iterator<String> i = stillToFind.iterator(); i.hasNext();) {
+                final String executableName = i.next();
+                final FoundExecutable found = findInDir(dirOnPath, executableName, path);
+                if (found != null) {
+                    result.put(executableName, found);
+                    i.remove();
+                }
+            }
+            if (stillToFind.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Variant of {@link FindOnPathCallable} that looks for many executables in
+     * a single remote call.
+     */
+    @Restricted(NoExternalUse.class)
+    static class FindAllOnPathCallable extends MasterToSlaveFileCallable<Map<String, FoundExecutable>> {
+        private static final long serialVersionUID = 1L;
+        @NonNull
+        private final Set<String> executableNames;
+
+        /**
+         * Passed to {@link FilePath#act(hudson.FilePath.FileCallable)} in order to
+         * run {@link FindOnPathCallable#findAllOnPath(Collection, String)} on a
+         * remote node.
+         * 
+         * @param executableNames What to look for.
+         */
+        FindAllOnPathCallable(@NonNull Collection<String> executableNames) {
+            this.executableNames = new LinkedHashSet<>(executableNames);
+        }
+
+        @Override
+        public Map<String, FoundExecutable> invoke(@NonNull File d, VirtualChannel channel) {
+            return findAllOnPath(executableNames, getPath());
+        }
+
+        // package access for test purposes only
+        @Restricted(NoExternalUse.class)
+        @CheckForNull
+        String getPath() {
+            return System.getenv("PATH");
+        }
+    }
+
+    /**
+     * Variant of {@link FindOnPathCallable} that returns every match.
+     */
+    private static class FindAllMatchesCallable extends MasterToSlaveFileCallable<List<FoundExecutable>> {
+        private static final long serialVersionUID = 1L;
+        @NonNull
+        private final FindOnPathCallable settings;
+
+        FindAllMatchesCallable(@NonNull FindOnPathCallable settings) {
+            this.settings = settings;
+        }
+
+        @Override
+        public List<FoundExecutable> invoke(@NonNull File d, VirtualChannel channel) throws IOException {
+            return findAllMatchesOnPath(settings.calcCandidateNames(), settings.executableName,
+                    settings.getEffectivePath());
+        }
+    }
+
     /**
      * Indicates that we were able to look but didn't find what we were looking for.
      */
@@ -0,0 +1,125 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Objects;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import hudson.FilePath;
+import hudson.model.Node;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+
+/**
+ * Where an executable was found on a node, plus enough information to tell if
+ * the executable has changed since.
+ */
+final class FoundExecutable implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+    @NonNull
+    private final String absolutePath;
+    private final long lastModified;
+    private final long length;
+    private final int searchPathHash;
+
+    FoundExecutable(@NonNull final String absolutePath, final long lastModified, final long length,
+            final int searchPathHash) {
+        this.absolutePath = absolutePath;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.searchPathHash = searchPathHash;
+    }
+
+    /**
+     * Records the details of an executable file.
+     * 
+     * @param executable The file that was found.
+     * @param searchPath The PATH that was searched to find it.
+     * @return A new instance.
+     */
+    @NonNull
+    static FoundExecutable of(@NonNull final File executable, @NonNull final String searchPath) {
+        return new FoundExecutable(executable.getAbsolutePath(), executable.lastModified(), executable.length(),
+                searchPath.hashCode());
+    }
+
+    /**
+     * Checks that the executable is still where it was found and that it has
+     * not changed since, e.g. because the tool was upgraded or uninstalled.
+     * 
+     * @param node The node it was found on.
+     * @return true if it is still there with the same timestamp and size.
+     * @throws IOException          If we couldn't talk to the node.
+     * @throws InterruptedException If we were interrupted.
+     */
+    boolean isUnchangedOn(@NonNull final Node node) throws IOException, InterruptedException {
+        final FilePath path = node.createPath(absolutePath);
+        return path != null && path.act(new IsUnchanged(lastModified, length));
+    }
+
+    /** @return The absolute path of the executable on the node. */
+    @NonNull
+    public String getAbsolutePath() {
+        return absolutePath;
+    }
+
+    /** @return The last-modified timestamp of the executable. */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /** @return The size of the executable. */
+    public long getLength() {
+        return length;
+    }
+
+    /** @return Hash of the PATH that was searched. */
+    public int getSearchPathHash() {
+        return searchPathHash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof FoundExecutable)) {
+            return false;
+        }
+        final FoundExecutable other = (FoundExecutable) obj;
+        return absolutePath.equals(other.absolutePath) && lastModified == other.lastModified
+                && length == other.length && searchPathHash == other.searchPathHash;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(absolutePath, lastModified, length, searchPathHash);
+    }
+
+    @Override
+    public String toString() {
+        return absolutePath;
+    }
+
+    /** Checks a file's timestamp and size on the node. */
+    private static final class IsUnchanged extends MasterToSlaveFileCallable<Boolean> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        private final long lastModified;
+        private final long length;
+
+        IsUnchanged(final long lastModified, final long length) {
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        @Override
+        public Boolean invoke(final File f, final VirtualChannel channel) {
+            return f.isFile() && f.lastModified() == lastModified && f.length() == length;
+        }
+    }
+}
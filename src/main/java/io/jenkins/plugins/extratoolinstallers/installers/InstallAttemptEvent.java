@@ -0,0 +1,107 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * What happened when {@link AnyOfInstaller} asked one of its installers to
+ * install a tool. Sent to every {@link InstallAttemptListener}.
+ */
+public final class InstallAttemptEvent {
+    /** How an attempt turned out. */
+    public enum Outcome {
+        /** The installer worked. */
+        SUCCESS,
+        /** The installer failed, but might work if tried again. */
+        RETRYABLE_FAILURE,
+        /** The installer failed in a way that retrying won't fix. */
+        FATAL_FAILURE
+    }
+
+    @NonNull
+    private final String toolName;
+    @NonNull
+    private final String nodeName;
+    private final int installerIndex;
+    @NonNull
+    private final String installerName;
+    private final int wholeListAttempt;
+    private final int installerAttempt;
+    private final long durationMillis;
+    @NonNull
+    private final Outcome outcome;
+    @CheckForNull
+    private final String exceptionClassName;
+
+    InstallAttemptEvent(@NonNull String toolName, @NonNull String nodeName, int installerIndex,
+            @NonNull String installerName, int wholeListAttempt, int installerAttempt, long durationMillis,
+            @NonNull Outcome outcome, @CheckForNull Throwable failure) {
+        this.toolName = toolName;
+        this.nodeName = nodeName;
+        this.installerIndex = installerIndex;
+        this.installerName = installerName;
+        this.wholeListAttempt = wholeListAttempt;
+        this.installerAttempt = installerAttempt;
+        this.durationMillis = durationMillis;
+        this.outcome = outcome;
+        this.exceptionClassName = failure == null ? null : failure.getClass().getName();
+    }
+
+    /** @return The name of the tool being installed. */
+    @NonNull
+    public String getToolName() {
+        return toolName;
+    }
+
+    /** @return The name of the node it was being installed on. */
+    @NonNull
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    /** @return Which installer was attempted, counting from 1. */
+    public int getInstallerIndex() {
+        return installerIndex;
+    }
+
+    /** @return The display name of the installer that was attempted. */
+    @NonNull
+    public String getInstallerName() {
+        return installerName;
+    }
+
+    /** @return Which pass through the list of installers this was, counting from 1. */
+    public int getWholeListAttempt() {
+        return wholeListAttempt;
+    }
+
+    /** @return Which attempt of this installer (within this pass) this was, counting from 1. */
+    public int getInstallerAttempt() {
+        return installerAttempt;
+    }
+
+    /** @return How long the attempt took. */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /** @return How it went. */
+    @NonNull
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /** @return The class of the exception the installer failed with, or null if it worked. */
+    @CheckForNull
+    public String getExceptionClassName() {
+        return exceptionClassName;
+    }
+
+    @Override
+    public String toString() {
+        return "InstallAttemptEvent[tool=" + toolName + ", node=" + nodeName + ", installer=" + installerIndex + " \""
+                + installerName + "\", loop=" + wholeListAttempt + ", attempt=" + installerAttempt + ", took="
+                + durationMillis + "ms, outcome=" + outcome
+                + (exceptionClassName == null ? "" : ", exception=" + exceptionClassName) + "]";
+    }
+}
@@ -0,0 +1,50 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import hudson.ExtensionList;
+import hudson.ExtensionPoint;
+import jenkins.model.Jenkins;
+
+/**
+ * Told about every attempt {@link AnyOfInstaller} makes to install a tool, so
+ * that the cost of retries and failures can be measured across all nodes,
+ * not just read from individual build logs.
+ * <p>
+ * Implementations are called on the thread doing the installation, so must
+ * be quick and must not throw.
+ * </p>
+ * 
+ * @see InstallAttemptStatistics
+ */
+public abstract class InstallAttemptListener implements ExtensionPoint {
+    private static final Logger LOGGER = Logger.getLogger(InstallAttemptListener.class.getName());
+
+    /**
+     * Called after each installation attempt.
+     * 
+     * @param event What happened.
+     */
+    public abstract void onAttempt(@NonNull InstallAttemptEvent event);
+
+    /**
+     * Tells all {@link InstallAttemptListener}s about an attempt.
+     * 
+     * @param event What happened.
+     */
+    static void fireOnAttempt(@NonNull final InstallAttemptEvent event) {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return;
+        }
+        for (final InstallAttemptListener listener : ExtensionList.lookup(InstallAttemptListener.class)) {
+            try {
+                listener.onAttempt(event);
+            } catch (RuntimeException ex) {
+                LOGGER.log(Level.WARNING, listener + " failed to process " + event, ex);
+            }
+        }
+    }
+}
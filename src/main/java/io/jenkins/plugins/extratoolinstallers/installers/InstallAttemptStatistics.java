@@ -0,0 +1,196 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import hudson.Extension;
+import hudson.ExtensionList;
+
+/**
+ * Adds up every {@link InstallAttemptEvent}, per installer and per node, so
+ * that (e.g. from the script console) one can see where installations fail
+ * and how much time is lost to failed attempts. Statistics are kept in memory
+ * only, since the controller started (or since {@link #reset()}).
+ */
+@Extension
+public class InstallAttemptStatistics extends InstallAttemptListener {
+    /**
+     * Indexed by tool name, installer index and installer name, so this only
+     * grows as our configuration does.
+     */
+    @NonNull
+    private final Map<String, Counters> byInstaller = new HashMap<>();
+    /**
+     * Indexed by node name and then tool name, so that we can forget a node
+     * once it has been deleted.
+     */
+    @NonNull
+    private final Map<String, Map<String, Counters>> byNode = new HashMap<>();
+
+    /**
+     * Gets our instance.
+     * 
+     * @return The singleton instance.
+     */
+    @NonNull
+    public static InstallAttemptStatistics get() {
+        return ExtensionList.lookupSingleton(InstallAttemptStatistics.class);
+    }
+
+    @Override
+    public synchronized void onAttempt(@NonNull InstallAttemptEvent event) {
+        final String installerKey = event.getToolName() + " #" + event.getInstallerIndex() + " \""
+                + event.getInstallerName() + "\"";
+        byInstaller.computeIfAbsent(installerKey, k -> new Counters()).add(event);
+        byNode.computeIfAbsent(event.getNodeName(), k -> new HashMap<>())
+                .computeIfAbsent(event.getToolName(), k -> new Counters()).add(event);
+    }
+
+    /**
+     * Gets statistics for each installer, across all nodes.
+     * 
+     * @return A copy of our statistics, indexed by tool name, installer index
+     *         and installer name.
+     */
+    @NonNull
+    public synchronized Map<String, Counters> getByInstaller() {
+        return copyOf(byInstaller);
+    }
+
+    /**
+     * Gets statistics for each tool on each node, across all installers.
+     * 
+     * @return A copy of our statistics, indexed by node name and tool name.
+     */
+    @NonNull
+    public synchronized Map<String, Counters> getByNode() {
+        final Map<String, Counters> flattened = new HashMap<>();
+        for (final Map.Entry<String, Map<String, Counters>> nodeEntry : byNode.entrySet()) {
+            for (final Map.Entry<String, Counters> toolEntry : nodeEntry.getValue().entrySet()) {
+                flattened.put(nodeEntry.getKey() + " " + toolEntry.getKey(), toolEntry.getValue());
+            }
+        }
+        return copyOf(flattened);
+    }
+
+    /**
+     * Forgets our statistics for a node, e.g. because it has been deleted.
+     * 
+     * @param nodeName The name of the node.
+     */
+    public synchronized void forgetNode(@NonNull final String nodeName) {
+        byNode.remove(nodeName);
+    }
+
+    /** Forgets everything. */
+    public synchronized void reset() {
+        byInstaller.clear();
+        byNode.clear();
+    }
+
+    @NonNull
+    private static Map<String, Counters> copyOf(@NonNull final Map<String, Counters> original) {
+        final Map<String, Counters> result = new TreeMap<>();
+        for (final Map.Entry<String, Counters> entry : original.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().copy());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /** Totals for a set of {@link InstallAttemptEvent}s. */
+    public static final class Counters {
+        private long attempts;
+        private long successes;
+        private long retryableFailures;
+        private long fatalFailures;
+        private long totalMillis;
+        private long failedMillis;
+        @NonNull
+        private final Map<String, Long> failuresByExceptionClass = new TreeMap<>();
+
+        void add(@NonNull final InstallAttemptEvent event) {
+            attempts++;
+            totalMillis += event.getDurationMillis();
+            switch (event.getOutcome()) {
+            case SUCCESS:
+                successes++;
+                return;
+            case RETRYABLE_FAILURE:
+                retryableFailures++;
+                break;
+            case FATAL_FAILURE:
+                fatalFailures++;
+                break;
+            default:
+                break;
+            }
+            failedMillis += event.getDurationMillis();
+            final String exceptionClassName = event.getExceptionClassName();
+            if (exceptionClassName != null) {
+                failuresByExceptionClass.merge(exceptionClassName, 1L, Long::sum);
+            }
+        }
+
+        @NonNull
+        Counters copy() {
+            final Counters c = new Counters();
+            c.attempts = attempts;
+            c.successes = successes;
+            c.retryableFailures = retryableFailures;
+            c.fatalFailures = fatalFailures;
+            c.totalMillis = totalMillis;
+            c.failedMillis = failedMillis;
+            c.failuresByExceptionClass.putAll(failuresByExceptionClass);
+            return c;
+        }
+
+        /** @return How many attempts there were. */
+        public long getAttempts() {
+            return attempts;
+        }
+
+        /** @return How many attempts worked. */
+        public long getSuccesses() {
+            return successes;
+        }
+
+        /** @return How many attempts failed in a way that might be fixed by retrying. */
+        public long getRetryableFailures() {
+            return retryableFailures;
+        }
+
+        /** @return How many attempts failed in a way that retrying won't fix. */
+        public long getFatalFailures() {
+            return fatalFailures;
+        }
+
+        /** @return Total time spent on all attempts. */
+        public long getTotalMillis() {
+            return totalMillis;
+        }
+
+        /** @return Total time spent on attempts that failed, i.e. the cost of failure. */
+        public long getFailedMillis() {
+            return failedMillis;
+        }
+
+        /**
+         * @return How many failures there were of each exception class.
+         */
+        @NonNull
+        public Map<String, Long> getFailuresByExceptionClass() {
+            return Collections.unmodifiableMap(failuresByExceptionClass);
+        }
+
+        @Override
+        public String toString() {
+            return "attempts=" + attempts + ", successes=" + successes + ", retryableFailures=" + retryableFailures
+                    + ", fatalFailures=" + fatalFailures + ", totalMillis=" + totalMillis + ", failedMillis="
+                    + failedMillis + ", failuresByExceptionClass=" + failuresByExceptionClass;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.jenkinsci.Symbol;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Functions;
+import hudson.Launcher;
+import hudson.Util;
+import hudson.model.AbstractProject;
+import hudson.model.Computer;
+import hudson.model.EnvironmentSpecific;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.slaves.NodeSpecific;
+import hudson.tasks.BuildWrapperDescriptor;
+import hudson.tools.ToolDescriptor;
+import hudson.tools.ToolInstallation;
+import hudson.util.FormValidation;
+import jenkins.tasks.SimpleBuildWrapper;
+import jenkins.util.SystemProperties;
+
+/**
+ * Installs several tools at once, before the build (or the wrapped part of a
+ * pipeline) starts, so that the time taken is that of the slowest tool rather
+ * than the sum of all of them.
+ * <p>
+ * Each tool's environment (e.g. additions to the PATH) is added to the
+ * build's environment, as is a <code><i>NAME</i>_HOME</code> variable giving
+ * where each tool was installed. The number of installations running at once
+ * on any one node, across all builds, is limited by the
+ * <code>maxConcurrentInstallsPerNode</code> system property.
+ * </p>
+ */
+public class InstallToolsBuildWrapper extends SimpleBuildWrapper {
+    /**
+     * Maximum number of tools we will install at once on any one node.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Can be changed from the script console")
+    static /* almost final */ int MAX_CONCURRENT_INSTALLS_PER_NODE = SystemProperties
+            .getInteger(InstallToolsBuildWrapper.class.getName() + ".maxConcurrentInstallsPerNode", 4);
+
+    /**
+     * Limits how many installations run at once, indexed by node name. Nodes
+     * are removed when they are deleted (by {@link DeletedNodeForgetter}).
+     */
+    private static final Map<String, InstallSlots> INSTALL_SLOTS_BY_NODE = new ConcurrentHashMap<>();
+
+    @NonNull
+    private final String tools;
+
+    @DataBoundConstructor
+    public InstallToolsBuildWrapper(String tools) {
+        this.tools = Util.fixNull(tools);
+    }
+
+    /**
+     * Gets the tools to be installed.
+     *
+     * @return Tool names, separated by commas or newlines.
+     */
+    @NonNull
+    public String getTools() {
+        return tools;
+    }
+
+    @Override
+    public void setUp(Context context, Run<?, ?> build, FilePath workspace, Launcher launcher,
+            TaskListener listener, EnvVars initialEnvironment) throws IOException, InterruptedException {
+        final Computer computer = workspace.toComputer();
+        final Node node = computer == null ? null : computer.getNode();
+        if (node == null) {
+            throw new AbortException(Messages.InstallToolsBuildWrapper_agentIsOffline());
+        }
+        final List<ToolInstallation> wanted = new ArrayList<>();
+        for (final String toolName : parseToolNames(tools)) {
+            wanted.add(findTool(toolName));
+        }
+        final List<ToolInstallation> installed;
+        final String previousOwner = ToolLeases.setCurrentOwner(build.getExternalizableId());
+        try {
+            installed = installAll(wanted, node, initialEnvironment, listener);
+        } finally {
+            ToolLeases.setCurrentOwner(previousOwner);
+        }
+        final EnvVars toolEnvironment = new EnvVars();
+        for (final ToolInstallation tool : installed) {
+            tool.buildEnvVars(toolEnvironment);
+            final String home = tool.getHome();
+            if (home != null) {
+                toolEnvironment.put(calcHomeVariableName(tool.getName()), home);
+            }
+        }
+        for (final Map.Entry<String, String> entry : toolEnvironment.entrySet()) {
+            context.env(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Installs all the given tools on the node, in parallel.
+     *
+     * @param wanted
+     *            The tools to be installed.
+     * @param node
+     *            Where they are to be installed.
+     * @param environment
+     *            The build's environment.
+     * @param listener
+     *            Where to log what we do.
+     * @return The tools, translated for the node and environment, in the same
+     *         order as <code>wanted</code>.
+     * @throws IOException
+     *             if any of them failed to install, after all had finished
+     *             (and after their failures had been logged).
+     * @throws InterruptedException
+     *             if we were interrupted while waiting.
+     */
+    @NonNull
+    List<ToolInstallation> installAll(@NonNull final List<ToolInstallation> wanted, @NonNull final Node node,
+            @NonNull final EnvVars environment, @NonNull final TaskListener listener)
+            throws IOException, InterruptedException {
+        final Semaphore installSlots = getInstallSlots(node);
+        final String leaseOwner = ToolLeases.getCurrentOwner();
+        final List<Future<ToolInstallation>> runners = new ArrayList<>(wanted.size());
+        try {
+            for (final ToolInstallation tool : wanted) {
+                runners.add(Computer.threadPoolForRemoting.submit(() -> {
+                    installSlots.acquire();
+                    final String previousOwner = ToolLeases.setCurrentOwner(leaseOwner);
+                    try {
+                        final long startNanos = System.nanoTime();
+                        final ToolInstallation result = installOne(tool, node, environment, listener);
+                        final long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                        listener.getLogger().println(Messages.InstallToolsBuildWrapper_installed(tool.getName(),
+                                result.getHome(), durationMillis));
+                        return result;
+                    } finally {
+                        ToolLeases.setCurrentOwner(previousOwner);
+                        installSlots.release();
+                    }
+                }));
+            }
+            final List<ToolInstallation> installed = new ArrayList<>(wanted.size());
+            String firstFailure = null;
+            for (int i = 0; i < runners.size(); i++) {
+                try {
+                    installed.add(runners.get(i).get());
+                } catch (ExecutionException ee) {
+                    final Throwable cause = ee.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    final String toolName = wanted.get(i).getName();
+                    Functions.printStackTrace(cause,
+                            listener.error(Messages.InstallToolsBuildWrapper_failed(toolName)));
+                    if (firstFailure == null) {
+                        firstFailure = toolName;
+                    }
+                }
+            }
+            if (firstFailure != null) {
+                // we've already logged why
+                throw new AbortException(Messages.InstallToolsBuildWrapper_failed(firstFailure));
+            }
+            return installed;
+        } finally {
+            for (final Future<ToolInstallation> runner : runners) {
+                runner.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Installs one tool. This is the same as what happens when a build asks
+     * for a tool, e.g. using a pipeline <code>tool</code> step.
+     */
+    @Restricted(NoExternalUse.class) // for test use only
+    @NonNull
+    ToolInstallation installOne(@NonNull final ToolInstallation tool, @NonNull final Node node,
+            @NonNull final EnvVars environment, @NonNull final TaskListener listener)
+            throws IOException, InterruptedException {
+        ToolInstallation result = tool;
+        if (result instanceof NodeSpecific) {
+            result = (ToolInstallation) ((NodeSpecific<?>) result).forNode(node, listener);
+        }
+        if (result instanceof EnvironmentSpecific) {
+            result = (ToolInstallation) ((EnvironmentSpecific<?>) result).forEnvironment(environment);
+        }
+        return result;
+    }
+
+    @NonNull
+    private static Semaphore getInstallSlots(@NonNull final Node node) {
+        final int permits = Math.max(1, MAX_CONCURRENT_INSTALLS_PER_NODE);
+        // if the limit has been changed then installations already running
+        // keep using (and releasing) the old semaphore
+        return INSTALL_SLOTS_BY_NODE.compute(Util.fixNull(node.getNodeName()),
+                (k, v) -> v != null && v.permits == permits ? v : new InstallSlots(permits)).semaphore;
+    }
+
+    /**
+     * Forgets about a node's installation slots, e.g. because it's been
+     * deleted.
+     *
+     * @param nodeName The node.
+     */
+    static void forgetNode(@NonNull final String nodeName) {
+        INSTALL_SLOTS_BY_NODE.remove(nodeName);
+    }
+
+    /**
+     * Test-only: Indicates whether we are limiting installations on a node.
+     *
+     * @param nodeName The node.
+     * @return true if we have installation slots for that node.
+     */
+    @Restricted(NoExternalUse.class) // for test use only
+    static boolean hasInstallSlots(@NonNull final String nodeName) {
+        return INSTALL_SLOTS_BY_NODE.containsKey(nodeName);
+    }
+
+    /** A node's installation slots, and how many there were to start with. */
+    private static final class InstallSlots {
+        final int permits;
+        @NonNull
+        final Semaphore semaphore;
+
+        InstallSlots(final int permits) {
+            this.permits = permits;
+            this.semaphore = new Semaphore(permits);
+        }
+    }
+
+    /**
+     * Splits the user's list of tools into individual names.
+     *
+     * @param tools
+     *            Tool names, separated by commas or newlines.
+     * @return The non-empty names, trimmed.
+     */
+    @NonNull
+    static List<String> parseToolNames(@CheckForNull final String tools) {
+        final List<String> result = new ArrayList<>();
+        for (final String name : Util.fixNull(tools).split("[,\\r\\n]")) {
+            final String trimmed = name.trim();
+            if (!trimmed.isEmpty()) {
+                result.add(trimmed);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Works out the name of the environment variable that will tell the build
+     * where a tool was installed.
+     *
+     * @param toolName
+     *            The name of the tool, e.g. "jdk-17".
+     * @return The variable name, e.g. "JDK_17_HOME".
+     */
+    @NonNull
+    static String calcHomeVariableName(@NonNull final String toolName) {
+        final String upper = toolName.toUpperCase(Locale.ENGLISH).replaceAll("[^A-Z0-9_]", "_");
+        final String prefix = !upper.isEmpty() && Character.isDigit(upper.charAt(0)) ? "_" : "";
+        return prefix + upper + "_HOME";
+    }
+
+    /**
+     * Finds the configured tool with the given name. If more than one kind of
+     * tool uses the name, the name must be prefixed by the kind of tool (its
+     * symbol, e.g. "jdk", or its descriptor ID) and a colon.
+     */
+    @NonNull
+    private static ToolInstallation findTool(@NonNull final String qualifiedName) throws AbortException {
+        final int colon = qualifiedName.indexOf(':');
+        final String kind = colon < 0 ? null : qualifiedName.substring(0, colon).trim();
+        final String name = colon < 0 ? qualifiedName : qualifiedName.substring(colon + 1).trim();
+        final List<ToolInstallation> matches = new ArrayList<>();
+        final List<String> kinds = new ArrayList<>();
+        for (final ToolDescriptor<?> descriptor : ToolInstallation.all()) {
+            final String descriptorKind = getKind(descriptor);
+            if (kind != null && !kind.equals(descriptorKind) && !kind.equals(descriptor.getId())) {
+                continue;
+            }
+            for (final ToolInstallation tool : descriptor.getInstallations()) {
+                if (name.equals(tool.getName())) {
+                    matches.add(tool);
+                    kinds.add(descriptorKind);
+                }
+            }
+        }
+        if (matches.isEmpty()) {
+            throw new AbortException(Messages.InstallToolsBuildWrapper_no_such_tool(qualifiedName));
+        }
+        if (matches.size() > 1) {
+            Collections.sort(kinds);
+            throw new AbortException(Messages.InstallToolsBuildWrapper_ambiguous_tool(qualifiedName,
+                    String.join(", ", kinds)));
+        }
+        return matches.get(0);
+    }
+
+    @NonNull
+    private static String getKind(@NonNull final ToolDescriptor<?> descriptor) {
+        final Symbol symbol = descriptor.getClass().getAnnotation(Symbol.class);
+        return symbol != null && symbol.value().length > 0 ? symbol.value()[0] : descriptor.getId();
+    }
+
+    /**
+     * Descriptor for the {@link InstallToolsBuildWrapper}.
+     */
+    @Extension @Symbol("installTools")
+    public static class DescriptorImpl extends BuildWrapperDescriptor {
+        @Override
+        public boolean isApplicable(AbstractProject<?, ?> item) {
+            return true;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return Messages.InstallToolsBuildWrapper_DescriptorImpl_displayName();
+        }
+
+        public FormValidation doCheckTools(@QueryParameter String value) {
+            if (parseToolNames(value).isEmpty()) {
+                return FormValidation.error(Messages.InstallToolsBuildWrapper_tools_required());
+            }
+            return FormValidation.ok();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import hudson.XmlFile;
+import hudson.model.Node;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+/**
+ * Records how well each of an {@link AnyOfInstaller}'s installers has done on
+ * each node, so that the installers that work on a node get tried first and
+ * those that keep failing get left alone for a while.
+ * <p>
+ * The history is kept on the controller and persisted (in the background, so
+ * builds don't wait for it) so that it survives a restart. What we know about
+ * a node is forgotten when the node is deleted.
+ * </p>
+ */
+final class InstallerHistory extends SavedState {
+    /**
+     * How many failures in a row it takes before we stop trying an installer
+     * (for {@link #COOLDOWN_MINUTES}).
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Can be changed from the script console")
+    static /* almost final */ int FAILURES_BEFORE_COOLDOWN = SystemProperties
+            .getInteger(InstallerHistory.class.getName() + ".failuresBeforeCooldown", 3);
+
+    /** How long we leave an installer alone once it's failed too often. */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Can be changed from the script console")
+    static /* almost final */ int COOLDOWN_MINUTES = SystemProperties
+            .getInteger(InstallerHistory.class.getName() + ".cooldownMinutes", 60);
+
+    @CheckForNull
+    private static InstallerHistory instance;
+
+    /** Node name, tool name and installer ID to statistics. */
+    @NonNull
+    private final Map<String, Stats> statsByKey = new HashMap<>();
+
+    InstallerHistory(@CheckForNull XmlFile storage) {
+        super(storage);
+    }
+
+    /**
+     * Gets the history, loading it from disk if necessary.
+     * 
+     * @return The history.
+     */
+    @NonNull
+    static synchronized InstallerHistory get() {
+        if (instance == null) {
+            final Jenkins jenkinsOrNull = Jenkins.getInstanceOrNull();
+            final InstallerHistory loaded = new InstallerHistory(calcStorage(InstallerHistory.class));
+            loaded.load();
+            if (jenkinsOrNull != null) {
+                // in case nodes were deleted while we weren't looking
+                final Set<String> nodeNames = new HashSet<>();
+                nodeNames.add(jenkinsOrNull.getNodeName());
+                for (final Node node : jenkinsOrNull.getNodes()) {
+                    nodeNames.add(node.getNodeName());
+                }
+                loaded.retainNodes(nodeNames);
+            }
+            instance = loaded;
+        }
+        return instance;
+    }
+
+    /**
+     * Records the outcome of an installation attempt.
+     * 
+     * @param nodeName       The node it was attempted on.
+     * @param toolName       The tool that was being installed.
+     * @param installerId    Which installer was used.
+     * @param success        true if it worked.
+     * @param durationMillis How long it took.
+     * @param now            When it finished.
+     */
+    synchronized void record(@NonNull final String nodeName, @NonNull final String toolName,
+            @NonNull final String installerId, final boolean success, final long durationMillis, final long now) {
+        final Stats stats = statsByKey.computeIfAbsent(calcKey(nodeName, toolName, installerId), k -> new Stats());
+        stats.record(success, durationMillis, now);
+        markDirty();
+    }
+
+    /**
+     * Forgets about nodes that no longer exist.
+     * 
+     * @param existingNodeNames The nodes we should keep.
+     */
+    synchronized void retainNodes(@NonNull final Collection<String> existingNodeNames) {
+        if (statsByKey.keySet().removeIf(key -> !existingNodeNames.contains(calcNodeName(key)))) {
+            markDirty();
+        }
+    }
+
+    /**
+     * Gets what we know about an installer.
+     * 
+     * @param nodeName    The node.
+     * @param toolName    The tool.
+     * @param installerId The installer.
+     * @return Its statistics, or null if it's never been used.
+     */
+    @CheckForNull
+    synchronized Stats getStats(@NonNull final String nodeName, @NonNull final String toolName,
+            @NonNull final String installerId) {
+        final Stats stats = statsByKey.get(calcKey(nodeName, toolName, installerId));
+        return stats == null ? null : stats.copy();
+    }
+
+    /**
+     * Works out the order in which installers should be tried, based on how
+     * they've done before. Installers whose last attempt worked come first,
+     * quickest first. Next come those we know nothing about, then those whose
+     * last attempt failed, both in the order given. Installers that have
+     * failed {@link #FAILURES_BEFORE_COOLDOWN} times in a row within the last
+     * {@link #COOLDOWN_MINUTES} are left out, unless that would leave nothing
+     * to try.
+     * 
+     * @param nodeName     The node.
+     * @param toolName     The tool.
+     * @param installerIds The installers, in their configured order.
+     * @param now          The current time.
+     * @return The installers that should be tried, in the order to try them.
+     */
+    @NonNull
+    synchronized List<String> prioritize(@NonNull final String nodeName, @NonNull final String toolName,
+            @NonNull final List<String> installerIds, final long now) {
+        final List<String> result = new ArrayList<>(installerIds.size());
+        final Map<String, Stats> statsById = new HashMap<>();
+        for (final String installerId : installerIds) {
+            final Stats stats = statsByKey.get(calcKey(nodeName, toolName, installerId));
+            if (stats == null || !stats.isCoolingDown(now)) {
+                result.add(installerId);
+                if (stats != null) {
+                    statsById.put(installerId, stats);
+                }
+            }
+        }
+        if (result.isEmpty()) {
+            return new ArrayList<>(installerIds);
+        }
+        // List.sort is stable, so ties keep their configured order
+        result.sort(Comparator.comparingInt((String id) -> calcGroup(statsById.get(id)))
+                .thenComparingLong(id -> calcExpectedMillis(statsById.get(id))));
+        return result;
+    }
+
+    private static int calcGroup(@CheckForNull final Stats stats) {
+        if (stats == null) {
+            return 1;
+        }
+        return stats.getConsecutiveFailures() == 0 ? 0 : 2;
+    }
+
+    private static long calcExpectedMillis(@CheckForNull final Stats stats) {
+        if (stats == null || stats.getConsecutiveFailures() > 0) {
+            return 0L; // keep configured order
+        }
+        return stats.getAverageSuccessMillis();
+    }
+
+    @NonNull
+    private static String calcKey(@NonNull final String nodeName, @NonNull final String toolName,
+            @NonNull final String installerId) {
+        return nodeName + '/' + toolName + '/' + installerId;
+    }
+
+    /** Node names can't contain a '/', so this undoes {@link #calcKey}. */
+    @NonNull
+    private static String calcNodeName(@NonNull final String key) {
+        return key.substring(0, key.indexOf('/'));
+    }
+
+    /** How well an installer has done on a node. */
+    static final class Stats {
+        private int successes;
+        private int failures;
+        private int consecutiveFailures;
+        private long lastFailureAt;
+        /** Exponentially-weighted moving average of successful durations. */
+        private long averageSuccessMillis;
+
+        void record(final boolean success, final long durationMillis, final long now) {
+            if (success) {
+                averageSuccessMillis = successes == 0 ? durationMillis
+                        : (averageSuccessMillis * 3L + durationMillis) / 4L;
+                successes++;
+                consecutiveFailures = 0;
+            } else {
+                failures++;
+                consecutiveFailures++;
+                lastFailureAt = now;
+            }
+        }
+
+        boolean isCoolingDown(final long now) {
+            return FAILURES_BEFORE_COOLDOWN > 0 && consecutiveFailures >= FAILURES_BEFORE_COOLDOWN
+                    && now - lastFailureAt < TimeUnit.MINUTES.toMillis(COOLDOWN_MINUTES);
+        }
+
+        @NonNull
+        Stats copy() {
+            final Stats c = new Stats();
+            c.successes = successes;
+            c.failures = failures;
+            c.consecutiveFailures = consecutiveFailures;
+            c.lastFailureAt = lastFailureAt;
+            c.averageSuccessMillis = averageSuccessMillis;
+            return c;
+        }
+
+        /** @return How many attempts have worked. */
+        int getSuccesses() {
+            return successes;
+        }
+
+        /** @return How many attempts have failed. */
+        int getFailures() {
+            return failures;
+        }
+
+        /** @return How many attempts have failed since the last success. */
+        int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+
+        /** @return Roughly how long a successful attempt takes. */
+        long getAverageSuccessMillis() {
+            return averageSuccessMillis;
+        }
+    }
+}
@@ -1,17 +1,20 @@
 package io.jenkins.plugins.extratoolinstallers.installers;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.regex.Matcher;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 import org.jenkinsci.Symbol;
 import org.kohsuke.accmod.Restricted;
@@ -20,16 +23,24 @@ import org.kohsuke.stapler.DataBoundConstructor;
 import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
+import hudson.EnvVars;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Proc;
 import hudson.Util;
 import hudson.model.Node;
 import hudson.model.TaskListener;
+import hudson.slaves.EnvironmentVariablesNodeProperty;
+import hudson.slaves.NodeProperty;
+import hudson.slaves.NodePropertyDescriptor;
 import hudson.tools.ToolInstallation;
 import hudson.tools.ToolInstaller;
 import hudson.tools.ToolInstallerDescriptor;
+import hudson.util.DescribableList;
 import hudson.util.FormValidation;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
 
 /**
  * A {@link ToolInstaller} that locates an existing tool on the agent, or fails.
@@ -57,6 +68,38 @@ public class IsAlreadyOnPath extends ToolInstaller {
     @CheckForNull
     private String versionMax;
 
+    @CheckForNull
+    private String versionRange;
+
+    /** {@link #getVersionMin()}, {@link #getVersionMax()} and {@link #getVersionRange()} combined. */
+    @CheckForNull
+    private transient volatile VersionRange compiledVersionRange;
+
+    private boolean useNodeEnvironment;
+
+    @CheckForNull
+    private String extraSearchPath;
+
+    @CheckForNull
+    private String alternativeExecutableNames;
+
+    private boolean searchPathExt;
+
+    private boolean firstMatchingVersion;
+
+    private int versionCmdTimeoutSeconds;
+
+    /**
+     * How long we wait for version commands, in seconds, unless
+     * {@link #setVersionCmdTimeoutSeconds(int)} says otherwise.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Can be changed from the script console")
+    static /* almost final */ int VERSION_CMD_TIMEOUT_SECONDS = SystemProperties
+            .getInteger(IsAlreadyOnPath.class.getName() + ".versionCmdTimeoutSeconds", 60);
+
+    /** How often we check on a running version command. */
+    private static final long VERSION_CMD_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100L);
+
     /**
      * Constructor that sets mandatory fields.
      * 
@@ -236,6 +279,7 @@ public class IsAlreadyOnPath extends ToolInstaller {
     @DataBoundSetter
     public void setVersionMin(String versionMin) {
         this.versionMin = versionMin;
+        this.compiledVersionRange = null;
     }
 
 
@@ -257,16 +301,472 @@ public class IsAlreadyOnPath extends ToolInstaller {
     @DataBoundSetter
     public void setVersionMax(String versionMax) {
         this.versionMax = versionMax;
+        this.compiledVersionRange = null;
+    }
+
+    /**
+     * The range of acceptable versions, e.g. <code>[1.8,11)</code> or
+     * <code>~1.2</code>. This is in addition to {@link #getVersionMin()} and
+     * {@link #getVersionMax()}.
+     * 
+     * @return The range that was set, or null if not set.
+     */
+    @CheckForNull
+    public String getVersionRange() {
+        return Util.fixEmptyAndTrim(versionRange);
+    }
+
+    /**
+     * Sets {@link #getVersionRange()}.
+     * 
+     * @param versionRange New value.
+     */
+    @DataBoundSetter
+    public void setVersionRange(@Nullable String versionRange) {
+        this.versionRange = Util.fixEmptyAndTrim(versionRange);
+        this.compiledVersionRange = null;
+    }
+
+    /**
+     * Gets the acceptable versions, parsing our configuration if we've not
+     * done so already.
+     * 
+     * @return All our version constraints, combined.
+     * @throws IllegalArgumentException if {@link #getVersionRange()} is invalid.
+     */
+    @NonNull
+    VersionRange getCompiledVersionRange() {
+        VersionRange result = compiledVersionRange;
+        if (result == null) {
+            result = calcVersionRange(getVersionMin(), getVersionMax(), getVersionRange());
+            compiledVersionRange = result;
+        }
+        return result;
+    }
+
+    @NonNull
+    private static VersionRange calcVersionRange(@CheckForNull String min, @CheckForNull String max,
+            @CheckForNull String range) {
+        final VersionRange minMax = VersionRange.between(min, max);
+        if (Util.fixEmptyAndTrim(range) == null) {
+            return minMax;
+        }
+        try {
+            return minMax.intersect(VersionRange.parse(range));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException(Messages.IsAlreadyOnPath_versionRangeIsInvalid(range, ex.getMessage()),
+                    ex);
+        }
+    }
+
+    /**
+     * Whether we search the PATH as modified by the environment variables
+     * configured on the node (and globally) instead of the PATH of the agent
+     * process itself.
+     * 
+     * @return true if we take node properties into account.
+     */
+    public boolean isUseNodeEnvironment() {
+        return useNodeEnvironment;
+    }
+
+    /**
+     * Sets {@link #isUseNodeEnvironment()}.
+     * 
+     * @param useNodeEnvironment New value.
+     */
+    @DataBoundSetter
+    public void setUseNodeEnvironment(boolean useNodeEnvironment) {
+        this.useNodeEnvironment = useNodeEnvironment;
+    }
+
+    /**
+     * Additional directories to search, after the PATH, one per line.
+     * 
+     * @return The directories, or null if none have been set.
+     */
+    @CheckForNull
+    public String getExtraSearchPath() {
+        return Util.fixEmptyAndTrim(extraSearchPath);
+    }
+
+    /**
+     * Sets {@link #getExtraSearchPath()}.
+     * 
+     * @param extraSearchPath New value.
+     */
+    @DataBoundSetter
+    public void setExtraSearchPath(@Nullable String extraSearchPath) {
+        this.extraSearchPath = Util.fixEmptyAndTrim(extraSearchPath);
+    }
+
+    /**
+     * Other names the executable might have, one per line, which will be
+     * accepted if the {@link #getExecutableName()} isn't present. e.g.
+     * <code>gcc.cmd</code> as an alternative to <code>gcc.exe</code>.
+     * 
+     * @return The alternative names, or null if none have been set.
+     */
+    @CheckForNull
+    public String getAlternativeExecutableNames() {
+        return Util.fixEmptyAndTrim(alternativeExecutableNames);
+    }
+
+    /**
+     * Sets {@link #getAlternativeExecutableNames()}.
+     * 
+     * @param alternativeExecutableNames New value.
+     */
+    @DataBoundSetter
+    public void setAlternativeExecutableNames(@Nullable String alternativeExecutableNames) {
+        this.alternativeExecutableNames = Util.fixEmptyAndTrim(alternativeExecutableNames);
+    }
+
+    /**
+     * Whether we try the executable names with each of the extensions in the
+     * agent's PATHEXT environment variable, as Windows does when running a
+     * command.
+     * 
+     * @return true if we use PATHEXT.
+     */
+    public boolean isSearchPathExt() {
+        return searchPathExt;
+    }
+
+    /**
+     * Sets {@link #isSearchPathExt()}.
+     * 
+     * @param searchPathExt New value.
+     */
+    @DataBoundSetter
+    public void setSearchPathExt(boolean searchPathExt) {
+        this.searchPathExt = searchPathExt;
+    }
+
+    /**
+     * How long we let the version command run for before we kill it.
+     * 
+     * @return The timeout in seconds, or zero (or less) if we use
+     *         {@link #VERSION_CMD_TIMEOUT_SECONDS}.
+     */
+    public int getVersionCmdTimeoutSeconds() {
+        return versionCmdTimeoutSeconds;
+    }
+
+    /**
+     * How long we actually let the version command run for, taking the default
+     * into account.
+     * 
+     * @return The timeout in seconds. Will always be one or more.
+     */
+    int calcVersionCmdTimeoutSeconds() {
+        return versionCmdTimeoutSeconds > 0 ? versionCmdTimeoutSeconds : Math.max(1, VERSION_CMD_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Sets {@link #getVersionCmdTimeoutSeconds()}.
+     * 
+     * @param versionCmdTimeoutSeconds New value. Zero or less means use the
+     *                                 default.
+     */
+    @DataBoundSetter
+    public void setVersionCmdTimeoutSeconds(int versionCmdTimeoutSeconds) {
+        this.versionCmdTimeoutSeconds = versionCmdTimeoutSeconds;
+    }
+
+    /**
+     * Whether we consider every copy of the executable on the PATH, instead of
+     * only the first, and use the first one whose version is acceptable.
+     * Only relevant if we're checking the version.
+     * 
+     * @return true if we look beyond the first executable found.
+     */
+    public boolean isFirstMatchingVersion() {
+        return firstMatchingVersion;
+    }
+
+    /**
+     * Sets {@link #isFirstMatchingVersion()}.
+     * 
+     * @param firstMatchingVersion New value.
+     */
+    @DataBoundSetter
+    public void setFirstMatchingVersion(boolean firstMatchingVersion) {
+        this.firstMatchingVersion = firstMatchingVersion;
+    }
+
+    /**
+     * Indicates whether we search for just the one executable name on the
+     * plain PATH of the agent, and hence can share a lookup with other
+     * installers that do the same.
+     * 
+     * @return true if we have no search customizations.
+     */
+    boolean searchesDefaultPath() {
+        return !isUseNodeEnvironment() && getExtraSearchPath() == null && getAlternativeExecutableNames() == null
+                && !isSearchPathExt();
     }
 
     @Override
     public FilePath performInstallation(@NonNull ToolInstallation tool, @NonNull Node node,
             @CheckForNull TaskListener log) throws IOException, InterruptedException {
+        return performInstallation(tool, node, log, null);
+    }
+
+    /**
+     * As {@link #performInstallation(ToolInstallation, Node, TaskListener)} but
+     * can make use of executables that have already been located.
+     * 
+     * @param tool            The tool being installed.
+     * @param node            The node it is being installed on.
+     * @param log             Where to log build progress.
+     * @param alreadyLocated  The result of an earlier call to
+     *                        {@link #findExecutablesOnNode(Node, Collection)},
+     *                        or null. If our executable isn't in here then we
+     *                        search the PATH ourselves.
+     * @return As per {@link #performInstallation(ToolInstallation, Node, TaskListener)}.
+     * @throws IOException          As per {@link #performInstallation(ToolInstallation, Node, TaskListener)}.
+     * @throws InterruptedException As per {@link #performInstallation(ToolInstallation, Node, TaskListener)}.
+     */
+    @Restricted(NoExternalUse.class)
+    FilePath performInstallation(@NonNull ToolInstallation tool, @NonNull Node node,
+            @CheckForNull TaskListener log, @CheckForNull Map<String, FoundExecutable> alreadyLocated)
+            throws IOException, InterruptedException {
         final String exeName = getExecutableName();
         if (exeName == null) {
             throw new IllegalArgumentException(Messages.IsAlreadyOnPath_executableNameIsEmpty());
         }
-        final FilePath executablePath = findExecutableOnNodeOrThrow(exeName, node, log);
+        final String[] vCmd = getVersionCmd();
+        final Pattern vPattern = getVersionPattern();
+        final boolean checkVersion = vCmd != null && vPattern != null
+                && (getVersionMin() != null || getVersionMax() != null || getVersionRange() != null);
+        if (checkVersion && isFirstMatchingVersion()) {
+            return findFirstMatchingVersion(node, log, exeName, vCmd, vPattern);
+        }
+        final String nodeName = node.getNodeName();
+        final ToolInventory inventory = alreadyLocated == null && ToolInventory.isEnabled() ? ToolInventory.get()
+                : null;
+        final String inventoryKey = inventory == null ? null : getInventoryKey();
+        ToolInventory.Entry known = inventory == null ? null : inventory.lookup(nodeName, inventoryKey);
+        if (known != null && !known.getExecutable().isUnchangedOn(node)) {
+            // it's been upgraded or uninstalled since we looked
+            inventory.forget(nodeName, inventoryKey);
+            known = null;
+        }
+        final FoundExecutable alreadyFound;
+        if (known != null) {
+            alreadyFound = known.getExecutable();
+        } else {
+            alreadyFound = alreadyLocated == null ? null : alreadyLocated.get(exeName);
+        }
+        final FoundExecutable found = alreadyFound != null ? alreadyFound
+                : findExecutableOnNodeOrThrow(exeName, node, log);
+        final FilePath resultToReturn = calcToolHome(node, exeName, found);
+        String parsedVersion = known == null ? null : known.getVersion();
+        if (checkVersion && parsedVersion == null) {
+            parsedVersion = detectVersion(node, log, resultToReturn, found, vCmd, vPattern);
+        }
+        if (inventory != null && known == null) {
+            // ToolInventoryDiscovery will save this
+            inventory.record(nodeName, inventoryKey,
+                    new ToolInventory.Entry(exeName, found, parsedVersion, System.currentTimeMillis()));
+        }
+        if (checkVersion && getCompiledVersionRange().check(Version.parse(parsedVersion)) != 0) {
+            throw mkWrongVersionException(exeName, resultToReturn, parsedVersion);
+        }
+        return resultToReturn;
+    }
+
+    /**
+     * Looks for our executable on a node and works out what version it is,
+     * without judging whether or not that version is acceptable. This is
+     * what {@link ToolInventoryDiscovery} uses to populate the
+     * {@link ToolInventory}.
+     * 
+     * @param node The node to look at.
+     * @param log  Where to log progress.
+     * @return What we found, or null if the executable isn't there.
+     * @throws IOException          If we couldn't talk to the node.
+     * @throws InterruptedException If we were interrupted.
+     */
+    @Restricted(NoExternalUse.class)
+    @CheckForNull
+    ToolInventory.Entry discover(@NonNull Node node, @CheckForNull TaskListener log)
+            throws IOException, InterruptedException {
+        final String exeName = getExecutableName();
+        if (exeName == null) {
+            return null;
+        }
+        final FoundExecutable found;
+        try {
+            found = findExecutableOnNodeOrThrow(exeName, node, log);
+        } catch (FindOnPathCallable.ExecutableNotOnPathException ex) {
+            return null;
+        }
+        final String[] vCmd = getVersionCmd();
+        final Pattern vPattern = getVersionPattern();
+        String parsedVersion = null;
+        if (vCmd != null && vPattern != null) {
+            final FilePath toolHome = calcToolHome(node, exeName, found);
+            parsedVersion = detectVersion(node, log, toolHome, found, vCmd, vPattern);
+        }
+        return new ToolInventory.Entry(exeName, found, parsedVersion, System.currentTimeMillis());
+    }
+
+    /**
+     * Identifies what we look for, so that {@link ToolInventory} entries
+     * recorded by one installer can be used by another that would search
+     * the same way. Our version limits aren't included as they don't affect
+     * what we'd find.
+     * 
+     * @return A digest of our search and version-detection settings.
+     */
+    @NonNull
+    String getInventoryKey() {
+        final String[] settings = { getExecutableName(), String.valueOf(isUseNodeEnvironment()),
+                getExtraSearchPath(), getAlternativeExecutableNames(), String.valueOf(isSearchPathExt()),
+                getVersionCmdString(), getVersionPatternString() };
+        return Util.getDigestOf(Arrays.toString(settings));
+    }
+
+    /**
+     * Runs the version command (unless we already know the answer) and parses
+     * its output.
+     */
+    @CheckForNull
+    private String detectVersion(@NonNull final Node node, @CheckForNull final TaskListener log,
+            @NonNull final FilePath toolHome, @NonNull final FoundExecutable found, @NonNull final String[] vCmd,
+            @NonNull final Pattern vPattern) throws IOException, InterruptedException {
+        final DetectedVersionCache.Key cacheKey = new DetectedVersionCache.Key(node.getNodeName(), found, vCmd,
+                vPattern.pattern());
+        String parsedVersion = DetectedVersionCache.get(cacheKey);
+        if (parsedVersion == null) {
+            final VersionCmdOutput output = new VersionCmdOutput(vPattern);
+            final Launcher launcher = node.createLauncher(log);
+            runCommandOnNode(launcher, toolHome, vCmd, output);
+            output.close();
+            parsedVersion = output.getVersion();
+            if (parsedVersion != null) {
+                DetectedVersionCache.put(cacheKey, parsedVersion);
+            }
+        }
+        return parsedVersion;
+    }
+
+    @NonNull
+    private WrongVersionException mkWrongVersionException(@NonNull final String exeName,
+            @NonNull final FilePath whereFound, @CheckForNull final String parsedVersion) {
+        final String range = getVersionRange();
+        if (range == null) {
+            return new WrongVersionException(exeName, whereFound.getRemote(), parsedVersion, getVersionMin(),
+                    getVersionMax());
+        }
+        return new WrongVersionException(exeName, whereFound.getRemote(), parsedVersion, getVersionMin(),
+                getVersionMax(), range);
+    }
+
+    /**
+     * Runs the version command against every copy of the executable on the
+     * PATH, all at once, and returns the first (in PATH order) whose version
+     * is acceptable.
+     */
+    @NonNull
+    private FilePath findFirstMatchingVersion(@NonNull final Node node, @CheckForNull final TaskListener log,
+            @NonNull final String exeName, @NonNull final String[] vCmd, @NonNull final Pattern vPattern)
+            throws IOException, InterruptedException {
+        final VersionRange acceptableVersions = getCompiledVersionRange();
+        final FilePath rootPath = node.getRootPath();
+        if (rootPath == null) {
+            throw new IllegalStateException(Messages.IsAlreadyOnPath_agentIsOffline());
+        }
+        final List<FoundExecutable> candidates = rootPath
+                .act(mkConfiguredCallable(exeName, node, log).findingAllMatches());
+        final int numberOfCandidates = candidates.size();
+        final FilePath[] toolHomes = new FilePath[numberOfCandidates];
+        final DetectedVersionCache.Key[] cacheKeys = new DetectedVersionCache.Key[numberOfCandidates];
+        final String[] parsedVersions = new String[numberOfCandidates];
+        final Proc[] procs = new Proc[numberOfCandidates];
+        final VersionCmdOutput[] outputs = new VersionCmdOutput[numberOfCandidates];
+        VersionCmdTimedOutException timedOut = null;
+        try {
+            Launcher launcher = null;
+            for (int i = 0; i < numberOfCandidates; i++) {
+                final FoundExecutable candidate = candidates.get(i);
+                toolHomes[i] = calcToolHome(node, exeName, candidate);
+                cacheKeys[i] = new DetectedVersionCache.Key(node.getNodeName(), candidate, vCmd, vPattern.pattern());
+                parsedVersions[i] = DetectedVersionCache.get(cacheKeys[i]);
+                if (parsedVersions[i] == null) {
+                    if (launcher == null) {
+                        launcher = node.createLauncher(log);
+                    }
+                    outputs[i] = new VersionCmdOutput(vPattern);
+                    final String[] cmd = calcVersionCmdFor(vCmd, exeName, candidate);
+                    procs[i] = startCommandOnNode(launcher, toolHomes[i], cmd, outputs[i]);
+                }
+            }
+            final int timeoutSeconds = calcVersionCmdTimeoutSeconds();
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+            for (int i = 0; i < numberOfCandidates; i++) {
+                if (procs[i] != null) {
+                    try {
+                        awaitVersionCmd(procs[i], outputs[i], deadline, timeoutSeconds);
+                    } catch (VersionCmdTimedOutException ex) {
+                        // a later copy might still be acceptable
+                        if (timedOut == null) {
+                            timedOut = ex;
+                        }
+                        continue;
+                    }
+                    parsedVersions[i] = outputs[i].getVersion();
+                    if (parsedVersions[i] != null) {
+                        DetectedVersionCache.put(cacheKeys[i], parsedVersions[i]);
+                    }
+                }
+                if (acceptableVersions.check(Version.parse(parsedVersions[i])) == 0) {
+                    return toolHomes[i];
+                }
+            }
+        } finally {
+            for (final Proc proc : procs) {
+                if (proc != null && proc.isAlive()) {
+                    proc.kill();
+                }
+            }
+        }
+        if (timedOut != null) {
+            throw timedOut; // that's worth trying again, unlike a wrong version
+        }
+        throw mkWrongVersionException(exeName, toolHomes[0], parsedVersions[0]);
+    }
+
+    /**
+     * Works out the version command to run for a specific copy of the
+     * executable. If the command runs the executable by name then it'd find
+     * whatever is first on the PATH, so we point it at the right copy.
+     */
+    @NonNull
+    static String[] calcVersionCmdFor(@NonNull final String[] vCmd, @NonNull final String exeName,
+            @NonNull final FoundExecutable candidate) {
+        final String candidatePath = candidate.getAbsolutePath();
+        final String candidateName = new File(candidatePath).getName();
+        if (!vCmd[0].equals(exeName) && !vCmd[0].equals(candidateName)) {
+            return vCmd;
+        }
+        final String[] result = Arrays.copyOf(vCmd, vCmd.length);
+        result[0] = candidatePath;
+        return result;
+    }
+
+    /**
+     * Works out where the tool's home is, given where we found its executable.
+     */
+    @NonNull
+    private FilePath calcToolHome(@NonNull final Node node, @NonNull final String exeName,
+            @NonNull final FoundExecutable found) {
+        final FilePath executablePath = node.createPath(found.getAbsolutePath());
+        if (executablePath == null) {
+            throw new IllegalStateException(Messages.IsAlreadyOnPath_agentIsOffline());
+        }
         final FilePath parent = executablePath.getParent();
         if (parent == null) {
             // This shouldn't happen, hence not localized.
@@ -274,52 +774,144 @@ public class IsAlreadyOnPath extends ToolInstaller {
                     "Executable (" + exeName + ") found at '" + executablePath + "' has no parent folder");
         }
         final String relPathOrNull = getRelativePath();
-        final FilePath resultToReturn;
         if (relPathOrNull == null || relPathOrNull.equals(".")) {
-            resultToReturn = parent;
-        } else {
-            resultToReturn = parent.child(relPathOrNull);
-        }
-        final String[] vCmd = getVersionCmd();
-        final Pattern vPattern = getVersionPattern();
-        final String vMax = getVersionMax();
-        final String vMin = getVersionMin();
-        if (vCmd != null && vPattern != null && (vMin != null || vMax != null)) {
-            final ByteArrayOutputStream output = new ByteArrayOutputStream();
-            final Launcher launcher = node.createLauncher(log);
-            runCommandOnNode(launcher, resultToReturn, vCmd, output);
-            final String cmdOutput = output.toString(StandardCharsets.UTF_8.name());
-            final String parsedVersion = parseVersionCmdOutputForVersion(vPattern, cmdOutput);
-            final int versionComparisonResult = checkVersionIsInRange(vMin, vMax, parsedVersion);
-            if (versionComparisonResult != 0) {
-                throw new WrongVersionException(exeName, resultToReturn.getRemote(), parsedVersion, vMin,
-                        vMax);
-            }
+            return parent;
         }
-        return resultToReturn;
+        return parent.child(relPathOrNull);
     }
 
     @NonNull
-    private FilePath findExecutableOnNodeOrThrow(@NonNull final String exeName, @NonNull Node node,
+    private FoundExecutable findExecutableOnNodeOrThrow(@NonNull final String exeName, @NonNull Node node,
             @CheckForNull final TaskListener logOrNull) throws IOException, InterruptedException {
         final FilePath rootPath = node.getRootPath();
         if (rootPath == null) {
             throw new IllegalStateException(Messages.IsAlreadyOnPath_agentIsOffline());
         }
+        return rootPath.act(mkConfiguredCallable(exeName, node, logOrNull));
+    }
+
+    @NonNull
+    private FindOnPathCallable mkConfiguredCallable(@NonNull final String exeName, @NonNull Node node,
+            @CheckForNull final TaskListener logOrNull) {
         final FindOnPathCallable nodeOperation = mkCallable(exeName, logOrNull);
-        final String absolutePathToExecutable = rootPath.act(nodeOperation);
-        final FilePath executablePath = node.createPath(absolutePathToExecutable);
-        if (executablePath == null) {
+        if (!searchesDefaultPath()) {
+            final List<EnvVars> envOverrides = isUseNodeEnvironment() ? calcEnvironmentOverrides(node) : null;
+            final String extras = getExtraSearchPath();
+            final List<String> extraDirs = extras == null ? null : Arrays.asList(extras.split("\\R"));
+            nodeOperation.setSearchPathOverrides(envOverrides, extraDirs);
+            final String alternatives = getAlternativeExecutableNames();
+            final List<String> alternativeNames = alternatives == null ? null
+                    : Arrays.asList(alternatives.split("\\R"));
+            nodeOperation.setCandidateNames(alternativeNames, isSearchPathExt());
+        }
+        return nodeOperation;
+    }
+
+    /**
+     * Gathers the environment variables that builds on this node would have
+     * configured via {@link EnvironmentVariablesNodeProperty}, in the order
+     * they should be applied.
+     * 
+     * @param node The node.
+     * @return Global overrides (if any) followed by the node's own overrides
+     *         (if any).
+     */
+    @NonNull
+    static List<EnvVars> calcEnvironmentOverrides(@NonNull Node node) {
+        final List<EnvVars> result = new ArrayList<>(2);
+        final Jenkins jenkinsOrNull = Jenkins.getInstanceOrNull();
+        if (jenkinsOrNull != null) {
+            addEnvironmentOverrides(result, jenkinsOrNull.getGlobalNodeProperties());
+        }
+        addEnvironmentOverrides(result, node.getNodeProperties());
+        return result;
+    }
+
+    private static void addEnvironmentOverrides(@NonNull final List<EnvVars> result,
+            @CheckForNull final DescribableList<NodeProperty<?>, NodePropertyDescriptor> propertiesOrNull) {
+        if (propertiesOrNull == null) {
+            return;
+        }
+        final EnvironmentVariablesNodeProperty envProperty = propertiesOrNull
+                .get(EnvironmentVariablesNodeProperty.class);
+        if (envProperty != null && !envProperty.getEnvVars().isEmpty()) {
+            result.add(new EnvVars(envProperty.getEnvVars()));
+        }
+    }
+
+    /**
+     * Locates many executables on a node in a single remote call, so that
+     * several {@link IsAlreadyOnPath} installers can share the work.
+     * 
+     * @param node            The node to search.
+     * @param executableNames The executables to look for.
+     * @return Details of each executable found, indexed by name. Executables
+     *         that weren't found are not present.
+     * @throws IOException          if we failed to talk to the node.
+     * @throws InterruptedException if we were interrupted.
+     */
+    @Restricted(NoExternalUse.class)
+    @NonNull
+    static Map<String, FoundExecutable> findExecutablesOnNode(@NonNull Node node,
+            @NonNull Collection<String> executableNames) throws IOException, InterruptedException {
+        final FilePath rootPath = node.getRootPath();
+        if (rootPath == null) {
             throw new IllegalStateException(Messages.IsAlreadyOnPath_agentIsOffline());
         }
-        return executablePath;
+        return rootPath.act(new FindOnPathCallable.FindAllOnPathCallable(executableNames));
     }
 
     // package access for test purposes only
     @Restricted(NoExternalUse.class)
     void runCommandOnNode(final Launcher launcher, final FilePath pwd, final String[] cmd,
-            final OutputStream output) throws IOException, InterruptedException {
-        launcher.launch().cmds(cmd).stdout(output).pwd(pwd).join();
+            final VersionCmdOutput output) throws IOException, InterruptedException {
+        final Proc proc = startCommandOnNode(launcher, pwd, cmd, output);
+        final int timeoutSeconds = calcVersionCmdTimeoutSeconds();
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        awaitVersionCmd(proc, output, deadline, timeoutSeconds);
+    }
+
+    /**
+     * Waits for a version command to either tell us its version, exit, or run
+     * out of time. Whichever happens first, we make sure the command is no
+     * longer running afterwards.
+     * 
+     * @param proc           The running version command.
+     * @param output         Where its output is going.
+     * @param deadline       When we give up, as per {@link System#nanoTime()}.
+     * @param timeoutSeconds What the deadline was based on, for reporting.
+     * @throws VersionCmdTimedOutException if the deadline passed first.
+     * @throws IOException          if the command failed.
+     * @throws InterruptedException if we were interrupted.
+     */
+    private static void awaitVersionCmd(@NonNull final Proc proc, @NonNull final VersionCmdOutput output,
+            final long deadline, final int timeoutSeconds) throws IOException, InterruptedException {
+        try {
+            while (!output.hasMatched() && proc.isAlive()) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) {
+                    throw new VersionCmdTimedOutException(timeoutSeconds);
+                }
+                output.awaitMatch(Math.min(remaining, VERSION_CMD_POLL_NANOS), TimeUnit.NANOSECONDS);
+            }
+            if (!output.hasMatched()) {
+                // let it finish giving us its output
+                proc.join();
+            }
+        } finally {
+            if (proc.isAlive()) {
+                proc.kill();
+            }
+            output.close();
+        }
+    }
+
+    // package access for test purposes only
+    @Restricted(NoExternalUse.class)
+    @NonNull
+    Proc startCommandOnNode(final Launcher launcher, final FilePath pwd, final String[] cmd,
+            final VersionCmdOutput output) throws IOException {
+        return launcher.launch().cmds(cmd).stdout(output).pwd(pwd).start();
     }
 
     // package access for test purposes only
@@ -329,6 +921,21 @@ public class IsAlreadyOnPath extends ToolInstaller {
         return new FindOnPathCallable(exeName, logOrNull);
     }
 
+    /**
+     * Indicates that the version command took too long, so we don't know
+     * what version we've got. Unlike a {@link WrongVersionException}, this
+     * may well be worth trying again (e.g. if the command was waiting on a
+     * busy licence server).
+     */
+    @Restricted(NoExternalUse.class)
+    static class VersionCmdTimedOutException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        VersionCmdTimedOutException(final int timeoutSeconds) {
+            super(Messages.IsAlreadyOnPath_versionCmdTimedOut(timeoutSeconds));
+        }
+    }
+
     /**
      * Descriptor for {@link IsAlreadyOnPath}.
      */
@@ -344,6 +951,10 @@ public class IsAlreadyOnPath extends ToolInstaller {
             return FormValidation.validateRequired(value);
         }
 
+        public FormValidation doCheckVersionCmdTimeoutSeconds(@QueryParameter String value) {
+            return FormValidation.validateNonNegativeInteger(value);
+        }
+
         public FormValidation doCheckVersionCmdString(@QueryParameter String value) {
             if (Util.fixEmpty(value) == null) {
                 return FormValidation.ok(Messages.IsAlreadyOnPath_noVersionValidation());
@@ -373,9 +984,10 @@ public class IsAlreadyOnPath extends ToolInstaller {
 
         public FormValidation doCheckVersionMin(@QueryParameter String versionCmdString,
                 @QueryParameter String versionPatternString, @QueryParameter String versionMin,
-                @QueryParameter String versionMax) {
+                @QueryParameter String versionMax, @QueryParameter String versionRange) {
             if (Util.fixEmpty(versionCmdString) != null && Util.fixEmpty(versionPatternString) != null) {
-                if (Util.fixEmpty(versionMin) == null && Util.fixEmpty(versionMax) == null) {
+                if (Util.fixEmpty(versionMin) == null && Util.fixEmpty(versionMax) == null
+                        && Util.fixEmptyAndTrim(versionRange) == null) {
                     return FormValidation.error(Messages.IsAlreadyOnPath_versionMinMaxNotSpecified());
                 }
             }
@@ -392,9 +1004,23 @@ public class IsAlreadyOnPath extends ToolInstaller {
             return FormValidation.ok();
         }
 
+        public FormValidation doCheckVersionRange(@QueryParameter String versionRange) {
+            final String range = Util.fixEmptyAndTrim(versionRange);
+            if (range == null) {
+                return FormValidation.ok();
+            }
+            try {
+                VersionRange.parse(range);
+            } catch (IllegalArgumentException ex) {
+                return FormValidation.error(Messages.IsAlreadyOnPath_versionRangeIsInvalid(range, ex.getMessage()));
+            }
+            return FormValidation.ok();
+        }
+
         public FormValidation doCheckVersionTestString(@QueryParameter String versionTestString,
                 @QueryParameter String versionCmdString, @QueryParameter String versionPatternString,
-                @QueryParameter String versionMin, @QueryParameter String versionMax) {
+                @QueryParameter String versionMin, @QueryParameter String versionMax,
+                @QueryParameter String versionRange) {
             if (Util.fixEmpty(versionTestString) == null) {
                 return FormValidation.ok();
             }
@@ -406,7 +1032,8 @@ public class IsAlreadyOnPath extends ToolInstaller {
                 return FormValidation.warning(Messages.IsAlreadyOnPath_noVersionValidation() + "\n"
                         + Messages.IsAlreadyOnPath_versionPatternIsEmpty());
             }
-            if (Util.fixEmpty(versionMin) == null ) {
+            final String range = Util.fixEmptyAndTrim(versionRange);
+            if (Util.fixEmpty(versionMin) == null && range == null) {
                 if (Util.fixEmpty(versionMax) == null ) {
                     return FormValidation.warning(Messages.IsAlreadyOnPath_noVersionValidation() + "\n"
                             + Messages.IsAlreadyOnPath_versionMinMaxNotSpecified());
@@ -430,6 +1057,18 @@ public class IsAlreadyOnPath extends ToolInstaller {
             if (versionComparisonResult > 0) {
                 return FormValidation.warning(Messages.IsAlreadyOnPath_versionIsTooHigh(parsedVersion, versionMax));
             }
+            if (range != null) {
+                final VersionRange acceptableVersions;
+                try {
+                    acceptableVersions = VersionRange.parse(range);
+                } catch (IllegalArgumentException ex) {
+                    return FormValidation.warning(Messages.IsAlreadyOnPath_noVersionValidation() + "\n"
+                            + Messages.IsAlreadyOnPath_versionRangeIsInvalid(range, ex.getMessage()));
+                }
+                if (acceptableVersions.check(Version.parse(parsedVersion)) != 0) {
+                    return FormValidation.warning(Messages.IsAlreadyOnPath_versionIsOutsideRange(parsedVersion, range));
+                }
+            }
             return FormValidation.ok(Messages.IsAlreadyOnPath_versionIsOk(parsedVersion));
         }
     }
@@ -445,21 +1084,7 @@ public class IsAlreadyOnPath extends ToolInstaller {
     // default access for unit-test purposes
     @Restricted(NoExternalUse.class)
     static String parseVersionCmdOutputForVersion(Pattern versionPattern, String cmdOutput) {
-        for (final String cmdLine : cmdOutput.split("\\R")) {
-            final Matcher matcher = versionPattern.matcher(cmdLine);
-            if (matcher.matches()) {
-                final int gc = matcher.groupCount();
-                final StringBuilder result = new StringBuilder();
-                for (int g = 1; g <= gc; g++) {
-                    final String group = matcher.group(g);
-                    if (group != null) {
-                        result.append(group);
-                    }
-                }
-                return result.toString();
-            }
-        }
-        return null;
+        return new VersionLineMatcher(versionPattern).matchFirstLine(cmdOutput);
     }
 
     /**
@@ -478,19 +1103,7 @@ public class IsAlreadyOnPath extends ToolInstaller {
     // default access for unit-test purposes
     @Restricted(NoExternalUse.class)
     static int checkVersionIsInRange(@Nullable String versionMin, @Nullable String versionMax, @Nullable String actualVersion) {
-        if (Util.fixEmpty(versionMin) != null) {
-            final int cmpParsedToMin = compareVersions(actualVersion, versionMin);
-            if (cmpParsedToMin < 0) {
-                return -1; // parsedVersion is lower than versionMin
-            }
-        }
-        if (Util.fixEmpty(versionMax) != null) {
-            final int cmpParsedToMax = compareVersions(actualVersion, versionMax);
-            if (cmpParsedToMax > 0) {
-                return 1; // parsedVersion is higher than versionMax
-            }
-        }
-        return 0;
+        return VersionRange.between(versionMin, versionMax).check(Version.parse(actualVersion));
     }
 
     /**
@@ -500,89 +1113,6 @@ public class IsAlreadyOnPath extends ToolInstaller {
     // default access for descriptor
     @Restricted(NoExternalUse.class)
     static int compareVersions(@Nullable String compoundVersionA, @Nullable String compoundVersionB) {
-        final String[] splitA = compoundVersionA==null ? new String[0] : compoundVersionA.split("\\.", -1);
-        final String[] splitB = compoundVersionB==null ? new String[0] : compoundVersionB.split("\\.", -1);
-        final int lengthA = splitA.length;
-        final int lengthB = splitB.length;
-        final int highestLength = Math.max(lengthA, lengthB);
-        for (int i = 0; i < highestLength; i++) {
-            final String partA = lengthA > i ? splitA[i] : null;
-            final String partB = lengthB > i ? splitB[i] : null;
-            final int result = compareNullableVersionParts(partA, partB);
-            if (result != 0) {
-                return result;
-            }
-        }
-        return 0;
-    }
-
-    /**
-     * @return 0 if versions are equivalent, +ve if partA is higher than partB, -ve
-     *         if partA is lower.
-     */
-    private static int compareNullableVersionParts(@Nullable String partA, @Nullable String partB) {
-        if (partA == null) {
-            if (partB == null) {
-                return 0;
-            } else {
-                return -1;
-            }
-        } else {
-            if (partB == null) {
-                return 1;
-            } else {
-                return compareVersionParts(partA, partB);
-            }
-        }
-    }
-
-    /**
-     * Compares two strings on the assumption that they have a numerical start
-     * followed by lexicographical part.
-     * 
-     * @return 0 if versions are equivalent, +ve if a is higher than b, -ve if a is
-     *         lower.
-     */
-    private static int compareVersionParts(@NonNull String a, @NonNull String b) {
-        final int ai = findIndexOfFirstNonnumericalCharacter(a);
-        final int bi = findIndexOfFirstNonnumericalCharacter(b);
-        final String aNumberString;
-        final String bNumberString;
-        final String aRemainder;
-        final String bRemainder;
-        if (ai >= 0) {
-            aNumberString = a.substring(0, ai);
-            aRemainder = a.substring(ai);
-        } else {
-            aNumberString = a;
-            aRemainder = "";
-        }
-        if (bi >= 0) {
-            bNumberString = b.substring(0, bi);
-            bRemainder = b.substring(bi);
-        } else {
-            bNumberString = b;
-            bRemainder = "";
-        }
-        final long aNumber = aNumberString.isEmpty() ? -1L : Long.parseLong(aNumberString);
-        final long bNumber = bNumberString.isEmpty() ? -1L : Long.parseLong(bNumberString);
-        if (aNumber > bNumber) {
-            return 1;
-        }
-        if (aNumber < bNumber) {
-            return -1;
-        }
-        return aRemainder.compareTo(bRemainder);
-    }
-
-    private static int findIndexOfFirstNonnumericalCharacter(@NonNull String s) {
-        final int l = s.length();
-        for (int i = 0; i < l; i++) {
-            final char c = s.charAt(i);
-            if (!Character.isDigit(c)) {
-                return i;
-            }
-        }
-        return -l;
+        return Version.parse(compoundVersionA).compareTo(Version.parse(compoundVersionB));
     }
 }
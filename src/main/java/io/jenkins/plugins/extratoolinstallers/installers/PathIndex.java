@@ -0,0 +1,138 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import jenkins.util.SystemProperties;
+
+/**
+ * Remembers what files are in each directory on the PATH, so that
+ * {@link FindOnPathCallable} can rule out most PATH entries without touching
+ * the filesystem for every executable in every directory.
+ * <p>
+ * This lives in the JVM that does the searching (i.e. the agent). A
+ * directory's listing is reused until the directory's last-modified timestamp
+ * changes, which it does whenever a file is added, removed or renamed. As
+ * some filesystems only record timestamps to the nearest second or two, a
+ * listing taken soon after the directory was modified isn't trusted and will
+ * be re-taken next time.
+ * </p>
+ * <p>
+ * The index only says which names are present; callers must still check that
+ * a name it reports is an executable file.
+ * </p>
+ */
+final class PathIndex {
+    /**
+     * A listing taken within this many milliseconds of the directory's
+     * timestamp is not trusted.
+     */
+    static final long TIMESTAMP_GRANULARITY_MILLIS = 2000L;
+
+    /** Set to true to turn the index off and stat every possibility. */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Can be changed from the script console")
+    static /* almost final */ boolean DISABLED = SystemProperties
+            .getBoolean(PathIndex.class.getName() + ".disabled");
+
+    private static final boolean CASE_INSENSITIVE = File.separatorChar == '\\';
+
+    private static final ConcurrentMap<String, Listing> LISTINGS = new ConcurrentHashMap<>();
+
+    private PathIndex() {
+    }
+
+    /**
+     * Tells us whether a directory might contain a given file.
+     * 
+     * @param dirOnPath The directory.
+     * @param fileName  The name of the file we're looking for.
+     * @return false if we know the directory does not contain the file, true
+     *         if it might (or if the name is a relative path, e.g.
+     *         <code>bin/tool</code>, which we don't index).
+     */
+    static boolean mightContain(@NonNull final String dirOnPath, @NonNull final String fileName) {
+        if (DISABLED || fileName.indexOf('/') >= 0 || fileName.indexOf(File.separatorChar) >= 0) {
+            return true;
+        }
+        final Set<String> names = getNames(dirOnPath);
+        return names == null || names.contains(normalize(fileName));
+    }
+
+    /** Forgets everything. */
+    static void clear() {
+        LISTINGS.clear();
+    }
+
+    /**
+     * Gets the names of the files in a directory, re-listing it if it has
+     * changed since we last looked.
+     * 
+     * @param dirOnPath The directory.
+     * @return The (normalized) names, or null if the name given is a relative
+     *         path, which we don't index as it depends on the current directory.
+     */
+    @CheckForNull
+    private static Set<String> getNames(@NonNull final String dirOnPath) {
+        final File dir = new File(dirOnPath);
+        if (!dir.isAbsolute()) {
+            return null;
+        }
+        final long lastModified = dir.lastModified();
+        final Listing existing = LISTINGS.get(dirOnPath);
+        if (existing != null && existing.isStillValidFor(lastModified)) {
+            return existing.names;
+        }
+        final Listing fresh = Listing.of(dir, lastModified);
+        LISTINGS.put(dirOnPath, fresh);
+        return fresh.names;
+    }
+
+    @NonNull
+    private static String normalize(@NonNull final String fileName) {
+        return CASE_INSENSITIVE ? fileName.toLowerCase(Locale.ROOT) : fileName;
+    }
+
+    /** What was in a directory when we last looked. */
+    private static final class Listing {
+        private final long lastModified;
+        private final boolean trustworthy;
+        @NonNull
+        private final Set<String> names;
+
+        private Listing(long lastModified, boolean trustworthy, @NonNull Set<String> names) {
+            this.lastModified = lastModified;
+            this.trustworthy = trustworthy;
+            this.names = names;
+        }
+
+        @NonNull
+        static Listing of(@NonNull final File dir, final long lastModified) {
+            final long listedAt = System.currentTimeMillis();
+            final String[] contents = dir.list();
+            final Set<String> names;
+            if (contents == null) {
+                names = Collections.emptySet();
+            } else {
+                names = new HashSet<>(contents.length * 2);
+                for (final String name : contents) {
+                    names.add(normalize(name));
+                }
+            }
+            final boolean trustworthy = listedAt - lastModified > TIMESTAMP_GRANULARITY_MILLIS;
+            return new Listing(lastModified, trustworthy, names);
+        }
+
+        boolean isStillValidFor(final long currentLastModified) {
+            return trustworthy && currentLastModified == lastModified;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import hudson.XmlFile;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import jenkins.util.Timer;
+
+/**
+ * Something we keep on the controller, in an {@link XmlFile} of its own, so
+ * that it survives a restart. It is only written out if it has changed, and
+ * {@link #saveSoon()} lets a build carry on without waiting for that.
+ */
+abstract class SavedState {
+    private static final Logger LOGGER = Logger.getLogger(SavedState.class.getName());
+
+    /**
+     * How long (in seconds) {@link #saveSoon()} waits before saving, so that a
+     * burst of changes only gets written once.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Can be changed from the script console")
+    static /* almost final */ int SAVE_DELAY_SECONDS = SystemProperties
+            .getInteger(SavedState.class.getName() + ".saveDelaySeconds", 10);
+
+    @CheckForNull
+    private final transient XmlFile storage;
+    /** True if we have changed since we were last saved. */
+    private transient boolean dirty;
+    /** True if {@link #saveSoon()} has a save pending. */
+    private transient boolean saveScheduled;
+
+    SavedState(@CheckForNull XmlFile storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Works out where the state for a class should be kept.
+     * 
+     * @param clazz The class whose state it is.
+     * @return A file in the Jenkins root folder named after the class, or null
+     *         if Jenkins isn't running.
+     */
+    @CheckForNull
+    static XmlFile calcStorage(@NonNull final Class<? extends SavedState> clazz) {
+        final Jenkins jenkinsOrNull = Jenkins.getInstanceOrNull();
+        return jenkinsOrNull == null ? null
+                : new XmlFile(Jenkins.XSTREAM2, new File(jenkinsOrNull.getRootDir(), clazz.getName() + ".xml"));
+    }
+
+    /** Notes that we have changed and need to be saved. */
+    synchronized void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Indicates whether we have changed since we were last saved.
+     * 
+     * @return true if {@link #save()} has something to do.
+     */
+    synchronized boolean isDirty() {
+        return dirty;
+    }
+
+    /** Writes us to disk, if we have changed. */
+    synchronized void save() {
+        if (storage == null || !dirty) {
+            return;
+        }
+        try {
+            storage.write(this);
+            dirty = false;
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to save " + storage, ex);
+        }
+    }
+
+    /**
+     * Arranges for {@link #save()} to be called in the background, after
+     * {@link #SAVE_DELAY_SECONDS}, unless that's already been arranged.
+     */
+    synchronized void saveSoon() {
+        if (storage == null || saveScheduled) {
+            return;
+        }
+        saveScheduled = true;
+        Timer.get().schedule(() -> {
+            synchronized (this) {
+                saveScheduled = false;
+                save();
+            }
+        }, Math.max(0, SAVE_DELAY_SECONDS), TimeUnit.SECONDS);
+    }
+
+    /** Reads us from disk, if we have been saved before. */
+    synchronized void load() {
+        if (storage == null || !storage.exists()) {
+            return;
+        }
+        try {
+            storage.unmarshal(this);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to load " + storage, ex);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import hudson.XmlFile;
+import hudson.model.labels.LabelAtom;
+import jenkins.util.SystemProperties;
+
+/**
+ * Records which executables {@link IsAlreadyOnPath} has found on each node,
+ * and what version they were, so that installations can be answered without
+ * searching the node and running version commands on the critical path of a
+ * build.
+ * <p>
+ * The inventory is populated by {@link ToolInventoryDiscovery} and by
+ * {@link IsAlreadyOnPath} itself, and is persisted on the controller (by
+ * {@link ToolInventoryDiscovery}, so builds don't wait for it) so that it
+ * survives a restart. This is disabled unless the
+ * <code>discoveryPeriodMinutes</code> system property is set to a positive
+ * number.
+ * </p>
+ */
+final class ToolInventory extends SavedState {
+    /**
+     * How often (in minutes) {@link ToolInventoryDiscovery} scans the nodes.
+     * Zero or less disables the inventory.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Can be changed from the script console")
+    static /* almost final */ int DISCOVERY_PERIOD_MINUTES = SystemProperties
+            .getInteger(ToolInventory.class.getName() + ".discoveryPeriodMinutes", 0);
+
+    @CheckForNull
+    private static volatile ToolInventory instance;
+
+    /** Node name to inventory key to what we found. */
+    @NonNull
+    private final Map<String, Map<String, Entry>> entriesByNode = new HashMap<>();
+
+    /**
+     * Node name to the labels {@link ToolVersionLabelFinder} should give it,
+     * worked out whenever {@link #entriesByNode} changes so that Jenkins can
+     * ask for them as often as it likes without waiting for us.
+     */
+    @NonNull
+    private final transient Map<String, Set<LabelAtom>> labelsByNode = new ConcurrentHashMap<>();
+
+    ToolInventory(@CheckForNull XmlFile storage) {
+        super(storage);
+    }
+
+    /**
+     * Indicates whether the inventory is in use.
+     * 
+     * @return true if enabled.
+     */
+    static boolean isEnabled() {
+        return DISCOVERY_PERIOD_MINUTES > 0;
+    }
+
+    /**
+     * Gets the inventory, loading it from disk if necessary.
+     * 
+     * @return The inventory.
+     */
+    @NonNull
+    static ToolInventory get() {
+        ToolInventory result = instance;
+        if (result == null) {
+            synchronized (ToolInventory.class) {
+                result = instance;
+                if (result == null) {
+                    result = new ToolInventory(calcStorage(ToolInventory.class));
+                    result.load();
+                    result.updateAllLabels();
+                    instance = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks up what we last found on a node, ignoring anything older than
+     * twice the discovery period.
+     * 
+     * @param nodeName The node.
+     * @param key      What was being looked for, as per
+     *                 {@link IsAlreadyOnPath#getInventoryKey()}.
+     * @return What we found, or null if we don't know (or our knowledge is
+     *         too old to be trusted).
+     */
+    @CheckForNull
+    synchronized Entry lookup(@NonNull final String nodeName, @NonNull final String key) {
+        final Map<String, Entry> entries = entriesByNode.get(nodeName);
+        final Entry entry = entries == null ? null : entries.get(key);
+        if (entry == null || !isFresh(entry, System.currentTimeMillis())) {
+            return null;
+        }
+        return entry;
+    }
+
+    private static boolean isFresh(@NonNull final Entry entry, final long now) {
+        final long maxAgeMillis = TimeUnit.MINUTES.toMillis(2L * Math.max(1, DISCOVERY_PERIOD_MINUTES));
+        return now - entry.getDiscoveredAt() <= maxAgeMillis;
+    }
+
+    /**
+     * Records what we found on a node.
+     * 
+     * @param nodeName The node.
+     * @param key      What was being looked for.
+     * @param entry    What was found.
+     */
+    synchronized void record(@NonNull final String nodeName, @NonNull final String key, @NonNull final Entry entry) {
+        entriesByNode.computeIfAbsent(nodeName, k -> new HashMap<>()).put(key, entry);
+        markDirty();
+        updateLabels(nodeName);
+    }
+
+    /**
+     * Forgets what we found on a node.
+     * 
+     * @param nodeName The node.
+     * @param key      What was being looked for.
+     */
+    synchronized void forget(@NonNull final String nodeName, @NonNull final String key) {
+        final Map<String, Entry> entries = entriesByNode.get(nodeName);
+        if (entries != null && entries.remove(key) != null) {
+            markDirty();
+            updateLabels(nodeName);
+        }
+    }
+
+    /**
+     * Gets everything we know about a node, ignoring anything too old to be
+     * trusted.
+     * 
+     * @param nodeName The node.
+     * @return An unmodifiable copy of our entries for that node, indexed by
+     *         inventory key.
+     */
+    @NonNull
+    synchronized Map<String, Entry> getEntries(@NonNull final String nodeName) {
+        final Map<String, Entry> entries = entriesByNode.get(nodeName);
+        if (entries == null) {
+            return Collections.emptyMap();
+        }
+        final long now = System.currentTimeMillis();
+        final Map<String, Entry> result = new HashMap<>();
+        for (final Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (isFresh(e.getValue(), now)) {
+                result.put(e.getKey(), e.getValue());
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Forgets about nodes that no longer exist.
+     * 
+     * @param existingNodeNames The nodes we should keep.
+     */
+    synchronized void retainNodes(@NonNull final Collection<String> existingNodeNames) {
+        if (entriesByNode.keySet().retainAll(existingNodeNames)) {
+            markDirty();
+        }
+        labelsByNode.keySet().retainAll(existingNodeNames);
+    }
+
+    /**
+     * Gets the labels our entries for a node give it. This doesn't lock or
+     * copy anything, as Jenkins asks for these a lot.
+     * 
+     * @param nodeName The node.
+     * @return An unmodifiable set of labels, as per
+     *         {@link ToolVersionLabelFinder#calcLabels(Collection)}.
+     */
+    @NonNull
+    Set<LabelAtom> getLabels(@NonNull final String nodeName) {
+        final Set<LabelAtom> labels = labelsByNode.get(nodeName);
+        return labels == null ? Collections.emptySet() : labels;
+    }
+
+    /**
+     * Works out a node's labels again, e.g. because some of our entries for it
+     * have become too old to be trusted.
+     * 
+     * @param nodeName The node.
+     */
+    synchronized void updateLabels(@NonNull final String nodeName) {
+        final Set<LabelAtom> labels = ToolVersionLabelFinder.calcLabels(getEntries(nodeName).values());
+        if (labels.isEmpty()) {
+            labelsByNode.remove(nodeName);
+        } else {
+            labelsByNode.put(nodeName, labels);
+        }
+    }
+
+    /** Works out every node's labels, e.g. once we've been loaded. */
+    synchronized void updateAllLabels() {
+        labelsByNode.clear();
+        for (final String nodeName : entriesByNode.keySet()) {
+            updateLabels(nodeName);
+        }
+    }
+
+    /** What we found. */
+    static final class Entry {
+        @CheckForNull
+        private final String executableName;
+        @NonNull
+        private final FoundExecutable executable;
+        @CheckForNull
+        private final String version;
+        private final long discoveredAt;
+
+        Entry(@NonNull String executableName, @NonNull FoundExecutable executable, @CheckForNull String version,
+                long discoveredAt) {
+            this.executableName = executableName;
+            this.executable = executable;
+            this.version = version;
+            this.discoveredAt = discoveredAt;
+        }
+
+        /**
+         * @return The name of the executable we looked for, or null if this
+         *         entry predates us recording that.
+         */
+        @CheckForNull
+        String getExecutableName() {
+            return executableName;
+        }
+
+        /** @return The executable that was found. */
+        @NonNull
+        FoundExecutable getExecutable() {
+            return executable;
+        }
+
+        /** @return Its version, or null if we didn't detect its version. */
+        @CheckForNull
+        String getVersion() {
+            return version;
+        }
+
+        /** @return When we found it. */
+        long getDiscoveredAt() {
+            return discoveredAt;
+        }
+    }
+}
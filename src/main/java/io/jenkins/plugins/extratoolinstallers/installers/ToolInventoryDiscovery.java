@@ -0,0 +1,160 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import hudson.Extension;
+import hudson.Functions;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.model.labels.LabelAtom;
+import hudson.tools.InstallSourceProperty;
+import hudson.tools.ToolDescriptor;
+import hudson.tools.ToolInstallation;
+import hudson.tools.ToolInstaller;
+import jenkins.model.Jenkins;
+
+/**
+ * Periodically looks for every {@link IsAlreadyOnPath} executable on every
+ * online node, recording what it finds in the {@link ToolInventory} so that
+ * builds don't have to wait for us to search the node, and so that
+ * {@link ToolVersionLabelFinder} can label nodes with what they have.
+ * <p>
+ * This is disabled unless {@link ToolInventory#isEnabled()}.
+ * </p>
+ */
+@Extension
+public class ToolInventoryDiscovery extends AsyncPeriodicWork {
+    public ToolInventoryDiscovery() {
+        super("Tool inventory discovery");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        if (!ToolInventory.isEnabled()) {
+            return HOUR;
+        }
+        return TimeUnit.MINUTES.toMillis(ToolInventory.DISCOVERY_PERIOD_MINUTES);
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        if (!ToolInventory.isEnabled()) {
+            return;
+        }
+        final Jenkins jenkins = Jenkins.get();
+        final Map<String, List<IsAlreadyOnPath>> installersByKey = new LinkedHashMap<>();
+        for (final ToolDescriptor<?> descriptor : ToolInstallation.all()) {
+            for (final ToolInstallation installation : descriptor.getInstallations()) {
+                final InstallSourceProperty isp = installation.getProperties().get(InstallSourceProperty.class);
+                if (isp != null && isp.installers != null) {
+                    for (final IsAlreadyOnPath installer : findIsAlreadyOnPathInstallers(
+                            isp.installers.getAll(ToolInstaller.class))) {
+                        if (installer.getExecutableName() != null) {
+                            installersByKey.computeIfAbsent(installer.getInventoryKey(), k -> new ArrayList<>())
+                                    .add(installer);
+                        }
+                    }
+                }
+            }
+        }
+        final ToolInventory inventory = ToolInventory.get();
+        final List<Node> nodes = new ArrayList<>(jenkins.getNodes());
+        nodes.add(jenkins);
+        final Set<String> nodeNames = new HashSet<>();
+        boolean labelsChanged = false;
+        for (final Node node : nodes) {
+            final String nodeName = node.getNodeName();
+            nodeNames.add(nodeName);
+            final Set<LabelAtom> labelsBefore = inventory.getLabels(nodeName);
+            final Computer computer = node.toComputer();
+            if (computer != null && computer.isOnline()) {
+                discover(inventory, installersByKey, node, listener);
+            }
+            inventory.updateLabels(nodeName); // in case anything has become too old to be trusted
+            labelsChanged |= !inventory.getLabels(nodeName).equals(labelsBefore);
+        }
+        inventory.retainNodes(nodeNames);
+        inventory.save();
+        if (labelsChanged) {
+            ToolVersionLabelFinder.refreshLabels();
+        }
+    }
+
+    private static void discover(@NonNull final ToolInventory inventory,
+            @NonNull final Map<String, List<IsAlreadyOnPath>> installersByKey, @NonNull final Node node,
+            @NonNull final TaskListener listener) throws InterruptedException {
+        final String nodeName = node.getNodeName();
+        for (final Map.Entry<String, List<IsAlreadyOnPath>> e : installersByKey.entrySet()) {
+            final IsAlreadyOnPath installer = findOneThatAppliesTo(e.getValue(), node);
+            if (installer == null) {
+                continue;
+            }
+            try {
+                final ToolInventory.Entry found = installer.discover(node, null);
+                if (found == null) {
+                    inventory.forget(nodeName, e.getKey());
+                } else {
+                    inventory.record(nodeName, e.getKey(), found);
+                }
+            } catch (IOException | RuntimeException ex) {
+                Functions.printStackTrace(ex, listener.error("Failed to discover "
+                        + installer.getExecutableName() + " on " + node.getDisplayName()));
+            }
+        }
+    }
+
+    @CheckForNull
+    private static IsAlreadyOnPath findOneThatAppliesTo(@NonNull final List<IsAlreadyOnPath> installers,
+            @NonNull final Node node) {
+        for (final IsAlreadyOnPath installer : installers) {
+            if (installer.appliesTo(node)) {
+                return installer;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds all the {@link IsAlreadyOnPath} installers in a list, including
+     * those nested within {@link AnyOfInstaller}s.
+     * 
+     * @param installers The installers to look through.
+     * @return The {@link IsAlreadyOnPath} installers, in the order found.
+     */
+    @NonNull
+    static List<IsAlreadyOnPath> findIsAlreadyOnPathInstallers(
+            @CheckForNull final List<? extends ToolInstaller> installers) {
+        final List<IsAlreadyOnPath> result = new ArrayList<>();
+        addIsAlreadyOnPathInstallers(result, installers);
+        return result;
+    }
+
+    private static void addIsAlreadyOnPathInstallers(@NonNull final List<IsAlreadyOnPath> result,
+            @CheckForNull final List<? extends ToolInstaller> installers) {
+        if (installers == null) {
+            return;
+        }
+        for (final ToolInstaller installer : installers) {
+            if (installer instanceof IsAlreadyOnPath) {
+                result.add((IsAlreadyOnPath) installer);
+            } else if (installer instanceof AnyOfInstaller) {
+                final InstallSourceProperty nested = ((AnyOfInstaller) installer).getInstallers();
+                if (nested != null && nested.installers != null) {
+                    addIsAlreadyOnPathInstallers(result, nested.installers.getAll(ToolInstaller.class));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.Run;
+import hudson.model.listeners.RunListener;
+import jenkins.model.Jenkins;
+
+/**
+ * Releases the {@link ToolLeases} a build holds when it finishes, then deletes
+ * any old tool versions that are no longer needed.
+ */
+@Extension
+public class ToolLeaseReleaser extends RunListener<Run<?, ?>> {
+    private static final Logger LOGGER = Logger.getLogger(ToolLeaseReleaser.class.getName());
+
+    @Override
+    public void onFinalized(Run<?, ?> run) {
+        final List<ToolLeases.Lease> released = ToolLeases.get().releaseAll(run.getExternalizableId());
+        final Map<String, Set<String>> toolFoldersByNode = new LinkedHashMap<>();
+        for (final ToolLeases.Lease lease : released) {
+            toolFoldersByNode.computeIfAbsent(lease.nodeName, k -> new LinkedHashSet<>()).add(lease.toolFolder);
+        }
+        for (final Map.Entry<String, Set<String>> entry : toolFoldersByNode.entrySet()) {
+            Computer.threadPoolForRemoting.submit(() -> deleteUnusedVersions(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    private static void deleteUnusedVersions(@NonNull final String nodeName, @NonNull final Set<String> toolFolders) {
+        final Jenkins jenkins = Jenkins.get();
+        final Node node = nodeName.isEmpty() ? jenkins : jenkins.getNode(nodeName);
+        final Computer computer = node == null ? null : node.toComputer();
+        if (computer == null || computer.isOffline()) {
+            return; // we'll tidy up the next time something is installed there
+        }
+        for (final String toolFolder : toolFolders) {
+            final FilePath path = node.createPath(toolFolder);
+            if (path == null) {
+                continue;
+            }
+            try {
+                ToolLeases.deleteUnusedVersions(node, path, null);
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Failed to delete unused versions in " + toolFolder + " on " + nodeName, ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serial;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import hudson.FilePath;
+import hudson.Util;
+import hudson.model.Executor;
+import hudson.model.Node;
+import hudson.model.Queue;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.util.SystemProperties;
+
+/**
+ * Keeps track of which builds are using which version of a tool that was
+ * installed by {@link AuthenticatedZipExtractionInstaller} with
+ * {@link AuthenticatedZipExtractionInstaller#isVersionedInstallations()} set,
+ * so that installing a newer version never deletes files that a build is
+ * still running.
+ * <p>
+ * A build takes a lease on the version it was given and the lease is released
+ * by {@link ToolLeaseReleaser} when the build finishes. Versions that are no
+ * longer current are deleted once they have no leases and have not been
+ * handed out for {@link #GRACE_MINUTES} minutes. The grace period protects
+ * users that we can't identify (e.g. pipeline <code>tool</code> steps, which
+ * don't run on an executor) and builds that were running when the controller
+ * restarted, as leases are only kept in memory.
+ * </p>
+ */
+final class ToolLeases {
+    /**
+     * How long (in minutes) after it was last handed out that an old version
+     * with no leases is kept.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Can be changed from the script console")
+    static /* almost final */ int GRACE_MINUTES = SystemProperties
+            .getInteger(ToolLeases.class.getName() + ".graceMinutes", 60);
+
+    private static final ToolLeases INSTANCE = new ToolLeases();
+
+    /** Set by code that installs tools on behalf of a build. */
+    private static final ThreadLocal<String> CURRENT_OWNER = new ThreadLocal<>();
+
+    /** Which builds are using each version. */
+    @NonNull
+    private final Map<Lease, Set<String>> ownersByLease = new HashMap<>();
+
+    ToolLeases() {
+    }
+
+    /**
+     * Gets our instance.
+     *
+     * @return The singleton instance.
+     */
+    @NonNull
+    static ToolLeases get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Works out which build we are installing tools for.
+     *
+     * @return The {@link Run#getExternalizableId()} of the build, or null if
+     *         we can't tell.
+     */
+    @CheckForNull
+    static String getCurrentOwner() {
+        final String owner = CURRENT_OWNER.get();
+        if (owner != null) {
+            return owner;
+        }
+        final Executor executor = Executor.currentExecutor();
+        final Queue.Executable executable = executor == null ? null : executor.getCurrentExecutable();
+        if (executable instanceof Run) {
+            return ((Run<?, ?>) executable).getExternalizableId();
+        }
+        return null;
+    }
+
+    /**
+     * Says which build the current thread is installing tools for, for when
+     * {@link #getCurrentOwner()} can't work it out for itself.
+     *
+     * @param owner
+     *            The {@link Run#getExternalizableId()} of the build, or null.
+     * @return The previous owner, which the caller should restore when done.
+     */
+    @CheckForNull
+    static String setCurrentOwner(@CheckForNull final String owner) {
+        final String previous = CURRENT_OWNER.get();
+        if (owner == null) {
+            CURRENT_OWNER.remove();
+        } else {
+            CURRENT_OWNER.set(owner);
+        }
+        return previous;
+    }
+
+    /**
+     * Records that a build is using a version of a tool.
+     *
+     * @param owner
+     *            The {@link Run#getExternalizableId()} of the build.
+     * @param nodeName
+     *            The node the tool is installed on.
+     * @param toolFolder
+     *            Where the tool's versions are kept.
+     * @param versionName
+     *            The name of the version's folder.
+     */
+    synchronized void acquire(@NonNull final String owner, @NonNull final String nodeName,
+            @NonNull final String toolFolder, @NonNull final String versionName) {
+        ownersByLease.computeIfAbsent(new Lease(nodeName, toolFolder, versionName), k -> new HashSet<>()).add(owner);
+    }
+
+    /**
+     * Releases everything a build was using.
+     *
+     * @param owner
+     *            The {@link Run#getExternalizableId()} of the build.
+     * @return The leases that were released.
+     */
+    @NonNull
+    synchronized List<Lease> releaseAll(@NonNull final String owner) {
+        final List<Lease> released = new ArrayList<>();
+        for (final Iterator<Map.Entry<Lease, Set<String>>> i = ownersByLease.entrySet().iterator(); i.hasNext();) {
+            final Map.Entry<Lease, Set<String>> entry = i.next();
+            if (entry.getValue().remove(owner)) {
+                released.add(entry.getKey());
+                if (entry.getValue().isEmpty()) {
+                    i.remove();
+                }
+            }
+        }
+        return released;
+    }
+
+    /**
+     * Gets the versions of a tool that are in use.
+     *
+     * @param nodeName
+     *            The node the tool is installed on.
+     * @param toolFolder
+     *            Where the tool's versions are kept.
+     * @return The names of the version folders that builds are using.
+     */
+    @NonNull
+    synchronized Set<String> getLeasedVersions(@NonNull final String nodeName, @NonNull final String toolFolder) {
+        final Set<String> result = new HashSet<>();
+        for (final Lease lease : ownersByLease.keySet()) {
+            if (lease.nodeName.equals(nodeName) && lease.toolFolder.equals(toolFolder)) {
+                result.add(lease.versionName);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the tool folders on a node that have versions in use.
+     *
+     * @param nodeName
+     *            The node the tools are installed on.
+     * @return Where the leased versions are kept.
+     */
+    @NonNull
+    synchronized Set<String> getLeasedToolFolders(@NonNull final String nodeName) {
+        final Set<String> result = new HashSet<>();
+        for (final Lease lease : ownersByLease.keySet()) {
+            if (lease.nodeName.equals(nodeName)) {
+                result.add(lease.toolFolder);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Deletes the versions of a tool that are no longer current, are not
+     * leased, and are past their grace period.
+     *
+     * @param node
+     *            The node the tool is installed on.
+     * @param toolFolder
+     *            Where the tool's versions are kept.
+     * @param logOrNull
+     *            Where to say what we deleted, or null.
+     * @throws IOException
+     *             if we failed.
+     * @throws InterruptedException
+     *             if we were interrupted.
+     */
+    static void deleteUnusedVersions(@NonNull final Node node, @NonNull final FilePath toolFolder,
+            @CheckForNull final TaskListener logOrNull) throws IOException, InterruptedException {
+        final Set<String> leased = get().getLeasedVersions(Util.fixNull(node.getNodeName()), toolFolder.getRemote());
+        final long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(GRACE_MINUTES);
+        final List<String> deleted = toolFolder.act(new DeleteUnusedVersions(leased, cutoff));
+        if (logOrNull != null) {
+            for (final String folder : deleted) {
+                logOrNull.getLogger().println(Messages.AuthenticatedZipExtractionInstaller_deleted_old_version(folder,
+                        node.getDisplayName()));
+            }
+        }
+    }
+
+    /** A version of a tool on a node. */
+    static final class Lease {
+        @NonNull
+        final String nodeName;
+        @NonNull
+        final String toolFolder;
+        @NonNull
+        final String versionName;
+
+        Lease(@NonNull String nodeName, @NonNull String toolFolder, @NonNull String versionName) {
+            this.nodeName = nodeName;
+            this.toolFolder = toolFolder;
+            this.versionName = versionName;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Lease)) {
+                return false;
+            }
+            final Lease other = (Lease) obj;
+            return nodeName.equals(other.nodeName) && toolFolder.equals(other.toolFolder)
+                    && versionName.equals(other.versionName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(nodeName, toolFolder, versionName);
+        }
+
+        @Override
+        public String toString() {
+            return versionName + " in " + toolFolder + " on " + nodeName;
+        }
+    }
+
+    /**
+     * Deletes version folders within a tool folder that aren't the current
+     * version, aren't leased, and whose
+     * {@link UnusedToolInstallationsCleaner#LAST_USED_FILENAME} is older than
+     * the cutoff.
+     */
+    static class DeleteUnusedVersions extends MasterToSlaveFileCallable<List<String>> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        @NonNull
+        private final Set<String> leased;
+        private final long cutoff;
+
+        DeleteUnusedVersions(@NonNull Set<String> leased, long cutoff) {
+            this.leased = Collections.unmodifiableSet(new HashSet<>(leased));
+            this.cutoff = cutoff;
+        }
+
+        @Override
+        public List<String> invoke(@NonNull File toolFolder, VirtualChannel channel) throws IOException {
+            final List<String> deleted = new ArrayList<>();
+            final File currentVersionFile = new File(toolFolder,
+                    AuthenticatedZipExtractionInstaller.CURRENT_VERSION_FILENAME);
+            if (!currentVersionFile.isFile()) {
+                return deleted; // never delete anything if we don't know what's current
+            }
+            final String current = new String(Files.readAllBytes(currentVersionFile.toPath()),
+                    StandardCharsets.UTF_8).trim();
+            final File[] versionFolders = toolFolder.listFiles(f -> f.isDirectory()
+                    && f.getName().startsWith(AuthenticatedZipExtractionInstaller.VERSION_FOLDER_PREFIX));
+            if (versionFolders == null) {
+                return deleted;
+            }
+            for (final File versionFolder : versionFolders) {
+                final String name = versionFolder.getName();
+                if (name.equals(current) || leased.contains(name)) {
+                    continue;
+                }
+                final File lastUsed = new File(versionFolder, UnusedToolInstallationsCleaner.LAST_USED_FILENAME);
+                final long lastUsedMillis = lastUsed.isFile() ? lastUsed.lastModified() : versionFolder.lastModified();
+                if (lastUsedMillis < cutoff) {
+                    Util.deleteRecursive(versionFolder);
+                    deleted.add(versionFolder.getAbsolutePath());
+                }
+            }
+            return deleted;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import hudson.Extension;
+import hudson.model.Label;
+import hudson.model.Node;
+import hudson.model.labels.LabelAtom;
+import hudson.model.labels.LabelFinder;
+import jenkins.model.Jenkins;
+
+/**
+ * Gives each node labels saying which tools the {@link ToolInventory} found
+ * on it, so that builds can ask for a node that already has a suitable
+ * version instead of failing with a {@link WrongVersionException} after
+ * they've been given an executor.
+ * <p>
+ * If <code>gcc</code> version <code>12.3.0</code> was found then the node gets
+ * the labels <code>tool:gcc</code>, <code>tool:gcc:12</code>,
+ * <code>tool:gcc:12.3</code> and <code>tool:gcc:12.3.0</code>. If no version
+ * command was configured then only <code>tool:gcc</code> is added.
+ * </p>
+ */
+@Extension
+public class ToolVersionLabelFinder extends LabelFinder {
+    /** Prefix of all the labels we add. */
+    static final String LABEL_PREFIX = "tool:";
+
+    @NonNull
+    @Override
+    public Collection<LabelAtom> findLabels(@NonNull Node node) {
+        if (!ToolInventory.isEnabled()) {
+            return Collections.emptySet();
+        }
+        return ToolInventory.get().getLabels(node.getNodeName());
+    }
+
+    /**
+     * Works out what labels the given inventory entries should produce.
+     * 
+     * @param entries What was found on a node.
+     * @return An unmodifiable set of labels, sorted.
+     */
+    @NonNull
+    static Set<LabelAtom> calcLabels(@NonNull final Collection<ToolInventory.Entry> entries) {
+        final Set<String> labelNames = calcLabelNames(entries);
+        if (labelNames.isEmpty()) {
+            return Collections.emptySet();
+        }
+        final Jenkins jenkinsOrNull = Jenkins.getInstanceOrNull();
+        final Set<LabelAtom> result = new TreeSet<>();
+        for (final String labelName : labelNames) {
+            result.add(jenkinsOrNull == null ? new LabelAtom(labelName) : jenkinsOrNull.getLabelAtom(labelName));
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * Works out what labels the given inventory entries should produce.
+     * 
+     * @param entries What was found on a node.
+     * @return The label names, sorted.
+     */
+    @NonNull
+    static Set<String> calcLabelNames(@NonNull final Collection<ToolInventory.Entry> entries) {
+        final Set<String> result = new TreeSet<>();
+        for (final ToolInventory.Entry entry : entries) {
+            final String exeName = entry.getExecutableName();
+            if (exeName == null) {
+                continue;
+            }
+            final String toolLabel = LABEL_PREFIX + exeName;
+            result.add(toolLabel);
+            final String version = entry.getVersion();
+            if (version != null) {
+                addVersionLabels(result, toolLabel, version);
+            }
+        }
+        return result;
+    }
+
+    private static void addVersionLabels(@NonNull final Set<String> result, @NonNull final String toolLabel,
+            @NonNull final String version) {
+        int end = version.indexOf('.');
+        while (end > 0) {
+            result.add(toolLabel + ':' + version.substring(0, end));
+            end = version.indexOf('.', end + 1);
+        }
+        result.add(toolLabel + ':' + version);
+    }
+
+    /**
+     * Tells Jenkins to recalculate which nodes have which labels, as the
+     * {@link ToolInventory} has changed.
+     */
+    static void refreshLabels() {
+        final Jenkins jenkinsOrNull = Jenkins.getInstanceOrNull();
+        if (jenkinsOrNull == null) {
+            return;
+        }
+        for (final Label label : jenkinsOrNull.getLabels()) {
+            label.reset();
+        }
+        jenkinsOrNull.trimLabels();
+    }
+}
@@ -0,0 +1,156 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import hudson.Extension;
+import hudson.FilePath;
+import hudson.Functions;
+import hudson.Util;
+import hudson.model.AsyncPeriodicWork;
+import hudson.model.Computer;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+
+/**
+ * Periodically deletes tool installations that nobody has used for a while, so
+ * that long-lived agents don't fill their disks with abandoned tool versions.
+ * <p>
+ * Only installation folders containing a {@link #LAST_USED_FILENAME} file
+ * (which our installers maintain) are considered; anything else in the tools
+ * folder is left alone, as are installations that a build holds a
+ * {@link ToolLeases} lease on. This is disabled unless the
+ * <code>maxUnusedDays</code> system property is set to a positive number.
+ * </p>
+ */
+@Extension
+public class UnusedToolInstallationsCleaner extends AsyncPeriodicWork {
+    /**
+     * Name of the file, within an installation folder, whose last-modified
+     * timestamp records when the installation was last used.
+     */
+    static final String LAST_USED_FILENAME = ".lastUsed";
+
+    /**
+     * Installations unused for more than this many days get deleted. Zero or
+     * less disables the cleaner.
+     */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Can be changed from the script console")
+    static /* almost final */ int MAX_UNUSED_DAYS = SystemProperties
+            .getInteger(UnusedToolInstallationsCleaner.class.getName() + ".maxUnusedDays", 0);
+
+    public UnusedToolInstallationsCleaner() {
+        super("Unused tool installations cleaner");
+    }
+
+    @Override
+    public long getRecurrencePeriod() {
+        return DAY;
+    }
+
+    @Override
+    protected void execute(TaskListener listener) throws IOException, InterruptedException {
+        if (MAX_UNUSED_DAYS <= 0) {
+            return;
+        }
+        final long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MAX_UNUSED_DAYS);
+        final Jenkins jenkins = Jenkins.get();
+        final List<Node> nodes = new ArrayList<>(jenkins.getNodes());
+        nodes.add(jenkins);
+        for (final Node node : nodes) {
+            final Computer computer = node.toComputer();
+            if (computer == null || computer.isOffline()) {
+                continue;
+            }
+            final FilePath rootPath = node.getRootPath();
+            if (rootPath == null) {
+                continue;
+            }
+            final FilePath toolsDir = rootPath.child("tools");
+            final Set<String> inUse = ToolLeases.get().getLeasedToolFolders(Util.fixNull(node.getNodeName()));
+            try {
+                final List<String> deleted = toolsDir.act(new DeleteUnusedInstallations(cutoff, inUse));
+                for (final String folder : deleted) {
+                    listener.getLogger().println(Messages.UnusedToolInstallationsCleaner_deleted(folder,
+                            node.getDisplayName(), MAX_UNUSED_DAYS));
+                }
+            } catch (IOException ex) {
+                Functions.printStackTrace(ex,
+                        listener.error(Messages.UnusedToolInstallationsCleaner_failed(node.getDisplayName())));
+            }
+        }
+    }
+
+    /**
+     * Deletes installation folders (tools/<i>type</i>/<i>name</i>) whose
+     * {@link #LAST_USED_FILENAME} is older than the cutoff, unless they are
+     * (or contain) a folder that is in use. Paths are compared once they've
+     * been made canonical on the agent, as the controller's idea of a path
+     * (e.g. via a symlink) needn't be the same as what we find here.
+     */
+    static class DeleteUnusedInstallations extends MasterToSlaveFileCallable<List<String>> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+        private final long cutoff;
+        @NonNull
+        private final Set<String> inUse;
+
+        DeleteUnusedInstallations(long cutoff, @NonNull Set<String> inUse) {
+            this.cutoff = cutoff;
+            this.inUse = Collections.unmodifiableSet(new HashSet<>(inUse));
+        }
+
+        @Override
+        public List<String> invoke(@NonNull File toolsDir, VirtualChannel channel) throws IOException {
+            final List<String> deleted = new ArrayList<>();
+            final Set<String> canonicalInUse = new HashSet<>();
+            for (final String folder : inUse) {
+                canonicalInUse.add(new File(folder).getCanonicalPath());
+            }
+            final File[] toolTypeDirs = toolsDir.listFiles(File::isDirectory);
+            if (toolTypeDirs == null) {
+                return deleted;
+            }
+            for (final File toolTypeDir : toolTypeDirs) {
+                final File[] installationDirs = toolTypeDir.listFiles(File::isDirectory);
+                if (installationDirs == null) {
+                    continue;
+                }
+                for (final File installationDir : installationDirs) {
+                    final File lastUsed = new File(installationDir, LAST_USED_FILENAME);
+                    if (lastUsed.isFile() && lastUsed.lastModified() < cutoff
+                            && !isInUse(installationDir, canonicalInUse)) {
+                        Util.deleteRecursive(installationDir);
+                        deleted.add(installationDir.getAbsolutePath());
+                    }
+                }
+            }
+            return deleted;
+        }
+
+        private static boolean isInUse(@NonNull final File installationDir,
+                @NonNull final Set<String> canonicalInUse) throws IOException {
+            final String path = installationDir.getCanonicalPath();
+            for (final String folder : canonicalInUse) {
+                if (folder.equals(path) || folder.startsWith(path + File.separator)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.io.Serializable;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * A parsed version number, e.g. <code>1.2.3</code>, that can be compared
+ * against others without any further parsing.
+ * <p>
+ * Versions are split into dot-separated segments, each of which has a
+ * numerical start followed by a remainder that is compared lexically, so
+ * <code>1.2</code> &lt; <code>1.2.0</code> &lt; <code>1.2.0A</code> &lt;
+ * <code>1.10</code>. A remainder that starts with a hyphen followed by a
+ * letter is a pre-release qualifier and ranks below no remainder at all, so
+ * <code>1.2.3-rc1</code> &lt; <code>1.2.3</code>.
+ * </p>
+ */
+final class Version implements Comparable<Version>, Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Version NONE = new Version("", new long[0], new String[0], new boolean[0]);
+
+    @NonNull
+    private final String text;
+    /** Numerical start of each segment, or -1 if it didn't start with a digit. */
+    @NonNull
+    private final long[] numbers;
+    @NonNull
+    private final String[] remainders;
+    @NonNull
+    private final boolean[] preReleases;
+
+    private Version(@NonNull String text, @NonNull long[] numbers, @NonNull String[] remainders,
+            @NonNull boolean[] preReleases) {
+        this.text = text;
+        this.numbers = numbers;
+        this.remainders = remainders;
+        this.preReleases = preReleases;
+    }
+
+    /**
+     * Parses a version.
+     * 
+     * @param version The version string. Can be null, which is lower than any
+     *                other version.
+     * @return The parsed version.
+     */
+    @NonNull
+    static Version parse(@CheckForNull final String version) {
+        if (version == null) {
+            return NONE;
+        }
+        final String[] segments = version.split("\\.", -1);
+        final int count = segments.length;
+        final long[] numbers = new long[count];
+        final String[] remainders = new String[count];
+        final boolean[] preReleases = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            final String segment = segments[i];
+            final int digits = countLeadingDigits(segment);
+            numbers[i] = digits == 0 ? -1L : parseNumber(segment.substring(0, digits));
+            remainders[i] = segment.substring(digits);
+            preReleases[i] = isPreReleaseQualifier(remainders[i]);
+        }
+        return new Version(version, numbers, remainders, preReleases);
+    }
+
+    /**
+     * Gets the number of dot-separated segments.
+     * 
+     * @return The number of segments.
+     */
+    int getSegmentCount() {
+        return numbers.length;
+    }
+
+    /**
+     * Gets the numerical start of a segment.
+     * 
+     * @param index Which segment.
+     * @return The number, or -1 if the segment doesn't start with a digit.
+     */
+    long getNumber(int index) {
+        return numbers[index];
+    }
+
+    @Override
+    public int compareTo(@NonNull final Version other) {
+        final int highestLength = Math.max(numbers.length, other.numbers.length);
+        for (int i = 0; i < highestLength; i++) {
+            if (i >= numbers.length) {
+                return -1;
+            }
+            if (i >= other.numbers.length) {
+                return 1;
+            }
+            final int result = compareSegments(other, i);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private int compareSegments(@NonNull final Version other, final int i) {
+        final int byNumber = Long.compare(numbers[i], other.numbers[i]);
+        if (byNumber != 0) {
+            return byNumber;
+        }
+        if (preReleases[i] != other.preReleases[i]) {
+            return preReleases[i] ? -1 : 1;
+        }
+        return remainders[i].compareTo(other.remainders[i]);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Version && compareTo((Version) obj) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < numbers.length; i++) {
+            result = 31 * result + Long.hashCode(numbers[i]);
+            result = 31 * result + remainders[i].hashCode();
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private static int countLeadingDigits(@NonNull final String s) {
+        final int l = s.length();
+        for (int i = 0; i < l; i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return i;
+            }
+        }
+        return l;
+    }
+
+    private static long parseNumber(@NonNull final String digits) {
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException ex) {
+            // too big for a long
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static boolean isPreReleaseQualifier(@NonNull final String remainder) {
+        return remainder.length() > 1 && remainder.charAt(0) == '-' && Character.isLetter(remainder.charAt(1));
+    }
+}
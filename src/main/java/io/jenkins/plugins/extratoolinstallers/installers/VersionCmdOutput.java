@@ -0,0 +1,146 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import jenkins.util.SystemProperties;
+
+/**
+ * Collects the output of a version command, looking for the version as it
+ * arrives.
+ * <p>
+ * Only the current line is kept, truncated to {@link #MAX_BYTES} bytes, so a
+ * chatty command can't use up all our memory, and once a line has matched the
+ * version pattern we ignore everything else, so the caller can stop the
+ * command as soon as {@link #hasMatched()}.
+ * </p>
+ */
+final class VersionCmdOutput extends OutputStream {
+    /** Limit on how long a line can be. */
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "Can be changed from the script console")
+    static /* almost final */ int MAX_BYTES = SystemProperties
+            .getInteger(VersionCmdOutput.class.getName() + ".maxBytes", 64 * 1024);
+
+    @NonNull
+    private final VersionLineMatcher lineMatcher;
+    private final int maxBytes;
+    @NonNull
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+    @NonNull
+    private byte[] lineBytes = new byte[128];
+    private int lineLength;
+    @NonNull
+    private CharBuffer lineChars = CharBuffer.allocate(128);
+    @CheckForNull
+    private String version;
+
+    /**
+     * Constructor.
+     * 
+     * @param versionPattern The pattern that lines are matched against.
+     */
+    VersionCmdOutput(@NonNull Pattern versionPattern) {
+        this.lineMatcher = new VersionLineMatcher(versionPattern);
+        this.maxBytes = MAX_BYTES;
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        if (version != null) {
+            return;
+        }
+        if (b == '\n' || b == '\r') {
+            endOfLine();
+        } else if (lineLength < maxBytes) {
+            if (lineLength == lineBytes.length) {
+                lineBytes = Arrays.copyOf(lineBytes, Math.min(maxBytes, lineLength * 2));
+            }
+            lineBytes[lineLength++] = (byte) b;
+        }
+    }
+
+    @Override
+    public synchronized void write(@NonNull byte[] b, int off, int len) {
+        for (int i = off; i < off + len && version == null; i++) {
+            write(b[i]);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        endOfLine();
+    }
+
+    private void endOfLine() {
+        if (version == null && lineLength > 0) {
+            version = lineMatcher.matchLine(decodeLine());
+            if (version != null) {
+                notifyAll();
+            }
+        }
+        lineLength = 0;
+    }
+
+    @NonNull
+    private CharBuffer decodeLine() {
+        // UTF-8 never decodes to more chars than there were bytes
+        if (lineChars.capacity() < lineLength) {
+            lineChars = CharBuffer.allocate(lineBytes.length);
+        }
+        lineChars.clear();
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(lineBytes, 0, lineLength), lineChars, true);
+        decoder.flush(lineChars);
+        lineChars.flip();
+        return lineChars;
+    }
+
+    /**
+     * Indicates whether we've seen a line that matches the version pattern.
+     * 
+     * @return true if we've found the version.
+     */
+    synchronized boolean hasMatched() {
+        return version != null;
+    }
+
+    /**
+     * Waits until we've seen a line that matches the version pattern.
+     * 
+     * @param timeout How long to wait.
+     * @param unit    The units of timeout.
+     * @return true if we've found the version.
+     * @throws InterruptedException if we were interrupted.
+     */
+    synchronized boolean awaitMatch(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        if (version == null) {
+            final long millis = Math.max(1L, unit.toMillis(timeout));
+            wait(millis);
+        }
+        return version != null;
+    }
+
+    /**
+     * Gets the version we found.
+     * 
+     * @return The version, as per
+     *         {@link IsAlreadyOnPath#parseVersionCmdOutputForVersion(Pattern, String)},
+     *         or null if no line has matched (yet).
+     */
+    @CheckForNull
+    synchronized String getVersion() {
+        return version;
+    }
+}
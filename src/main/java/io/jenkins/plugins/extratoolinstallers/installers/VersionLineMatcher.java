@@ -0,0 +1,150 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * Matches lines of version command output against a version pattern.
+ * <p>
+ * This re-uses a single {@link Matcher} for every line, and can work through
+ * a whole block of output without splitting it up into separate strings, so
+ * it creates very little garbage however much output there is. Instances are
+ * not thread-safe.
+ * </p>
+ */
+final class VersionLineMatcher {
+    @NonNull
+    private final Matcher matcher;
+    @NonNull
+    private final Slice slice = new Slice();
+
+    /**
+     * Constructor.
+     * 
+     * @param versionPattern The pattern that lines must match.
+     */
+    VersionLineMatcher(@NonNull Pattern versionPattern) {
+        this.matcher = versionPattern.matcher("");
+    }
+
+    /**
+     * Matches a single line.
+     * 
+     * @param line The line, without its line terminator.
+     * @return null if no match, else the concatenation of all capturing groups
+     *         within the pattern.
+     */
+    @CheckForNull
+    String matchLine(@NonNull CharSequence line) {
+        matcher.reset(line);
+        if (!matcher.matches()) {
+            return null;
+        }
+        final int gc = matcher.groupCount();
+        final StringBuilder result = new StringBuilder();
+        for (int g = 1; g <= gc; g++) {
+            final int start = matcher.start(g);
+            if (start >= 0) {
+                result.append(line, start, matcher.end(g));
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Matches each line of some text in turn until one matches. Lines are
+     * terminated as per the <code>\R</code> regex, so this finds the same
+     * thing as matching each element of <code>text.split("\\R")</code>.
+     * 
+     * @param text The command output.
+     * @return null if no line matched, else as per {@link #matchLine(CharSequence)}.
+     */
+    @CheckForNull
+    String matchFirstLine(@NonNull CharSequence text) {
+        final int length = text.length();
+        if (length == 0) {
+            return matchLine(text);
+        }
+        // String.split ignores trailing empty strings
+        int end = length;
+        while (end > 0 && isLineTerminator(text.charAt(end - 1))) {
+            end--;
+        }
+        if (end == 0) {
+            return null;
+        }
+        int lineStart = 0;
+        int i = 0;
+        while (i < end) {
+            final char c = text.charAt(i);
+            if (isLineTerminator(c)) {
+                final String result = matchLine(slice.of(text, lineStart, i));
+                if (result != null) {
+                    return result;
+                }
+                i++;
+                if (c == '\r' && i < end && text.charAt(i) == '\n') {
+                    i++;
+                }
+                lineStart = i;
+            } else {
+                i++;
+            }
+        }
+        return matchLine(slice.of(text, lineStart, end));
+    }
+
+    private static boolean isLineTerminator(char c) {
+        switch (c) {
+            case '\n':
+            case '\u000B':
+            case '\u000C':
+            case '\r':
+            case '\u0085':
+            case '\u2028':
+            case '\u2029':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /** A re-usable view of part of another {@link CharSequence}. */
+    private static final class Slice implements CharSequence {
+        private CharSequence text = "";
+        private int start;
+        private int end;
+
+        @NonNull
+        Slice of(@NonNull CharSequence newText, int newStart, int newEnd) {
+            this.text = newText;
+            this.start = newStart;
+            this.end = newEnd;
+            return this;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return text.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return text.subSequence(start + from, start + to);
+        }
+
+        @Override
+        @NonNull
+        public String toString() {
+            return text.subSequence(start, end).toString();
+        }
+    }
+}
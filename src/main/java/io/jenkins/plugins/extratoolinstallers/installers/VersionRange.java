@@ -0,0 +1,200 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import java.io.Serializable;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import hudson.Util;
+
+/**
+ * A range of acceptable {@link Version}s.
+ * <p>
+ * Ranges can be written as:
+ * </p>
+ * <ul>
+ * <li><code>[1.8,11)</code> - interval notation, where square brackets are
+ * inclusive and round ones exclusive, and either end can be left empty to
+ * leave it unbounded, e.g. <code>(,11]</code>.</li>
+ * <li><code>[1.8]</code> - exactly that version.</li>
+ * <li><code>~1.2</code> - that version or any later version up to (but not
+ * including) the next minor version, e.g. <code>[1.2,1.3)</code>.
+ * <code>~1</code> means <code>[1,2)</code> and <code>~1.2.3</code> means
+ * <code>[1.2.3,1.3)</code>.</li>
+ * <li><code>1.8</code> - that version or any later version.</li>
+ * </ul>
+ */
+final class VersionRange implements Serializable {
+    private static final long serialVersionUID = 1L;
+    /** A range that accepts everything. */
+    static final VersionRange ANY = new VersionRange(null, false, null, false);
+
+    @CheckForNull
+    private final Version lower;
+    private final boolean lowerInclusive;
+    @CheckForNull
+    private final Version upper;
+    private final boolean upperInclusive;
+
+    private VersionRange(@CheckForNull Version lower, boolean lowerInclusive, @CheckForNull Version upper,
+            boolean upperInclusive) {
+        this.lower = lower;
+        this.lowerInclusive = lowerInclusive;
+        this.upper = upper;
+        this.upperInclusive = upperInclusive;
+    }
+
+    /**
+     * Creates an inclusive range.
+     * 
+     * @param min The minimum acceptable version. Can be null or empty if
+     *            there is no minimum.
+     * @param max The maximum acceptable version. Can be null or empty if
+     *            there is no maximum.
+     * @return A range.
+     */
+    @NonNull
+    static VersionRange between(@CheckForNull final String min, @CheckForNull final String max) {
+        final String minOrNull = Util.fixEmpty(min);
+        final String maxOrNull = Util.fixEmpty(max);
+        return new VersionRange(minOrNull == null ? null : Version.parse(minOrNull), true,
+                maxOrNull == null ? null : Version.parse(maxOrNull), true);
+    }
+
+    /**
+     * Parses a range specification.
+     * 
+     * @param spec The specification, in one of the forms described in
+     *             {@link VersionRange}.
+     * @return A range.
+     * @throws IllegalArgumentException if the specification isn't valid.
+     */
+    @NonNull
+    static VersionRange parse(@NonNull final String spec) {
+        final String s = spec.trim();
+        if (s.isEmpty()) {
+            throw new IllegalArgumentException("Empty version range");
+        }
+        final char first = s.charAt(0);
+        if (first == '~') {
+            return parseTilde(s.substring(1).trim(), spec);
+        }
+        if (first != '[' && first != '(') {
+            return new VersionRange(Version.parse(s), true, null, false);
+        }
+        final char last = s.charAt(s.length() - 1);
+        if (s.length() < 2 || (last != ']' && last != ')')) {
+            throw new IllegalArgumentException("Version range " + spec + " must end with ] or )");
+        }
+        final boolean lowerInclusive = first == '[';
+        final boolean upperInclusive = last == ']';
+        final String inner = s.substring(1, s.length() - 1);
+        final int comma = inner.indexOf(',');
+        if (comma < 0) {
+            final String exact = Util.fixEmptyAndTrim(inner);
+            if (exact == null || !lowerInclusive || !upperInclusive) {
+                throw new IllegalArgumentException("Version range " + spec + " must be of the form [version]");
+            }
+            final Version v = Version.parse(exact);
+            return new VersionRange(v, true, v, true);
+        }
+        if (inner.indexOf(',', comma + 1) >= 0) {
+            throw new IllegalArgumentException("Version range " + spec + " must contain at most one comma");
+        }
+        final String lowerText = Util.fixEmptyAndTrim(inner.substring(0, comma));
+        final String upperText = Util.fixEmptyAndTrim(inner.substring(comma + 1));
+        final Version lowerVersion = lowerText == null ? null : Version.parse(lowerText);
+        final Version upperVersion = upperText == null ? null : Version.parse(upperText);
+        if (lowerVersion != null && upperVersion != null && lowerVersion.compareTo(upperVersion) > 0) {
+            throw new IllegalArgumentException("Version range " + spec + " has its lower bound above its upper bound");
+        }
+        return new VersionRange(lowerVersion, lowerInclusive, upperVersion, upperInclusive);
+    }
+
+    @NonNull
+    private static VersionRange parseTilde(@NonNull final String version, @NonNull final String spec) {
+        final Version lowerVersion = Version.parse(version);
+        final int significantSegments = Math.min(2, lowerVersion.getSegmentCount());
+        final StringBuilder upperText = new StringBuilder();
+        for (int i = 0; i < significantSegments; i++) {
+            final long number = lowerVersion.getNumber(i);
+            if (number < 0L || number == Long.MAX_VALUE) {
+                throw new IllegalArgumentException("Version range " + spec + " must start with a number");
+            }
+            if (i > 0) {
+                upperText.append('.');
+            }
+            upperText.append(i == significantSegments - 1 ? number + 1 : number);
+        }
+        return new VersionRange(lowerVersion, true, Version.parse(upperText.toString()), false);
+    }
+
+    /**
+     * Combines this range with another, so that only versions acceptable to
+     * both are acceptable.
+     * 
+     * @param other The other range.
+     * @return The intersection of the two ranges.
+     */
+    @NonNull
+    VersionRange intersect(@NonNull final VersionRange other) {
+        final Version newLower;
+        final boolean newLowerInclusive;
+        final int cmpLower = compareBounds(lower, other.lower);
+        if (cmpLower > 0 || (cmpLower == 0 && !lowerInclusive)) {
+            newLower = lower;
+            newLowerInclusive = lowerInclusive;
+        } else {
+            newLower = other.lower;
+            newLowerInclusive = other.lowerInclusive;
+        }
+        final Version newUpper;
+        final boolean newUpperInclusive;
+        final int cmpUpper = compareBounds(upper, other.upper);
+        if (upper != null && (other.upper == null || cmpUpper < 0 || (cmpUpper == 0 && !upperInclusive))) {
+            newUpper = upper;
+            newUpperInclusive = upperInclusive;
+        } else {
+            newUpper = other.upper;
+            newUpperInclusive = other.upperInclusive;
+        }
+        return new VersionRange(newLower, newLowerInclusive, newUpper, newUpperInclusive);
+    }
+
+    /** Compares bounds where null means "no bound". */
+    private static int compareBounds(@CheckForNull Version a, @CheckForNull Version b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return a.compareTo(b);
+    }
+
+    /**
+     * Checks a version against this range.
+     * 
+     * @param version The version to be checked.
+     * @return 0 if the version is acceptable, -ve if the version is below the
+     *         range, +ve if the version is above the range.
+     */
+    int check(@NonNull final Version version) {
+        if (lower != null) {
+            final int cmp = version.compareTo(lower);
+            if (cmp < 0 || (cmp == 0 && !lowerInclusive)) {
+                return -1;
+            }
+        }
+        if (upper != null) {
+            final int cmp = version.compareTo(upper);
+            if (cmp > 0 || (cmp == 0 && !upperInclusive)) {
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return (lowerInclusive ? "[" : "(") + (lower == null ? "" : lower.toString()) + ","
+                + (upper == null ? "" : upper.toString()) + (upperInclusive ? "]" : ")");
+    }
+}
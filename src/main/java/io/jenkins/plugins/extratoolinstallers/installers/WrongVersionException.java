@@ -24,6 +24,8 @@ class WrongVersionException extends IOException {
     private final String minVersion;
     @CheckForNull
     private final String maxVersion;
+    @CheckForNull
+    private final String versionRange;
 
     @Restricted(NoExternalUse.class)
     WrongVersionException(@NonNull final String executableName, @NonNull final String whereFound,
@@ -38,13 +40,30 @@ class WrongVersionException extends IOException {
         this.detectedVersion = detectedVersion;
         this.minVersion = minVersion;
         this.maxVersion = maxVersion;
+        this.versionRange = null;
+    }
+
+    @Restricted(NoExternalUse.class)
+    WrongVersionException(@NonNull final String executableName, @NonNull final String whereFound,
+            @NonNull final String detectedVersion, @Nullable final String minVersion, @Nullable final String maxVersion,
+            @NonNull final String versionRange) {
+        super("Executable '" + executableName + "' at " + whereFound + " is version \"" + detectedVersion
+                + "\" but we require" + (minVersion != null ? " >= \"" + minVersion + "\" and" : "")
+                + (maxVersion != null ? " <= \"" + maxVersion + "\" and" : "")
+                + " within \"" + versionRange + "\"");
+        this.executableName = executableName;
+        this.whereFound = whereFound;
+        this.detectedVersion = detectedVersion;
+        this.minVersion = minVersion;
+        this.maxVersion = maxVersion;
+        this.versionRange = versionRange;
     }
 
     @Restricted(NoExternalUse.class)
     WrongVersionException(@NonNull final String executableName, @NonNull final String whereFound,
             @NonNull final String detectedVersion, @Nullable final String minVersion,
             @Nullable final String maxVersion) {
-        this(executableName, whereFound, detectedVersion, minVersion, maxVersion, null);
+        this(executableName, whereFound, detectedVersion, minVersion, maxVersion, (Throwable) null);
     }
 
     public String getExecutableName() {
@@ -66,4 +85,8 @@ class WrongVersionException extends IOException {
     public String getMaxVersion() {
         return maxVersion;
     }
+
+    public String getVersionRange() {
+        return versionRange;
+    }
 }
@@ -0,0 +1,49 @@
+package com.synopsys.arc.jenkinsci.plugins.extratoolinstallers.installers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import hudson.FilePath;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/** Unit test for the {@link AbstractExtraToolInstaller} class. */
+class AbstractExtraToolInstallerTest {
+    @TempDir
+    File tmpDir;
+
+    @Test
+    void calcInstallationHashGivenDifferentInputsThenReturnsDifferentHashes() {
+        final String hash = AbstractExtraToolInstaller.calcInstallationHash("install.bat", "bin");
+        assertThat(AbstractExtraToolInstaller.calcInstallationHash("install.bat", "bin"), equalTo(hash));
+        assertThat(AbstractExtraToolInstaller.calcInstallationHash("install.bat", "lib"), not(equalTo(hash)));
+        assertThat(AbstractExtraToolInstaller.calcInstallationHash("install.batbin", ""), not(equalTo(hash)));
+        assertThat(AbstractExtraToolInstaller.calcInstallationHash(null, "bin"),
+                equalTo(AbstractExtraToolInstaller.calcInstallationHash("", "bin")));
+    }
+
+    @Test
+    void isInstallationUpToDateGivenRecordedInstallationThenReturnsTrueOnlyIfHashMatchesAndHomeExists()
+            throws Exception {
+        // Given
+        final FilePath dir = new FilePath(tmpDir);
+        final FilePath home = dir.child("bin");
+        final String hash = AbstractExtraToolInstaller.calcInstallationHash("install.bat", "bin");
+        assertThat(AbstractExtraToolInstaller.isInstallationUpToDate(dir, home, hash), equalTo(false));
+
+        // When
+        AbstractExtraToolInstaller.recordInstallation(dir, hash);
+
+        // Then
+        assertThat(AbstractExtraToolInstaller.isInstallationUpToDate(dir, home, hash), equalTo(false));
+        home.mkdirs();
+        assertThat(AbstractExtraToolInstaller.isInstallationUpToDate(dir, home, hash), equalTo(true));
+        assertThat(AbstractExtraToolInstaller.isInstallationUpToDate(dir, home, "somethingElse"), equalTo(false));
+        AbstractExtraToolInstaller.forgetInstallation(dir);
+        assertThat(AbstractExtraToolInstaller.isInstallationUpToDate(dir, home, hash), equalTo(false));
+    }
+}
@@ -0,0 +1,56 @@
+package com.synopsys.arc.jenkinsci.plugins.extratoolinstallers.installers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/** Unit test for the {@link CappedOutputStream} class. */
+class CappedOutputStreamTest {
+    @Test
+    void writeGivenLessThanLimitThenPassesEverythingThrough() throws Exception {
+        // Given
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        final CappedOutputStream instance = new CappedOutputStream(new PrintStream(log, true, "UTF-8"), 10, 8);
+
+        // When
+        instance.write("0123456789".getBytes(StandardCharsets.UTF_8));
+        instance.finish();
+
+        // Then
+        assertThat(instance.isCapped(), equalTo(false));
+        assertThat(log.toString("UTF-8"), equalTo("0123456789"));
+    }
+
+    @Test
+    void writeGivenMoreThanLimitThenLogsStartAndTailOnly() throws Exception {
+        // Given
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+        final CappedOutputStream instance = new CappedOutputStream(new PrintStream(log, true, "UTF-8"), 10, 8);
+        final String nl = System.lineSeparator();
+
+        // When
+        instance.write("01234".getBytes(StandardCharsets.UTF_8));
+        instance.write("56789aaaa\nbb".getBytes(StandardCharsets.UTF_8));
+        for (final byte b : "bb\ncc\n".getBytes(StandardCharsets.UTF_8)) {
+            instance.write(b);
+        }
+        final String beforeFinish = log.toString("UTF-8");
+        instance.finish();
+        instance.finish();
+        instance.write("too late".getBytes(StandardCharsets.UTF_8));
+
+        // Then
+        assertThat(instance.isCapped(), equalTo(true));
+        assertThat(beforeFinish, equalTo("0123456789" + nl
+                + Messages.CappedOutputStream_limit_reached(10L, 8) + nl));
+        final String expected = beforeFinish + Messages.CappedOutputStream_omitted(10L) + nl + "cc\n" + nl;
+        assertThat(log.toString("UTF-8"), equalTo(expected));
+        assertThat(log.toString("UTF-8"), not(containsString("bbbb")));
+    }
+}
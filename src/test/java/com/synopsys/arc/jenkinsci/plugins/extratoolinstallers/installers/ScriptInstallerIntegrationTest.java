@@ -0,0 +1,167 @@
+package com.synopsys.arc.jenkinsci.plugins.extratoolinstallers.installers;
+
+import com.synopsys.arc.jenkinsci.plugins.extratoolinstallers.utils.ExtraToolInstallersException;
+import hudson.FilePath;
+import hudson.Functions;
+import hudson.model.TaskListener;
+import hudson.tools.ToolInstallation;
+import hudson.util.StreamTaskListener;
+import io.jenkins.plugins.generic_tool.GenericToolInstallation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Runs real scripts using the {@link ScriptInstaller} class.
+ */
+@WithJenkins
+class ScriptInstallerIntegrationTest {
+    private static final String INSTALL_SCRIPT = "mkdir -p home\necho ran >> runs.log\n";
+    private static final String NOISY_SCRIPT = "i=0\nwhile [ $i -lt 5000 ]; do echo \"line $i\"; i=$((i+1)); done\n";
+
+    @TempDir
+    private File tmpDir;
+
+    private ToolInstallation tool;
+    private FilePath dir;
+    private ByteArrayOutputStream log;
+    private TaskListener listener;
+
+    @BeforeEach
+    void setUp() {
+        assumeFalse(Functions.isWindows(), "These scripts need a Unix shell");
+        tool = new GenericToolInstallation("scripted", tmpDir.getAbsolutePath(), List.of());
+        dir = new FilePath(tmpDir);
+        log = new ByteArrayOutputStream();
+        listener = new StreamTaskListener(log, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void performInstallationGivenSkipIfInstalledThenOnlyRunsScriptAgainIfCheckFails(JenkinsRule r) throws Exception {
+        // Given
+        final ScriptInstaller installer = new ScriptInstaller(null, INSTALL_SCRIPT, "home", false);
+        installer.setSkipIfInstalled(true);
+        installer.performInstallation(tool, r.jenkins, listener);
+        final String home = dir.child("home").getRemote();
+
+        // When
+        installer.performInstallation(tool, r.jenkins, listener);
+        final int runsWithoutCheck = countRuns();
+        installer.setCheckCommand("test -d home");
+        installer.performInstallation(tool, r.jenkins, listener);
+        final int runsAfterPassingCheck = countRuns();
+        installer.setCheckCommand("exit 1");
+        installer.performInstallation(tool, r.jenkins, listener);
+        final int runsAfterFailingCheck = countRuns();
+
+        // Then
+        assertThat(runsWithoutCheck, equalTo(1));
+        assertThat(runsAfterPassingCheck, equalTo(1));
+        assertThat(runsAfterFailingCheck, equalTo(2));
+        final String actualLog = getLog();
+        assertThat(actualLog, containsString(Messages.AbstractExtraToolInstaller_already_installed(home)));
+        assertThat(actualLog, containsString(Messages.AbstractExtraToolInstaller_check_passed(home)));
+        assertThat(actualLog, containsString(Messages.AbstractExtraToolInstaller_check_failed(1)));
+    }
+
+    @Test
+    void performInstallationGivenScriptFailsThenForgetsPreviousInstallation(JenkinsRule r) throws Exception {
+        // Given
+        final ScriptInstaller working = new ScriptInstaller(null, INSTALL_SCRIPT, "home", false);
+        working.setSkipIfInstalled(true);
+        working.performInstallation(tool, r.jenkins, listener);
+        final FilePath marker = dir.child(AbstractExtraToolInstaller.INSTALLATION_MARKER_FILENAME);
+        final boolean markerExistedBefore = marker.exists();
+        final ScriptInstaller failing = new ScriptInstaller(null, "rm -rf home\nexit 3\n", "home", false);
+        failing.setSkipIfInstalled(true);
+
+        // When
+        final IOException ex = assertThrows(IOException.class,
+                () -> failing.performInstallation(tool, r.jenkins, listener));
+
+        // Then
+        assertThat(ex.getMessage(), containsString("3"));
+        assertThat(markerExistedBefore, equalTo(true));
+        assertThat(marker.exists(), equalTo(false));
+    }
+
+    @Test
+    void performInstallationGivenScriptTakesTooLongThenKillsIt(JenkinsRule r) throws Exception {
+        // Given
+        final ScriptInstaller installer = new ScriptInstaller(null, "sleep 60\n", "home", false);
+        installer.setSkipIfInstalled(true);
+        installer.setTimeoutSeconds(2);
+
+        // When
+        final long start = System.nanoTime();
+        final ExtraToolInstallersException ex = assertThrows(ExtraToolInstallersException.class,
+                () -> installer.performInstallation(tool, r.jenkins, listener));
+        final long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Then
+        assertThat(ex.getMessage(), containsString(Messages.AbstractExtraToolInstaller_timed_out(2)));
+        assertThat(durationMillis < 30000L, equalTo(true));
+        assertThat(dir.child(AbstractExtraToolInstaller.INSTALLATION_MARKER_FILENAME).exists(), equalTo(false));
+    }
+
+    @Test
+    void performInstallationGivenNoisyScriptThenLogsOnlyTheStartAndTheEnd(JenkinsRule r) throws Exception {
+        // Given
+        final ScriptInstaller installer = new ScriptInstaller(null, NOISY_SCRIPT + "echo finished\n", "home", false);
+        installer.setMaxOutputBytes(100L);
+
+        // When
+        installer.performInstallation(tool, r.jenkins, listener);
+
+        // Then
+        final String actualLog = getLog();
+        assertThat(actualLog, containsString("line 0\n"));
+        assertThat(actualLog, not(containsString("line 2500\n")));
+        assertThat(actualLog, containsString("line 4999\nfinished\n"));
+        assertThat(actualLog, containsString(
+                Messages.CappedOutputStream_limit_reached(100L, AbstractExtraToolInstaller.OUTPUT_TAIL_BYTES)));
+    }
+
+    @Test
+    void performInstallationGivenNoisyScriptTakesTooLongThenLogsTheEndOnceKilled(JenkinsRule r) throws Exception {
+        // Given
+        final ScriptInstaller installer = new ScriptInstaller(null, NOISY_SCRIPT + "echo sleeping\nsleep 60\n",
+                "home", false);
+        installer.setMaxOutputBytes(100L);
+        installer.setTimeoutSeconds(2);
+
+        // When
+        assertThrows(ExtraToolInstallersException.class,
+                () -> installer.performInstallation(tool, r.jenkins, listener));
+
+        // Then
+        final String actualLog = getLog();
+        assertThat(actualLog, not(containsString("line 2500\n")));
+        assertThat(actualLog, containsString("line 4999\nsleeping\n"));
+    }
+
+    private int countRuns() throws IOException, InterruptedException {
+        final FilePath runs = dir.child("runs.log");
+        return runs.exists() ? runs.readToString().split("\n").length : 0;
+    }
+
+    private String getLog() {
+        return log.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,48 @@
+package com.synopsys.arc.jenkinsci.plugins.extratoolinstallers.installers;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.arrayContaining;
+import static org.hamcrest.Matchers.contains;
+
+/** Unit test for the {@link ScriptInstaller} class. */
+class ScriptInstallerTest {
+    @Test
+    void parseInterpreterLineGivenScriptsThenReturnsInterpreter() {
+        assertThat(ScriptInstaller.parseInterpreterLine("#!/bin/bash -ex\necho hi"), contains("/bin/bash", "-ex"));
+        assertThat(ScriptInstaller.parseInterpreterLine("#! pwsh"), contains("pwsh"));
+        assertThat(ScriptInstaller.parseInterpreterLine("echo hi"), nullValue());
+        assertThat(ScriptInstaller.parseInterpreterLine("#!\necho hi"), nullValue());
+        assertThat(ScriptInstaller.parseInterpreterLine(null), nullValue());
+    }
+
+    @Test
+    void calcCommandLineGivenNoInterpreterLineThenUsesNodesShell() {
+        assertThat(ScriptInstaller.calcCommandLine("echo hi", true, "/tmp/x.sh"),
+                arrayContaining("sh", "-e", "/tmp/x.sh"));
+        assertThat(ScriptInstaller.calcCommandLine("echo hi", false, "C:\\x.bat"),
+                arrayContaining("cmd", "/c", "call", "C:\\x.bat"));
+    }
+
+    @Test
+    void calcCommandLineGivenInterpreterLineThenUsesItOnAnyNode() {
+        final String script = "#!/usr/bin/env python3 -u\nprint('hi')\n";
+        assertThat(ScriptInstaller.calcCommandLine(script, true, "/tmp/x.py"),
+                arrayContaining("/usr/bin/env", "python3", "-u", "/tmp/x.py"));
+        assertThat(ScriptInstaller.calcCommandLine(script, false, "C:\\x.py"),
+                arrayContaining("python3", "-u", "C:\\x.py"));
+    }
+
+    @Test
+    void calcScriptExtensionGivenScriptsThenReturnsWhatInterpreterNeeds() {
+        assertThat(ScriptInstaller.calcScriptExtension("echo hi", true), equalTo(".sh"));
+        assertThat(ScriptInstaller.calcScriptExtension("echo hi", false), equalTo(".bat"));
+        assertThat(ScriptInstaller.calcScriptExtension("#!C:\\Windows\\PowerShell.exe\n", false), equalTo(".ps1"));
+        assertThat(ScriptInstaller.calcScriptExtension("#!/usr/bin/env pwsh\n", true), equalTo(".ps1"));
+        assertThat(ScriptInstaller.calcScriptExtension("#!/usr/bin/python3\n", true), equalTo(".py"));
+        assertThat(ScriptInstaller.calcScriptExtension("#!/bin/bash\n", false), equalTo(".sh"));
+    }
+}
@@ -4,10 +4,13 @@ import com.synopsys.arc.jenkinsci.plugins.extratoolinstallers.utils.ExtraToolIns
 import hudson.FilePath;
 import hudson.model.Node;
 import hudson.model.TaskListener;
+import hudson.model.labels.LabelAtom;
 import hudson.tools.InstallSourceProperty;
 import hudson.tools.ToolInstallation;
 import hudson.tools.ToolInstaller;
+import hudson.tools.ToolInstallerDescriptor;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.stubbing.Answer;
 
 import java.io.File;
@@ -17,13 +20,18 @@ import java.io.Serial;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doAnswer;
@@ -36,6 +44,9 @@ import static org.mockito.Mockito.withSettings;
 /** Unit test for the {@link AnyOfInstaller} class. */
 class AnyOfInstallerTest {
 
+    @TempDir
+    private File tmpDir;
+
     @Test
     void defaultConstructorWhenCalledThenCreatesDefaultInstance() {
         // Given
@@ -216,6 +227,33 @@ class AnyOfInstallerTest {
         assertThat(actual, equalTo(true));
     }
 
+    @Test
+    void appliesToGivenRepeatedCallsThenOnlyReevaluatesInstallersWhenLabelsChange() throws Exception {
+        // Given
+        final Node mockNode = mock(Node.class);
+        when(mockNode.getNodeName()).thenReturn("node");
+        when(mockNode.getAssignedLabels()).thenReturn(new HashSet<>(Arrays.asList(new LabelAtom("a"))),
+                new HashSet<>(Arrays.asList(new LabelAtom("a"))), new HashSet<>(Arrays.asList(new LabelAtom("b"))));
+        final ToolInstaller installer1 = mock(ToolInstaller.class);
+        final ToolInstaller installer2 = mock(ToolInstaller.class);
+        when(installer1.appliesTo(mockNode)).thenReturn(false);
+        when(installer2.appliesTo(mockNode)).thenReturn(true);
+        final AnyOfInstaller instance = new AnyOfInstaller();
+        instance.setInstallers(new InstallSourceProperty(Arrays.asList(installer1, installer2)));
+
+        // When
+        final boolean actual1 = instance.appliesTo(mockNode);
+        final boolean actual2 = instance.appliesTo(mockNode);
+        final boolean actualAfterLabelChange = instance.appliesTo(mockNode);
+
+        // Then
+        assertThat(actual1, equalTo(true));
+        assertThat(actual2, equalTo(true));
+        assertThat(actualAfterLabelChange, equalTo(true));
+        verify(installer1, times(2)).appliesTo(mockNode);
+        verify(installer2, times(2)).appliesTo(mockNode);
+    }
+
     @Test
     void performInstallationGiven1Loop1FailingInstaller1AttemptThenFails() throws Exception {
         // Given
@@ -364,6 +402,478 @@ class AnyOfInstallerTest {
         verify(inapplicableInstaller2, times(0)).performInstallation(mockTool, mockNode, mockLog);
     }
 
+    @Test
+    void performInstallationGivenRaceProbesThenFastestProbeWinsAndOthersAreNotTried() throws Exception {
+        // Given
+        final Node mockNode = mock(Node.class);
+        final ToolInstallation mockTool = mock(ToolInstallation.class);
+        final List<String> actualLogRecord = new ArrayList<>();
+        final TaskListener mockLog = mockTaskListener(actualLogRecord);
+        final ToolInstaller downloader = mockInstaller("Downloader", mockNode);
+        final IsAlreadyOnPath slowProbe = mockProbe("SlowProbe", mockNode);
+        final IsAlreadyOnPath fastProbe = mockProbe("FastProbe", mockNode);
+        final FilePath expected = stubFilePath();
+        when(slowProbe.performInstallation(mockTool, mockNode, mockLog)).thenAnswer(invocation -> {
+            Thread.sleep(60000L);
+            return new FilePath(new File("/slow"));
+        });
+        when(fastProbe.performInstallation(mockTool, mockNode, mockLog)).thenReturn(expected);
+        final List<ToolInstaller> installerList = Arrays.asList(downloader, slowProbe, fastProbe);
+        final AnyOfInstaller instance = new AnyOfInstaller();
+        instance.setInstallers(new InstallSourceProperty(installerList));
+        instance.setRaceProbes(true);
+
+        // When
+        final long start = System.nanoTime();
+        final FilePath actual = instance.performInstallation(mockTool, mockNode, mockLog);
+        final long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Then
+        assertThat(actual, equalTo(expected));
+        assertThat(durationMillis < 30000L, equalTo(true));
+        verify(downloader, times(0)).performInstallation(mockTool, mockNode, mockLog);
+    }
+
+    @Test
+    void performInstallationGivenRaceProbesAndAllProbesFailThenTriesOtherInstallers() throws Exception {
+        // Given
+        final Node mockNode = mock(Node.class);
+        final ToolInstallation mockTool = mock(ToolInstallation.class);
+        final List<String> actualLogRecord = new ArrayList<>();
+        final TaskListener mockLog = mockTaskListener(actualLogRecord);
+        final String probeName = "Probe";
+        final IsAlreadyOnPath probe = mockProbe(probeName, mockNode);
+        final PretendInstallerFailureException probeFailure = new PretendInstallerFailureException("not there");
+        when(probe.performInstallation(mockTool, mockNode, mockLog)).thenThrow(probeFailure);
+        final ToolInstaller downloader = mockInstaller("Downloader", mockNode);
+        final FilePath expected = stubFilePath();
+        when(downloader.performInstallation(mockTool, mockNode, mockLog)).thenReturn(expected);
+        final List<ToolInstaller> installerList = Arrays.asList(probe, downloader);
+        final AnyOfInstaller instance = new AnyOfInstaller();
+        instance.setInstallers(new InstallSourceProperty(installerList));
+        instance.setRaceProbes(true);
+        final List<String> expectedLogRecord = Collections.singletonList(Messages
+                .AnyOfInstaller_1loop_installers_1attempt(1, 1, 1, 2, probeName, 1, 1, probeFailure));
+
+        // When
+        final FilePath actual = instance.performInstallation(mockTool, mockNode, mockLog);
+
+        // Then
+        assertThat(actual, equalTo(expected));
+        assertThat(actualLogRecord, equalTo(expectedLogRecord));
+        verify(probe, times(1)).performInstallation(mockTool, mockNode, mockLog);
+        verify(downloader, times(1)).performInstallation(mockTool, mockNode, mockLog);
+    }
+
+    @Test
+    void performInstallationGivenRaceProbesAndDeadlinePassesThenStopsWaitingForProbes() throws Exception {
+        // Given
+        final Node mockNode = mock(Node.class);
+        final ToolInstallation mockTool = mock(ToolInstallation.class);
+        final List<String> actualLogRecord = new ArrayList<>();
+        final TaskListener mockLog = mockTaskListener(actualLogRecord);
+        final IsAlreadyOnPath hungProbe = mockProbe("HungProbe", mockNode);
+        when(hungProbe.performInstallation(mockTool, mockNode, mockLog)).thenAnswer(invocation -> {
+            Thread.sleep(60000L);
+            return new FilePath(new File("/hung"));
+        });
+        final ToolInstaller downloader = mockInstaller("Downloader", mockNode);
+        final AnyOfInstaller instance = new AnyOfInstaller();
+        instance.setInstallers(new InstallSourceProperty(Arrays.asList(hungProbe, downloader)));
+        instance.setRaceProbes(true);
+        instance.setDeadlineSeconds(1);
+
+        // When
+        final long start = System.nanoTime();
+        assertThrows(ExtraToolInstallersException.class,
+                () -> instance.performInstallation(mockTool, mockNode, mockLog));
+        final long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Then
+        assertThat(durationMillis < 30000L, equalTo(true));
+        verify(downloader, times(0)).performInstallation(mockTool, mockNode, mockLog);
+        assertThat(actualLogRecord, equalTo(Collections.singletonList(Messages.AnyOfInstaller_deadline_reached(1))));
+    }
+
+    @Test
+    void performInstallationGivenRetryDelayThenWaitsBetweenRetriesAndDoesNotRetryFatalErrors() throws Exception {
+        // Given
+        final Node mockNode = mock(Node.class);
+        final ToolInstallation mockTool = mock(ToolInstallation.class);
+        final List<String> actualLogRecord = new ArrayList<>();
+        final TaskListener mockLog = mockTaskListener(actualLogRecord);
+        final ToolInstaller wrongVersion = mockInstaller("WrongVersion", mockNode);
+        when(wrongVersion.performInstallation(mockTool, mockNode, mockLog))
+                .thenThrow(new WrongVersionException("foo", "/usr/bin", "1.0", "2.0", null));
+        final ToolInstaller unreliable = mockInstaller("Unreliable", mockNode);
+        final FilePath expected = stubFilePath();
+        when(unreliable.performInstallation(mockTool, mockNode, mockLog)).thenThrow(
+                new PretendInstallerFailureException("1"), new PretendInstallerFailureException("2"))
+                .thenReturn(expected);
+        final List<Long> actualSleeps = new ArrayList<>();
+        final AnyOfInstaller instance = new AnyOfInstaller() {
+            @Override
+            void sleep(long millis) {
+                actualSleeps.add(millis);
+            }
+        };
+        instance.setInstallers(new InstallSourceProperty(Arrays.asList(wrongVersion, unreliable)));
+        instance.setAttemptsPerInstaller(3);
+        instance.setRetryDelaySeconds(10);
+
+        // When
+        final FilePath actual = instance.performInstallation(mockTool, mockNode, mockLog);
+
+        // Then
+        assertThat(actual, equalTo(expected));
+        verify(wrongVersion, times(1)).performInstallation(mockTool, mockNode, mockLog);
+        verify(unreliable, times(3)).performInstallation(mockTool, mockNode, mockLog);
+        assertThat(actualSleeps.size(), equalTo(2));
+        assertThat(actualSleeps.get(0) >= 5000L && actualSleeps.get(0) <= 10000L, equalTo(true));
+        assertThat(actualSleeps.get(1) >= 10000L && actualSleeps.get(1) <= 20000L, equalTo(true));
+    }
+
+    @Test
+    void performInstallationGivenOnlyFatalFailuresThenDoesNotWaitToLoopAgain() throws Exception {
+        // Given
+        final Node mockNode = mock(Node.class);
+        final ToolInstallation mockTool = mock(ToolInstallation.class);
+        final TaskListener mockLog = mockTaskListener(new ArrayList<>());
+        final ToolInstaller wrongVersion = mockInstaller("WrongVersion", mockNode);
+        when(wrongVersion.performInstallation(mockTool, mockNode, mockLog))
+                .thenThrow(new WrongVersionException("foo", "/usr/bin", "1.0", "2.0", null));
+        final ToolInstaller notFound = mockInstaller("NotFound", mockNode);
+        final Exception expectedCause = new AuthenticatedDownloadCallable.HttpGetException(
+                "https://example.com/tool.zip", null, 404);
+        when(notFound.performInstallation(mockTool, mockNode, mockLog)).thenThrow(expectedCause);
+        final List<Long> actualSleeps = new ArrayList<>();
+        final AnyOfInstaller instance = new AnyOfInstaller() {
+            @Override
+            void sleep(long millis) {
+                actualSleeps.add(millis);
+            }
+        };
+        instance.setInstallers(new InstallSourceProperty(Arrays.asList(wrongVersion, notFound)));
+        instance.setAttemptsOfWholeList(3);
+        instance.setLoopDelaySeconds(30);
+
+        // When
+        final ExtraToolInstallersException ex = assertThrows(ExtraToolInstallersException.class,
+                () -> instance.performInstallation(mockTool, mockNode, mockLog));
+
+        // Then
+        assertThat(ex.getCause(), sameInstance(expectedCause));
+        verify(wrongVersion, times(1)).performInstallation(mockTool, mockNode, mockLog);
+        verify(notFound, times(1)).performInstallation(mockTool, mockNode, mockLog);
+        assertThat(actualSleeps.isEmpty(), equalTo(true));
+    }
+
+    @Test
+    void performInstallationGivenDeadlineWouldBePassedThenStopsWithoutWaiting() throws Exception {
+        // Given
+        final Node mockNode = mock(Node.class);
+        final ToolInstallation mockTool = mock(ToolInstallation.class);
+        final List<String> actualLogRecord = new ArrayList<>();
+        final TaskListener mockLog = mockTaskListener(actualLogRecord);
+        final ToolInstaller failing = mockInstaller("Failing", mockNode);
+        final PretendInstallerFailureException expectedCause = new PretendInstallerFailureException();
+        when(failing.performInstallation(mockTool, mockNode, mockLog)).thenThrow(expectedCause);
+        final List<Long> actualSleeps = new ArrayList<>();
+        final AnyOfInstaller instance = new AnyOfInstaller() {
+            @Override
+            void sleep(long millis) {
+                actualSleeps.add(millis);
+            }
+        };
+        instance.setInstallers(new InstallSourceProperty(Collections.singletonList(failing)));
+        instance.setAttemptsPerInstaller(5);
+        instance.setRetryDelaySeconds(60);
+        instance.setDeadlineSeconds(30);
+
+        // When
+        final ExtraToolInstallersException ex = assertThrows(ExtraToolInstallersException.class,
+                () -> instance.performInstallation(mockTool, mockNode, mockLog));
+
+        // Then
+        assertThat(ex.getCause(), sameInstance(expectedCause));
+        verify(failing, times(1)).performInstallation(mockTool, mockNode, mockLog);
+        assertThat(actualSleeps.isEmpty(), equalTo(true));
+        assertThat(actualLogRecord.get(actualLogRecord.size() - 1),
+                equalTo(Messages.AnyOfInstaller_deadline_reached(30)));
+    }
+
+    @Test
+    void performInstallationGivenLearnInstallerOrderThenTriesWhatWorkedLastTimeFirst() throws Exception {
+        // Given
+        final Node mockNode = mock(Node.class);
+        when(mockNode.getNodeName()).thenReturn("performInstallationGivenLearnInstallerOrder");
+        final ToolInstallation mockTool = mock(ToolInstallation.class);
+        when(mockTool.getName()).thenReturn("someTool");
+        final List<String> actualLogRecord = new ArrayList<>();
+        final TaskListener mockLog = mockTaskListener(actualLogRecord);
+        final ToolInstaller failing = mockInstaller("Failing", mockNode);
+        when(failing.performInstallation(mockTool, mockNode, mockLog))
+                .thenThrow(new PretendInstallerFailureException());
+        final ToolInstaller working = mockInstaller("Working", mockNode);
+        final FilePath expected = stubFilePath();
+        when(working.performInstallation(mockTool, mockNode, mockLog)).thenReturn(expected);
+        final AnyOfInstaller instance = new AnyOfInstaller();
+        instance.setInstallers(new InstallSourceProperty(Arrays.asList(failing, working)));
+        instance.setLearnInstallerOrder(true);
+        final FilePath firstResult = instance.performInstallation(mockTool, mockNode, mockLog);
+
+        // When
+        final FilePath actual = instance.performInstallation(mockTool, mockNode, mockLog);
+
+        // Then
+        assertThat(firstResult, equalTo(expected));
+        assertThat(actual, equalTo(expected));
+        verify(failing, times(1)).performInstallation(mockTool, mockNode, mockLog);
+        verify(working, times(2)).performInstallation(mockTool, mockNode, mockLog);
+    }
+
+    @Test
+    void performInstallationGivenRememberWinnerThenReusesResultWhileItExists() throws Exception {
+        // Given
+        final File toolHome = new File(tmpDir, "toolHome");
+        toolHome.mkdirs();
+        final FilePath expected = new FilePath(toolHome);
+        final Node mockNode = mock(Node.class);
+        when(mockNode.getNodeName()).thenReturn("node");
+        when(mockNode.createPath(expected.getRemote())).thenAnswer(invocation -> new FilePath(toolHome));
+        final ToolInstallation mockTool = mock(ToolInstallation.class);
+        final List<String> actualLogRecord = new ArrayList<>();
+        final TaskListener mockLog = mockTaskListener(actualLogRecord);
+        final ToolInstaller failing = mockInstaller("Failing", mockNode);
+        when(failing.performInstallation(mockTool, mockNode, mockLog))
+                .thenThrow(new PretendInstallerFailureException());
+        final ToolInstaller working = mockInstaller("Working", mockNode);
+        when(working.performInstallation(mockTool, mockNode, mockLog)).thenReturn(expected);
+        final AnyOfInstaller instance = new AnyOfInstaller();
+        instance.setInstallers(new InstallSourceProperty(Arrays.asList(failing, working)));
+        instance.setRememberWinner(true);
+        instance.performInstallation(mockTool, mockNode, mockLog);
+
+        // When
+        final FilePath actualWhileExists = instance.performInstallation(mockTool, mockNode, mockLog);
+        toolHome.delete();
+        final FilePath actualAfterDeletion = instance.performInstallation(mockTool, mockNode, mockLog);
+
+        // Then
+        assertThat(actualWhileExists, equalTo(expected));
+        assertThat(actualAfterDeletion, equalTo(expected));
+        verify(failing, times(2)).performInstallation(mockTool, mockNode, mockLog);
+        verify(working, times(2)).performInstallation(mockTool, mockNode, mockLog);
+    }
+
+    @Test
+    void forgetNodeGivenWinnersOnSeveralNodesThenForgetsOnlyThatNodesWinners() throws Exception {
+        // Given
+        final ToolInstallation mockTool = mock(ToolInstallation.class);
+        when(mockTool.getName()).thenReturn("tool");
+        final TaskListener mockLog = mockTaskListener(new ArrayList<>());
+        final Node nodeA = mock(Node.class);
+        when(nodeA.getNodeName()).thenReturn("nodeA");
+        final Node nodeAB = mock(Node.class);
+        when(nodeAB.getNodeName()).thenReturn("nodeAB");
+        final Node nodeB = mock(Node.class);
+        when(nodeB.getNodeName()).thenReturn("nodeB");
+        final ToolInstaller working = mockInstaller("Working", nodeA, nodeAB, nodeB);
+        when(working.performInstallation(any(), any(), any())).thenReturn(stubFilePath());
+        final AnyOfInstaller instance = new AnyOfInstaller();
+        instance.setInstallers(new InstallSourceProperty(Collections.singletonList(working)));
+        instance.setRememberWinner(true);
+        instance.performInstallation(mockTool, nodeA, mockLog);
+        instance.performInstallation(mockTool, nodeAB, mockLog);
+        instance.performInstallation(mockTool, nodeB, mockLog);
+        final int countBefore = instance.countRememberedWinners();
+
+        // When
+        instance.forgetNode("nodeA");
+
+        // Then
+        assertThat(countBefore, equalTo(3));
+        assertThat(instance.countRememberedWinners(), equalTo(2));
+    }
+
+    @Test
+    void performInstallationGivenRememberedWinnersHaveExpiredThenForgetsThemWhenRememberingAnother()
+            throws Exception {
+        // Given
+        final ToolInstallation mockTool = mock(ToolInstallation.class);
+        when(mockTool.getName()).thenReturn("tool");
+        final TaskListener mockLog = mockTaskListener(new ArrayList<>());
+        final Node oldNode = mock(Node.class);
+        when(oldNode.getNodeName()).thenReturn("oldNode");
+        final Node newNode = mock(Node.class);
+        when(newNode.getNodeName()).thenReturn("newNode");
+        final ToolInstaller working = mockInstaller("Working", oldNode, newNode);
+        when(working.performInstallation(any(), any(), any())).thenReturn(stubFilePath());
+        final AnyOfInstaller instance = new AnyOfInstaller();
+        instance.setInstallers(new InstallSourceProperty(Collections.singletonList(working)));
+        instance.setRememberWinner(true);
+        instance.performInstallation(mockTool, oldNode, mockLog);
+        final int previousMinutes = AnyOfInstaller.REMEMBER_WINNER_MINUTES;
+        AnyOfInstaller.REMEMBER_WINNER_MINUTES = 0;
+        try {
+            Thread.sleep(10L);
+
+            // When
+            instance.performInstallation(mockTool, newNode, mockLog);
+        } finally {
+            AnyOfInstaller.REMEMBER_WINNER_MINUTES = previousMinutes;
+        }
+
+        // Then
+        assertThat(instance.countRememberedWinners(), equalTo(1));
+    }
+
+    @Test
+    void performInstallationGivenRememberedVersionedInstallationThenLeasesItAndMarksItAsUsed() throws Exception {
+        // Given
+        final File toolFolder = new File(tmpDir, "tool");
+        final File versionFolder = new File(toolFolder,
+                AuthenticatedZipExtractionInstaller.VERSION_FOLDER_PREFIX + "1");
+        versionFolder.mkdirs();
+        final FilePath expected = new FilePath(versionFolder);
+        final Node mockNode = mock(Node.class);
+        when(mockNode.getNodeName()).thenReturn("versionedNode");
+        when(mockNode.getRootPath()).thenReturn(new FilePath(tmpDir));
+        when(mockNode.createPath(expected.getRemote())).thenAnswer(invocation -> new FilePath(versionFolder));
+        final ToolInstallation mockTool = mock(ToolInstallation.class);
+        when(mockTool.getName()).thenReturn("tool");
+        when(mockTool.getHome()).thenReturn(toolFolder.getAbsolutePath());
+        final TaskListener mockLog = mockTaskListener(new ArrayList<>());
+        final ToolInstallerDescriptor<?> mockDescriptor = mock(ToolInstallerDescriptor.class);
+        when(mockDescriptor.getId()).thenReturn("versioned");
+        when(mockDescriptor.getDisplayName()).thenReturn("Versioned");
+        final AtomicInteger installations = new AtomicInteger();
+        final AuthenticatedZipExtractionInstaller versioned = new AuthenticatedZipExtractionInstaller(null) {
+            @Override
+            public FilePath performInstallation(ToolInstallation tool, Node node, TaskListener log) {
+                installations.incrementAndGet();
+                return expected;
+            }
+
+            @Override
+            public boolean appliesTo(Node node) {
+                return true;
+            }
+
+            @Override
+            public ToolInstallerDescriptor<?> getDescriptor() {
+                return mockDescriptor;
+            }
+        };
+        versioned.setVersionedInstallations(true);
+        final AnyOfInstaller instance = new AnyOfInstaller();
+        instance.setInstallers(new InstallSourceProperty(Collections.singletonList(versioned)));
+        instance.setRememberWinner(true);
+        instance.performInstallation(mockTool, mockNode, mockLog);
+        final String previousOwner = ToolLeases.setCurrentOwner("laterBuild#1");
+        try {
+            // When
+            final FilePath actual = instance.performInstallation(mockTool, mockNode, mockLog);
+
+            // Then
+            assertThat(actual, equalTo(expected));
+            assertThat(installations.get(), equalTo(1));
+            assertThat(ToolLeases.get().getLeasedToolFolders("versionedNode"),
+                    hasItem(toolFolder.getAbsolutePath()));
+            assertThat(new File(versionFolder, UnusedToolInstallationsCleaner.LAST_USED_FILENAME).isFile(),
+                    equalTo(true));
+        } finally {
+            ToolLeases.setCurrentOwner(previousOwner);
+            ToolLeases.get().releaseAll("laterBuild#1");
+        }
+    }
+
+    @Test
+    void performInstallationGivenFailuresThenSendsAnEventForEachAttempt() throws Exception {
+        // Given
+        final Node mockNode = mock(Node.class);
+        when(mockNode.getNodeName()).thenReturn("node");
+        final ToolInstallation mockTool = mock(ToolInstallation.class);
+        when(mockTool.getName()).thenReturn("tool");
+        final List<String> actualLogRecord = new ArrayList<>();
+        final TaskListener mockLog = mockTaskListener(actualLogRecord);
+        final ToolInstaller notFound = mockInstaller("NotFound", mockNode);
+        when(notFound.performInstallation(mockTool, mockNode, mockLog)).thenThrow(
+                new AuthenticatedDownloadCallable.HttpGetException("https://example.com/tool.zip", null, 404));
+        final ToolInstaller unreliable = mockInstaller("Unreliable", mockNode);
+        final FilePath expected = stubFilePath();
+        when(unreliable.performInstallation(mockTool, mockNode, mockLog))
+                .thenThrow(new PretendInstallerFailureException()).thenReturn(expected);
+        final List<InstallAttemptEvent> actualEvents = new ArrayList<>();
+        final AnyOfInstaller instance = new AnyOfInstaller() {
+            @Override
+            void fireAttemptEvent(InstallAttemptEvent event) {
+                actualEvents.add(event);
+            }
+        };
+        instance.setInstallers(new InstallSourceProperty(Arrays.asList(notFound, unreliable)));
+        instance.setAttemptsPerInstaller(2);
+
+        // When
+        instance.performInstallation(mockTool, mockNode, mockLog);
+
+        // Then
+        assertThat(actualEvents.size(), equalTo(3));
+        assertThat(actualEvents.get(0).getInstallerIndex(), equalTo(1));
+        assertThat(actualEvents.get(0).getOutcome(), equalTo(InstallAttemptEvent.Outcome.FATAL_FAILURE));
+        assertThat(actualEvents.get(0).getExceptionClassName(),
+                equalTo(AuthenticatedDownloadCallable.HttpGetException.class.getName()));
+        assertThat(actualEvents.get(1).getInstallerIndex(), equalTo(2));
+        assertThat(actualEvents.get(1).getInstallerAttempt(), equalTo(1));
+        assertThat(actualEvents.get(1).getOutcome(), equalTo(InstallAttemptEvent.Outcome.RETRYABLE_FAILURE));
+        assertThat(actualEvents.get(2).getInstallerAttempt(), equalTo(2));
+        assertThat(actualEvents.get(2).getOutcome(), equalTo(InstallAttemptEvent.Outcome.SUCCESS));
+        assertThat(actualEvents.get(2).getToolName(), equalTo("tool"));
+        assertThat(actualEvents.get(2).getNodeName(), equalTo("node"));
+        assertThat(actualEvents.get(2).getInstallerName(), equalTo("Unreliable"));
+    }
+
+    @Test
+    void calcDelayMillisGivenRetriesThenDoublesUpToLimitWithJitter() {
+        // Given
+        final int base = 2;
+        final int limit = 5;
+
+        // When
+        final long firstRetryMin = AnyOfInstaller.calcDelayMillis(1, base, limit, 0.0);
+        final long firstRetryMax = AnyOfInstaller.calcDelayMillis(1, base, limit, 1.0);
+        final long secondRetryMax = AnyOfInstaller.calcDelayMillis(2, base, limit, 1.0);
+        final long hundredthRetryMax = AnyOfInstaller.calcDelayMillis(100, base, limit, 1.0);
+        final long noDelay = AnyOfInstaller.calcDelayMillis(3, 0, limit, 1.0);
+
+        // Then
+        assertThat(firstRetryMin, equalTo(1000L));
+        assertThat(firstRetryMax, equalTo(2000L));
+        assertThat(secondRetryMax, equalTo(4000L));
+        assertThat(hundredthRetryMax, equalTo(5000L));
+        assertThat(noDelay, equalTo(0L));
+    }
+
+    @Test
+    void isNotWorthRetryingGivenVariousFailuresThenClassifiesThem() {
+        // Given
+        final String uri = "https://example.com/tool.zip";
+        final Exception notFound = new AuthenticatedDownloadCallable.HttpGetException(uri, null, 404);
+        final Exception tooMany = new AuthenticatedDownloadCallable.HttpGetException(uri, null, 429);
+        final Exception serverError = new AuthenticatedDownloadCallable.HttpGetException(uri, null, 503);
+        final Exception wrappedNotFound = new IOException("wrapped", notFound);
+        final Exception wrongVersion = new WrongVersionException("foo", "/usr/bin", "1.0", "2.0", null);
+        final Exception other = new PretendInstallerFailureException();
+
+        // When/Then
+        assertThat(AnyOfInstaller.isNotWorthRetrying(notFound), equalTo(true));
+        assertThat(AnyOfInstaller.isNotWorthRetrying(tooMany), equalTo(false));
+        assertThat(AnyOfInstaller.isNotWorthRetrying(serverError), equalTo(false));
+        assertThat(AnyOfInstaller.isNotWorthRetrying(wrappedNotFound), equalTo(true));
+        assertThat(AnyOfInstaller.isNotWorthRetrying(wrongVersion), equalTo(true));
+        assertThat(AnyOfInstaller.isNotWorthRetrying(other), equalTo(false));
+    }
+
     /////////////////////////////////////////////////////////////////
     // Test utility code.
     /////////////////////////////////////////////////////////////////
@@ -390,6 +900,20 @@ class AnyOfInstallerTest {
         return ti;
     }
 
+    /**
+     * Creates an {@link IsAlreadyOnPath} with a given name whose
+     * {@link ToolInstaller#appliesTo(Node)} answers "true" to the specified
+     * nodes.
+     */
+    private static IsAlreadyOnPath mockProbe(String displayName, Node... nodesThisAppliesTo) {
+        final IsAlreadyOnPath ti = mock(IsAlreadyOnPath.class, withSettings().defaultAnswer(RETURNS_DEEP_STUBS));
+        when(ti.getDescriptor().getDisplayName()).thenReturn(displayName);
+        for (final Node node : nodesThisAppliesTo) {
+            when(ti.appliesTo(node)).thenReturn(true);
+        }
+        return ti;
+    }
+
     /** Creates a {@link TaskListener} that records everything printed to it. */
     private static TaskListener mockTaskListener(List<String> whereToRecord) {
         final PrintStream ps = mock(PrintStream.class);
@@ -5,6 +5,7 @@ import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
 import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
 import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
 import hudson.FilePath;
+import hudson.slaves.DumbSlave;
 import hudson.tools.ToolInstallation;
 import io.jenkins.plugins.generic_tool.GenericToolInstallation;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -16,14 +17,22 @@ import org.junit.jupiter.api.extension.RegisterExtension;
 import org.jvnet.hudson.test.JenkinsRule;
 import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
 
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.Date;
 import java.util.List;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.matching;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -66,6 +75,117 @@ class AuthenticatedZipExtractionInstallerTest {
         assertEquals(TEST_TXT, location.child(TEST_TXT).readToString());
     }
 
+    @Test
+    void shouldTrustPreinstalledContents(JenkinsRule r) throws Exception {
+        final String path = "/preinstalled/" + DUMMY_ZIP;
+        wireMock.stubFor(get(urlEqualTo(path))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.SC_OK)
+                        .withBodyFile(DUMMY_ZIP) // matches the file in __files
+                        .withHeader(HttpHeaders.CONTENT_TYPE, "application/zip")
+                        .withHeader(HttpHeaders.LAST_MODIFIED, DateUtils.formatStandardDate(Instant.now()))));
+
+        // tool folder as it would be after extracting a snapshot
+        FilePath toolFolder = r.jenkins.getRootPath().child("tools").child("preinstalled");
+        toolFolder.child("preinstalled.txt").write("preinstalled", "UTF-8");
+        toolFolder.child(AuthenticatedZipExtractionInstaller.INSTALLED_FROM_FILENAME)
+                .write(wireMock.baseUrl() + path, "UTF-8");
+        toolFolder.child(AuthenticatedZipExtractionInstaller.TIMESTAMP_FILENAME).touch(0L);
+        ToolInstallation installation = new GenericToolInstallation(DUMMY_ZIP, toolFolder.getRemote(), List.of());
+
+        AuthenticatedZipExtractionInstaller installer = new AuthenticatedZipExtractionInstaller("preinstalled");
+        installer.setUrl(wireMock.baseUrl() + path);
+        installer.setTrustPreinstalledContents(true);
+        FilePath location = installer.performInstallation(installation, r.jenkins, r.createTaskListener());
+
+        // validate we used what was there without asking the server
+        assertEquals(toolFolder, location);
+        assertTrue(location.child("preinstalled.txt").exists());
+        assertFalse(location.child(TEST_TXT).exists());
+        wireMock.verify(0, getRequestedFor(urlEqualTo(path)));
+
+        // contents from a different URL are not trusted
+        installer.setUrl(wireMock.baseUrl() + path + "?other");
+        wireMock.stubFor(get(urlEqualTo(path + "?other"))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.SC_OK)
+                        .withBodyFile(DUMMY_ZIP) // matches the file in __files
+                        .withHeader(HttpHeaders.CONTENT_TYPE, "application/zip")
+                        .withHeader(HttpHeaders.LAST_MODIFIED, DateUtils.formatStandardDate(Instant.now()))));
+        location = installer.performInstallation(installation, r.jenkins, r.createTaskListener());
+        wireMock.verify(1, getRequestedFor(urlEqualTo(path + "?other")));
+        assertEquals(TEST_TXT, location.child(TEST_TXT).readToString());
+        assertEquals(wireMock.baseUrl() + path + "?other",
+                location.child(AuthenticatedZipExtractionInstaller.INSTALLED_FROM_FILENAME).readToString().trim());
+    }
+
+    @Test
+    void shouldInstallOnAgentInOneCallAndSkipWhenNotModified(JenkinsRule r) throws Exception {
+        final String path = "/oneCall/" + DUMMY_ZIP;
+        final Instant lastModified = Instant.parse("2020-01-02T03:04:05Z");
+        wireMock.stubFor(get(urlEqualTo(path))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.SC_OK)
+                        .withBodyFile(DUMMY_ZIP) // matches the file in __files
+                        .withHeader(HttpHeaders.CONTENT_TYPE, "application/zip")
+                        .withHeader(HttpHeaders.LAST_MODIFIED, DateUtils.formatStandardDate(lastModified))));
+        wireMock.stubFor(get(urlEqualTo(path))
+                .withHeader(HttpHeaders.IF_MODIFIED_SINCE, matching(".+"))
+                .atPriority(1)
+                .willReturn(aResponse().withStatus(HttpStatus.SC_NOT_MODIFIED)));
+        DumbSlave agent = r.createOnlineSlave();
+        FilePath dir = agent.getRootPath().child("tools").child("oneCall");
+        URI uri = new URI(wireMock.baseUrl() + path);
+
+        // a single remote call installs and records everything
+        Date installed = dir.act(new AuthenticatedDownloadCallable(uri, null, null, agent.getNodeName(),
+                r.createTaskListener(), false, false, 0, false));
+        assertEquals(lastModified.toEpochMilli(), installed.getTime());
+        assertEquals(TEST_TXT, dir.child(TEST_TXT).readToString());
+        assertEquals(uri.toString(),
+                dir.child(AuthenticatedZipExtractionInstaller.INSTALLED_FROM_FILENAME).readToString().trim());
+        assertEquals(lastModified.toEpochMilli(),
+                dir.child(AuthenticatedZipExtractionInstaller.TIMESTAMP_FILENAME).lastModified());
+        assertTrue(dir.child(UnusedToolInstallationsCleaner.LAST_USED_FILENAME).exists());
+
+        // next time, the server says nothing has changed so nothing is unpacked
+        dir.child(TEST_TXT).write("unchanged", "UTF-8");
+        Date skipped = dir.act(new AuthenticatedDownloadCallable(uri, null, null, agent.getNodeName(),
+                r.createTaskListener(), false, false, 0, false));
+        assertEquals(null, skipped);
+        assertEquals("unchanged", dir.child(TEST_TXT).readToString());
+        wireMock.verify(2, getRequestedFor(urlEqualTo(path)));
+        wireMock.verify(1, getRequestedFor(urlEqualTo(path)).withHeader(HttpHeaders.IF_MODIFIED_SINCE, matching(".+")));
+    }
+
+    @Test
+    void shouldRefuseToUnpackWithoutEnoughDiskSpace(JenkinsRule r) throws Exception {
+        final String path = "/noSpace/" + DUMMY_ZIP;
+        final long zipSize = Files.size(Paths.get(getClass().getResource("/__files/" + DUMMY_ZIP).toURI()));
+        wireMock.stubFor(get(urlEqualTo(path))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.SC_OK)
+                        .withBodyFile(DUMMY_ZIP) // matches the file in __files
+                        .withHeader(HttpHeaders.CONTENT_TYPE, "application/zip")
+                        .withHeader(HttpHeaders.CONTENT_LENGTH, String.valueOf(zipSize))
+                        .withHeader(HttpHeaders.LAST_MODIFIED, DateUtils.formatStandardDate(Instant.now()))));
+        FilePath dir = r.jenkins.getRootPath().child("tools").child("noSpace");
+        dir.child("existing.txt").write("existing", "UTF-8");
+        dir.child(AuthenticatedZipExtractionInstaller.TIMESTAMP_FILENAME).touch(0L);
+
+        // no disk is big enough for this
+        AuthenticatedDownloadCallable.InsufficientDiskSpaceException ex = assertThrows(
+                AuthenticatedDownloadCallable.InsufficientDiskSpaceException.class,
+                () -> AuthenticatedDownloadCallable.installIfNecessary(new URI(wireMock.baseUrl() + path), null, null,
+                        "built-in", dir, r.createTaskListener(), false, false, 1e15));
+
+        // validate we kept what we had
+        assertTrue(ex.getRequiredSpace() > ex.getUsableSpace());
+        assertEquals("existing", dir.child("existing.txt").readToString());
+        assertEquals(0L, dir.child(AuthenticatedZipExtractionInstaller.TIMESTAMP_FILENAME).lastModified());
+        assertFalse(dir.child(TEST_TXT).exists());
+    }
+
     @Test
     void shouldDownloadWithBasicAuth(JenkinsRule r) throws Exception {
         String username = RandomStringUtils.secure().nextAlphabetic(10);
@@ -104,6 +224,61 @@ class AuthenticatedZipExtractionInstallerTest {
         assertEquals(TEST_TXT, location.child(TEST_TXT).readToString());
     }
 
+    @Test
+    void shouldInstallEachVersionIntoItsOwnFolder(JenkinsRule r) throws Exception {
+        final int originalGraceMinutes = ToolLeases.GRACE_MINUTES;
+        try {
+            // define tool and installer
+            FilePath toolFolder = r.jenkins.getRootPath().child("tools").child("versioned");
+            ToolInstallation installation = new GenericToolInstallation(DUMMY_ZIP, toolFolder.getRemote(), List.of());
+            AuthenticatedZipExtractionInstaller installer = new AuthenticatedZipExtractionInstaller("versioned");
+            installer.setUrl(wireMock.baseUrl() + TEST_PATH);
+            installer.setVersionedInstallations(true);
+
+            // first build installs the old version
+            stubDummyZip(Instant.now().minusSeconds(3600));
+            String previousOwner = ToolLeases.setCurrentOwner("versioned#1");
+            FilePath oldLocation = installer.performInstallation(installation, r.jenkins, r.createTaskListener());
+            // second build installs the new version while the first is still using the old one
+            stubDummyZip(Instant.now());
+            ToolLeases.setCurrentOwner("versioned#2");
+            FilePath newLocation = installer.performInstallation(installation, r.jenkins, r.createTaskListener());
+            ToolLeases.setCurrentOwner(previousOwner);
+
+            // validate both are there
+            assertEquals(toolFolder, oldLocation.getParent());
+            assertEquals(toolFolder, newLocation.getParent());
+            assertNotEquals(oldLocation, newLocation);
+            assertEquals(TEST_TXT, oldLocation.child(TEST_TXT).readToString());
+            assertEquals(TEST_TXT, newLocation.child(TEST_TXT).readToString());
+            assertEquals(newLocation, AuthenticatedDownloadCallable.getCurrentVersion(toolFolder));
+
+            // old version is still leased so survives even without a grace period
+            ToolLeases.GRACE_MINUTES = 0;
+            ToolLeases.deleteUnusedVersions(r.jenkins, toolFolder, null);
+            assertTrue(oldLocation.exists());
+
+            // once the first build is done, only the new version is kept
+            ToolLeases.get().releaseAll("versioned#1");
+            ToolLeases.deleteUnusedVersions(r.jenkins, toolFolder, null);
+            assertFalse(oldLocation.exists());
+            assertTrue(newLocation.exists());
+        } finally {
+            ToolLeases.GRACE_MINUTES = originalGraceMinutes;
+            ToolLeases.get().releaseAll("versioned#1");
+            ToolLeases.get().releaseAll("versioned#2");
+        }
+    }
+
+    private static void stubDummyZip(Instant lastModified) {
+        wireMock.stubFor(get(urlEqualTo(TEST_PATH))
+                .willReturn(aResponse()
+                        .withStatus(HttpStatus.SC_OK)
+                        .withBodyFile(DUMMY_ZIP) // matches the file in __files
+                        .withHeader(HttpHeaders.CONTENT_TYPE, "application/zip")
+                        .withHeader(HttpHeaders.LAST_MODIFIED, DateUtils.formatStandardDate(lastModified))));
+    }
+
     @Test
     void shouldFailWithBadCredentials(JenkinsRule r) throws Exception {
         String username = RandomStringUtils.secure().nextAlphabetic(10);
@@ -0,0 +1,26 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs our JMH benchmarks. This isn't run as part of the normal build; run it
+ * explicitly using <code>mvn test -Dtest=BenchmarkRunner</code>.
+ */
+class BenchmarkRunner {
+    @Test
+    void runJmhBenchmarks() throws Exception {
+        final Options options = new OptionsBuilder()
+                .include(getClass().getPackage().getName() + ".*Benchmark")
+                .warmupIterations(2)
+                .measurementIterations(3)
+                .forks(1)
+                .resultFormat(ResultFormatType.JSON)
+                .result("target/jmh-report.json")
+                .build();
+        new Runner(options).run();
+    }
+}
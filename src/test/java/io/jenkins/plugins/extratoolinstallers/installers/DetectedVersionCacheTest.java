@@ -0,0 +1,76 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/** Unit test for the {@link DetectedVersionCache} class. */
+class DetectedVersionCacheTest {
+    private static final String[] VERSION_CMD = {"tool", "--version"};
+    private static final String VERSION_PATTERN = "tool (.*)";
+
+    @BeforeEach
+    @AfterEach
+    void clearCache() {
+        DetectedVersionCache.clear();
+    }
+
+    @Test
+    void getGivenUnchangedExecutableThenReturnsVersion() {
+        // Given
+        DetectedVersionCache.put(key("node", "/bin/tool", 1000L, 42L, 7), "1.2.3");
+
+        // When
+        final String actual = DetectedVersionCache.get(key("node", "/bin/tool", 1000L, 42L, 7));
+
+        // Then
+        assertThat(actual, equalTo("1.2.3"));
+    }
+
+    @Test
+    void getGivenChangedExecutableOrPathThenReturnsNull() {
+        // Given
+        DetectedVersionCache.put(key("node", "/bin/tool", 1000L, 42L, 7), "1.2.3");
+
+        // When/Then
+        assertThat(DetectedVersionCache.get(key("node", "/bin/tool", 2000L, 42L, 7)), nullValue());
+        assertThat(DetectedVersionCache.get(key("node", "/bin/tool", 1000L, 43L, 7)), nullValue());
+        assertThat(DetectedVersionCache.get(key("node", "/bin/tool", 1000L, 42L, 8)), nullValue());
+        assertThat(DetectedVersionCache.get(key("node", "/usr/bin/tool", 1000L, 42L, 7)), nullValue());
+        assertThat(DetectedVersionCache.get(key("other", "/bin/tool", 1000L, 42L, 7)), nullValue());
+        final FoundExecutable same = new FoundExecutable("/bin/tool", 1000L, 42L, 7);
+        assertThat(DetectedVersionCache.get(new DetectedVersionCache.Key("node", same,
+                new String[] {"tool", "-v"}, VERSION_PATTERN)), nullValue());
+        assertThat(DetectedVersionCache.get(new DetectedVersionCache.Key("node", same, VERSION_CMD, "(.*)")),
+                nullValue());
+    }
+
+    @Test
+    void putGivenTooManyEntriesThenEvictsLeastRecentlyUsed() {
+        // Given
+        for (int i = 0; i < DetectedVersionCache.MAX_ENTRIES; i++) {
+            DetectedVersionCache.put(key("node", "/bin/tool" + i, 1000L, 42L, 7), "v" + i);
+        }
+        // make the first entry the most recently used, leaving the second as the eldest
+        assertThat(DetectedVersionCache.get(key("node", "/bin/tool0", 1000L, 42L, 7)), equalTo("v0"));
+
+        // When
+        DetectedVersionCache.put(key("node", "/bin/new", 1000L, 42L, 7), "new");
+
+        // Then
+        assertThat(DetectedVersionCache.get(key("node", "/bin/tool1", 1000L, 42L, 7)), nullValue());
+        assertThat(DetectedVersionCache.get(key("node", "/bin/tool0", 1000L, 42L, 7)), equalTo("v0"));
+        assertThat(DetectedVersionCache.get(key("node", "/bin/tool2", 1000L, 42L, 7)), equalTo("v2"));
+        assertThat(DetectedVersionCache.get(key("node", "/bin/new", 1000L, 42L, 7)), equalTo("new"));
+    }
+
+    private static DetectedVersionCache.Key key(String nodeName, String path, long lastModified, long length,
+            int searchPathHash) {
+        return new DetectedVersionCache.Key(nodeName, new FoundExecutable(path, lastModified, length, searchPathHash),
+                VERSION_CMD, VERSION_PATTERN);
+    }
+}
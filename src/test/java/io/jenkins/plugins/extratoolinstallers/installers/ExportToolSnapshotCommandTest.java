@@ -0,0 +1,85 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import hudson.FilePath;
+import hudson.cli.CLICommandInvoker;
+import hudson.slaves.DumbSlave;
+import jenkins.model.Jenkins;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.junit.jupiter.WithJenkins;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+
+import static hudson.cli.CLICommandInvoker.Matcher.failedWith;
+import static hudson.cli.CLICommandInvoker.Matcher.hasNoStandardOutput;
+import static hudson.cli.CLICommandInvoker.Matcher.succeeded;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/** Test for the {@link ExportToolSnapshotCommand} class. */
+@WithJenkins
+class ExportToolSnapshotCommandTest {
+    private static final String COMMAND = "export-tool-snapshot";
+
+    @TempDir
+    File tmpDir;
+
+    @Test
+    void runGivenInstalledToolsThenWritesThemAllAsTarGz(JenkinsRule r) throws Exception {
+        // Given
+        final DumbSlave agent = r.createOnlineSlave();
+        final FilePath toolFolder = agent.getRootPath().child("tools").child("kind").child("tool");
+        toolFolder.child("bin").child("tool").write("#!/bin/sh\n", "UTF-8");
+        toolFolder.child(AuthenticatedZipExtractionInstaller.TIMESTAMP_FILENAME).touch(0L);
+        toolFolder.child(AuthenticatedZipExtractionInstaller.INSTALLED_FROM_FILENAME).write("http://x/y.zip", "UTF-8");
+
+        // When
+        final CLICommandInvoker.Result actual = new CLICommandInvoker(r, COMMAND)
+                .authorizedTo(Jenkins.READ, Jenkins.ADMINISTER).invokeWithArgs(agent.getNodeName());
+
+        // Then
+        assertThat(actual, succeeded());
+        final FilePath extracted = new FilePath(tmpDir);
+        extracted.untarFrom(new ByteArrayInputStream(actual.stdoutBinary()), FilePath.TarCompression.GZIP);
+        final FilePath extractedTool = extracted.child("tools").child("kind").child("tool");
+        assertThat(extractedTool.child("bin").child("tool").readToString(), equalTo("#!/bin/sh\n"));
+        assertThat(extractedTool.child(AuthenticatedZipExtractionInstaller.TIMESTAMP_FILENAME).exists(),
+                equalTo(true));
+        assertThat(extractedTool.child(AuthenticatedZipExtractionInstaller.INSTALLED_FROM_FILENAME).readToString(),
+                equalTo("http://x/y.zip"));
+    }
+
+    @Test
+    void runGivenNoToolsThenFails(JenkinsRule r) throws Exception {
+        // Given
+        final DumbSlave agent = r.createOnlineSlave();
+
+        // When
+        final CLICommandInvoker.Result actual = new CLICommandInvoker(r, COMMAND)
+                .authorizedTo(Jenkins.READ, Jenkins.ADMINISTER).invokeWithArgs(agent.getNodeName());
+
+        // Then
+        assertThat(actual, failedWith(1));
+        assertThat(actual, hasNoStandardOutput());
+        assertThat(actual.stderr(), containsString(agent.getRootPath().child("tools").getRemote()));
+    }
+
+    @Test
+    void runGivenNonAdminThenRefuses(JenkinsRule r) throws Exception {
+        // Given
+        final DumbSlave agent = r.createOnlineSlave();
+        agent.getRootPath().child("tools").child("kind").child("tool").child("secret").write("secret", "UTF-8");
+
+        // When
+        final CLICommandInvoker.Result actual = new CLICommandInvoker(r, COMMAND)
+                .authorizedTo(Jenkins.READ).invokeWithArgs(agent.getNodeName());
+
+        // Then
+        assertThat(actual, failedWith(6));
+        assertThat(actual, hasNoStandardOutput());
+        assertThat(actual.stderr(), containsString("Overall/Administer"));
+    }
+}
@@ -0,0 +1,65 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+/** Unit test for the {@link InstallAttemptStatistics} class. */
+class InstallAttemptStatisticsTest {
+
+    @Test
+    void onAttemptGivenEventsThenAddsThemUpPerInstallerAndPerNode() {
+        // Given
+        final InstallAttemptStatistics instance = new InstallAttemptStatistics();
+        final InstallAttemptEvent failure = new InstallAttemptEvent("tool", "node1", 1, "Download", 1, 1, 300L,
+                InstallAttemptEvent.Outcome.RETRYABLE_FAILURE, new IOException());
+        final InstallAttemptEvent retry = new InstallAttemptEvent("tool", "node1", 1, "Download", 1, 2, 200L,
+                InstallAttemptEvent.Outcome.SUCCESS, null);
+        final InstallAttemptEvent otherNode = new InstallAttemptEvent("tool", "node2", 1, "Download", 1, 1, 100L,
+                InstallAttemptEvent.Outcome.SUCCESS, null);
+
+        // When
+        instance.onAttempt(failure);
+        instance.onAttempt(retry);
+        instance.onAttempt(otherNode);
+
+        // Then
+        final Map<String, InstallAttemptStatistics.Counters> byInstaller = instance.getByInstaller();
+        assertThat(byInstaller.keySet(), contains("tool #1 \"Download\""));
+        final InstallAttemptStatistics.Counters download = byInstaller.get("tool #1 \"Download\"");
+        assertThat(download.getAttempts(), equalTo(3L));
+        assertThat(download.getSuccesses(), equalTo(2L));
+        assertThat(download.getRetryableFailures(), equalTo(1L));
+        assertThat(download.getTotalMillis(), equalTo(600L));
+        assertThat(download.getFailedMillis(), equalTo(300L));
+        assertThat(download.getFailuresByExceptionClass().get(IOException.class.getName()), equalTo(1L));
+        final Map<String, InstallAttemptStatistics.Counters> byNode = instance.getByNode();
+        assertThat(byNode.keySet(), contains("node1 tool", "node2 tool"));
+        assertThat(byNode.get("node1 tool").getAttempts(), equalTo(2L));
+        assertThat(byNode.get("node2 tool").getAttempts(), equalTo(1L));
+    }
+
+    @Test
+    void forgetNodeGivenStatisticsForSeveralNodesThenForgetsOnlyThatNode() {
+        // Given
+        final InstallAttemptStatistics instance = new InstallAttemptStatistics();
+        instance.onAttempt(new InstallAttemptEvent("tool", "node1", 1, "Download", 1, 1, 100L,
+                InstallAttemptEvent.Outcome.SUCCESS, null));
+        instance.onAttempt(new InstallAttemptEvent("other", "node1", 1, "Download", 1, 1, 100L,
+                InstallAttemptEvent.Outcome.SUCCESS, null));
+        instance.onAttempt(new InstallAttemptEvent("tool", "node2", 1, "Download", 1, 1, 100L,
+                InstallAttemptEvent.Outcome.SUCCESS, null));
+
+        // When
+        instance.forgetNode("node1");
+
+        // Then
+        assertThat(instance.getByNode().keySet(), contains("node2 tool"));
+        assertThat(instance.getByInstaller().get("tool #1 \"Download\"").getAttempts(), equalTo(2L));
+    }
+}
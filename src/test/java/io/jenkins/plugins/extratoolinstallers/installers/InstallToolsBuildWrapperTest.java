@@ -0,0 +1,177 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import hudson.AbortException;
+import hudson.EnvVars;
+import hudson.model.Node;
+import hudson.model.TaskListener;
+import hudson.tools.ToolInstallation;
+import hudson.util.StreamTaskListener;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/** Unit test for the {@link InstallToolsBuildWrapper} class. */
+class InstallToolsBuildWrapperTest {
+    private int originalMaxConcurrentInstalls;
+
+    @BeforeEach
+    void rememberMaxConcurrentInstalls() {
+        originalMaxConcurrentInstalls = InstallToolsBuildWrapper.MAX_CONCURRENT_INSTALLS_PER_NODE;
+    }
+
+    @AfterEach
+    void restoreMaxConcurrentInstalls() {
+        InstallToolsBuildWrapper.MAX_CONCURRENT_INSTALLS_PER_NODE = originalMaxConcurrentInstalls;
+    }
+
+    @Test
+    void parseToolNamesGivenCommasAndNewlinesThenReturnsTrimmedNames() {
+        // Given
+        final String input = " jdk-17,maven 3\r\n\n jdk:default ,";
+
+        // When
+        final List<String> actual = InstallToolsBuildWrapper.parseToolNames(input);
+
+        // Then
+        assertThat(actual, contains("jdk-17", "maven 3", "jdk:default"));
+    }
+
+    @Test
+    void parseToolNamesGivenNothingThenReturnsNothing() {
+        assertThat(InstallToolsBuildWrapper.parseToolNames(null), empty());
+        assertThat(InstallToolsBuildWrapper.parseToolNames(" ,\n"), empty());
+    }
+
+    @Test
+    void calcHomeVariableNameGivenToolNamesThenReturnsValidVariableNames() {
+        assertThat(InstallToolsBuildWrapper.calcHomeVariableName("java"), equalTo("JAVA_HOME"));
+        assertThat(InstallToolsBuildWrapper.calcHomeVariableName("jdk-17"), equalTo("JDK_17_HOME"));
+        assertThat(InstallToolsBuildWrapper.calcHomeVariableName("maven 3.9"), equalTo("MAVEN_3_9_HOME"));
+        assertThat(InstallToolsBuildWrapper.calcHomeVariableName("7zip"), equalTo("_7ZIP_HOME"));
+    }
+
+    @Test
+    void installAllGivenToolsThenInstallsInParallelUpToLimit() throws Exception {
+        // Given
+        InstallToolsBuildWrapper.MAX_CONCURRENT_INSTALLS_PER_NODE = 2;
+        final Node mockNode = mockNode("installAllGivenToolsThenInstallsInParallelUpToLimit");
+        final List<ToolInstallation> wanted = Arrays.asList(mockTool("a"), mockTool("b"), mockTool("c"),
+                mockTool("d"));
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final InstallToolsBuildWrapper instance = new InstallToolsBuildWrapper("a,b,c,d") {
+            @Override
+            ToolInstallation installOne(ToolInstallation tool, Node node, EnvVars environment,
+                    TaskListener listener) throws InterruptedException {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(100L);
+                running.decrementAndGet();
+                return tool;
+            }
+        };
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+        // When
+        final List<ToolInstallation> actual = instance.installAll(wanted, mockNode, new EnvVars(),
+                new StreamTaskListener(log, StandardCharsets.UTF_8));
+
+        // Then
+        assertThat(actual, equalTo(wanted));
+        assertThat(maxRunning.get(), equalTo(2));
+        assertThat(log.toString(StandardCharsets.UTF_8), containsString("Installed d into /tools/d"));
+    }
+
+    @Test
+    void installAllGivenFailuresThenLetsOthersFinishAndThenFails() throws Exception {
+        // Given
+        final Node mockNode = mockNode("installAllGivenFailuresThenLetsOthersFinishAndThenFails");
+        final List<ToolInstallation> wanted = Arrays.asList(mockTool("good1"), mockTool("bad1"),
+                mockTool("good2"), mockTool("bad2"));
+        final AtomicInteger successes = new AtomicInteger();
+        final InstallToolsBuildWrapper instance = new InstallToolsBuildWrapper("good1,bad1,good2,bad2") {
+            @Override
+            ToolInstallation installOne(ToolInstallation tool, Node node, EnvVars environment,
+                    TaskListener listener) throws IOException {
+                if (tool.getName().startsWith("bad")) {
+                    throw new IOException("Pretend failure of " + tool.getName());
+                }
+                successes.incrementAndGet();
+                return tool;
+            }
+        };
+        final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+        // When
+        final AbortException actual = assertThrows(AbortException.class, () -> instance.installAll(wanted,
+                mockNode, new EnvVars(), new StreamTaskListener(log, StandardCharsets.UTF_8)));
+
+        // Then
+        assertThat(actual.getMessage(), containsString("bad1"));
+        assertThat(successes.get(), equalTo(2));
+        final String actualLog = log.toString(StandardCharsets.UTF_8);
+        assertThat(actualLog, containsString("Pretend failure of bad1"));
+        assertThat(actualLog, containsString("Pretend failure of bad2"));
+    }
+
+    @Test
+    void installAllGivenLimitChangedOrNodeForgottenThenUsesNewLimit() throws Exception {
+        // Given
+        final String nodeName = "installAllGivenLimitChangedOrNodeForgottenThenUsesNewLimit";
+        final Node mockNode = mockNode(nodeName);
+        final List<ToolInstallation> wanted = Arrays.asList(mockTool("a"), mockTool("b"), mockTool("c"));
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final InstallToolsBuildWrapper instance = new InstallToolsBuildWrapper("a,b,c") {
+            @Override
+            ToolInstallation installOne(ToolInstallation tool, Node node, EnvVars environment,
+                    TaskListener listener) throws InterruptedException {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(100L);
+                running.decrementAndGet();
+                return tool;
+            }
+        };
+        final TaskListener log = new StreamTaskListener(new ByteArrayOutputStream(), StandardCharsets.UTF_8);
+        InstallToolsBuildWrapper.MAX_CONCURRENT_INSTALLS_PER_NODE = 1;
+        instance.installAll(wanted, mockNode, new EnvVars(), log);
+        InstallToolsBuildWrapper.MAX_CONCURRENT_INSTALLS_PER_NODE = 3;
+
+        // When
+        instance.installAll(wanted, mockNode, new EnvVars(), log);
+        InstallToolsBuildWrapper.forgetNode(nodeName);
+
+        // Then
+        assertThat(maxRunning.get(), equalTo(3));
+        assertThat(InstallToolsBuildWrapper.hasInstallSlots(nodeName), equalTo(false));
+    }
+
+    private static Node mockNode(String name) {
+        final Node mockNode = mock(Node.class);
+        when(mockNode.getNodeName()).thenReturn(name);
+        return mockNode;
+    }
+
+    private static ToolInstallation mockTool(String name) {
+        final ToolInstallation mockTool = mock(ToolInstallation.class);
+        when(mockTool.getName()).thenReturn(name);
+        when(mockTool.getHome()).thenReturn("/tools/" + name);
+        return mockTool;
+    }
+}
@@ -0,0 +1,85 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.contains;
+
+/** Unit test for the {@link InstallerHistory} class. */
+class InstallerHistoryTest {
+
+    private static final List<String> INSTALLERS = Arrays.asList("1:a", "2:b", "3:c", "4:d");
+
+    @Test
+    void prioritizeGivenNoHistoryThenReturnsConfiguredOrder() {
+        // Given
+        final InstallerHistory instance = new InstallerHistory(null);
+
+        // When
+        final List<String> actual = instance.prioritize("node", "tool", INSTALLERS, 1000000L);
+
+        // Then
+        assertThat(actual, contains("1:a", "2:b", "3:c", "4:d"));
+    }
+
+    @Test
+    void prioritizeGivenHistoryThenPutsFastestWorkingFirstAndFailuresLast() {
+        // Given
+        final long now = 1000000L;
+        final InstallerHistory instance = new InstallerHistory(null);
+        instance.record("node", "tool", "1:a", false, 10L, now);
+        instance.record("node", "tool", "3:c", true, 5000L, now);
+        instance.record("node", "tool", "4:d", true, 100L, now);
+        instance.record("otherNode", "tool", "2:b", false, 10L, now);
+
+        // When
+        final List<String> actual = instance.prioritize("node", "tool", INSTALLERS, now);
+
+        // Then
+        assertThat(actual, contains("4:d", "3:c", "2:b", "1:a"));
+    }
+
+    @Test
+    void prioritizeGivenRepeatedFailuresThenSkipsInstallerUntilCooldownExpires() {
+        // Given
+        final long then = 1000000L;
+        final InstallerHistory instance = new InstallerHistory(null);
+        for (int i = 0; i < InstallerHistory.FAILURES_BEFORE_COOLDOWN; i++) {
+            instance.record("node", "tool", "1:a", false, 10L, then);
+        }
+        final long later = then + TimeUnit.MINUTES.toMillis(InstallerHistory.COOLDOWN_MINUTES) + 1L;
+
+        // When
+        final List<String> actualDuringCooldown = instance.prioritize("node", "tool", INSTALLERS, then);
+        final List<String> actualAfterCooldown = instance.prioritize("node", "tool", INSTALLERS, later);
+        final List<String> actualWhenNothingElse = instance.prioritize("node", "tool", Arrays.asList("1:a"), then);
+
+        // Then
+        assertThat(actualDuringCooldown, contains("2:b", "3:c", "4:d"));
+        assertThat(actualAfterCooldown, contains("2:b", "3:c", "4:d", "1:a"));
+        assertThat(actualWhenNothingElse, contains("1:a"));
+    }
+
+    @Test
+    void retainNodesGivenDeletedNodeThenForgetsOnlyThatNode() {
+        // Given
+        final InstallerHistory instance = new InstallerHistory(null);
+        instance.record("", "tool", "1:a", true, 10L, 1000000L);
+        instance.record("keep", "tool", "1:a", true, 10L, 1000000L);
+        instance.record("deleted", "tool", "1:a", true, 10L, 1000000L);
+
+        // When
+        instance.retainNodes(Arrays.asList("", "keep"));
+
+        // Then
+        assertThat(instance.getStats("", "tool", "1:a"), notNullValue());
+        assertThat(instance.getStats("keep", "tool", "1:a"), notNullValue());
+        assertThat(instance.getStats("deleted", "tool", "1:a"), nullValue());
+    }
+}
@@ -1,9 +1,11 @@
 package io.jenkins.plugins.extratoolinstallers.installers;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.Functions;
 import hudson.Launcher;
+import hudson.Proc;
 import hudson.model.Node;
 import hudson.model.TaskListener;
 import hudson.tools.ToolInstallation;
@@ -13,14 +15,21 @@ import org.mockito.stubbing.Answer;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.Serial;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -31,6 +40,8 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /** Unit test for the {@link IsAlreadyOnPath} class. */
@@ -261,6 +272,141 @@ class IsAlreadyOnPathTest {
         assertThat(actual.getMaxVersion(), equalTo(instance.getVersionMax()));
     }
 
+    @Test
+    void performInstallationGivenFirstMatchingVersionThenSkipsEarlierExesWithWrongVersion() throws Exception {
+        // Given
+        DetectedVersionCache.clear();
+        final TestFOPInstaller instance = new TestFOPInstaller("somelabel");
+        instance.setExecutableName("multiexe");
+        instance.setVersionCmdString("multiexe\n--version");
+        instance.setVersionPatternString("Version (.*)");
+        instance.setVersionMin("2.0");
+        instance.setFirstMatchingVersion(true);
+        final File dir1 = new File("tmpDir1/");
+        final File dir2 = new File("tmpDir2/");
+        final File exeIn1 = new File(dir1, "multiexe");
+        final File exeIn2 = new File(dir2, "multiexe");
+        final File[] exes = { exeIn1, exeIn2 };
+        dir1.mkdirs();
+        dir2.mkdirs();
+        final Node mockNode = mock(Node.class);
+        when(mockNode.getRootPath()).thenReturn(new FilePath(new File("..")));
+        when(mockNode.createPath(anyString())).thenAnswer(i -> new FilePath(new File(i.getArgument(0, String.class))));
+        final TaskListener mockLog = mockTaskListener(new ArrayList<>());
+        when(mockNode.createLauncher(mockLog)).thenReturn(mock(Launcher.class));
+        final TestFOPCallable callable = new TestFOPCallable("multiexe", mockLog);
+        when(instance.mock.mkCallable("multiexe", mockLog)).thenReturn(callable);
+        doAnswer((Answer<Proc>) invocation -> {
+            final String[] cmd = invocation.getArgument(0, String[].class);
+            final OutputStream os = invocation.getArgument(1, OutputStream.class);
+            final String version = cmd[0].equals(exeIn1.getAbsolutePath()) ? "1.2.3" : "2.3.4";
+            os.write(("Version " + version + "\n").getBytes());
+            return new FinishedProc();
+        }).when(instance.mock).startCmd(any(String[].class), any(OutputStream.class));
+        try {
+            for (final File exe : exes) {
+                exe.createNewFile();
+                exe.setExecutable(true);
+            }
+            when(callable.mock.getPath()).thenReturn(dir1.getAbsolutePath() + File.pathSeparator + dir2.getAbsolutePath());
+            final FilePath expected = new FilePath(dir2.getAbsoluteFile());
+
+            // When
+            final FilePath actual = instance.performInstallation(mock(ToolInstallation.class), mockNode, mockLog);
+
+            // Then
+            assertThat(actual, equalTo(expected));
+        } finally {
+            for (final File exe : exes) {
+                exe.delete();
+            }
+            dir1.delete();
+            dir2.delete();
+        }
+    }
+
+    @Test
+    void performInstallationGivenInventoryEntryThenRevalidatesItBeforeTrustingIt() throws Exception {
+        // Given
+        final int originalDiscoveryPeriod = ToolInventory.DISCOVERY_PERIOD_MINUTES;
+        final TestFOPInstaller instance = new TestFOPInstaller("somelabel");
+        instance.setExecutableName("inventoriedexe");
+        final File dir = Files.createTempDirectory("inventory").toFile();
+        final File exe = new File(dir, "inventoriedexe");
+        exe.createNewFile();
+        exe.setExecutable(true);
+        exe.setLastModified(System.currentTimeMillis() - 60000L);
+        final Node mockNode = mock(Node.class);
+        when(mockNode.getNodeName()).thenReturn("inventoryNode");
+        when(mockNode.getRootPath()).thenReturn(new FilePath(dir));
+        when(mockNode.createPath(anyString())).thenAnswer(i -> new FilePath(new File(i.getArgument(0, String.class))));
+        final TaskListener mockLog = mockTaskListener(new ArrayList<>());
+        final ToolInventory inventory = ToolInventory.get();
+        final String key = instance.getInventoryKey();
+        try {
+            ToolInventory.DISCOVERY_PERIOD_MINUTES = 60;
+            inventory.record("inventoryNode", key, new ToolInventory.Entry("inventoriedexe",
+                    FoundExecutable.of(exe, "whatever"), null, System.currentTimeMillis()));
+
+            // When unchanged, Then we use what's in the inventory without searching
+            assertThat(instance.performInstallation(mock(ToolInstallation.class), mockNode, mockLog),
+                    equalTo(new FilePath(dir)));
+            verify(instance.mock, never()).mkCallable(anyString(), any());
+
+            // When upgraded or uninstalled, Then we search again
+            exe.setLastModified(System.currentTimeMillis());
+            final TestFOPCallable callable = new TestFOPCallable("inventoriedexe", mockLog);
+            when(callable.mock.getPath()).thenReturn(dir.getAbsolutePath());
+            when(instance.mock.mkCallable("inventoriedexe", mockLog)).thenReturn(callable);
+            assertThat(instance.performInstallation(mock(ToolInstallation.class), mockNode, mockLog),
+                    equalTo(new FilePath(dir)));
+            verify(instance.mock).mkCallable("inventoriedexe", mockLog);
+            assertThat(inventory.lookup("inventoryNode", key).getExecutable().getLastModified(),
+                    equalTo(exe.lastModified()));
+        } finally {
+            ToolInventory.DISCOVERY_PERIOD_MINUTES = originalDiscoveryPeriod;
+            inventory.forget("inventoryNode", key);
+            exe.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    void runCommandOnNodeGivenVersionCmdThatNeverFinishesThenTimesOutAndKillsIt() throws Exception {
+        // Given
+        final AtomicBoolean alive = new AtomicBoolean(true);
+        final Proc neverFinishes = mock(Proc.class);
+        when(neverFinishes.isAlive()).thenAnswer(i -> alive.get());
+        doAnswer(i -> {
+            alive.set(false);
+            return null;
+        }).when(neverFinishes).kill();
+        final IsAlreadyOnPath instance = new IsAlreadyOnPath("somelabel") {
+            @Override
+            @NonNull
+            Proc startCommandOnNode(Launcher launcher, FilePath pwd, String[] cmd, VersionCmdOutput output) {
+                return neverFinishes;
+            }
+        };
+        instance.setVersionCmdTimeoutSeconds(1);
+        final VersionCmdOutput output = new VersionCmdOutput(Pattern.compile("([0-9.]+)"));
+
+        // When
+        final long start = System.nanoTime();
+        final IsAlreadyOnPath.VersionCmdTimedOutException ex = assertThrows(
+                IsAlreadyOnPath.VersionCmdTimedOutException.class,
+                () -> instance.runCommandOnNode(mock(Launcher.class), null, new String[] { "licensed", "--version" },
+                        output));
+        final long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Then
+        verify(neverFinishes).kill();
+        assertThat(durationMillis < 30000L, equalTo(true));
+        assertThat(output.getVersion(), nullValue());
+        assertThat(ex.getMessage(), equalTo(Messages.IsAlreadyOnPath_versionCmdTimedOut(1)));
+        assertThat(AnyOfInstaller.isNotWorthRetrying(ex), equalTo(false));
+    }
+
     @Test
     void parseVersionCmdOutputForVersionGivenNonMatchingPatternThenReturnsNull() {
         // Given
@@ -356,6 +502,130 @@ class IsAlreadyOnPathTest {
         }
     }
 
+    @Test
+    void findAllOnPathGivenSeveralExesThenFindsFirstOfEachAndOmitsMissing() throws Exception {
+        // Given
+        final File dir1 = new File("tmpDir1/");
+        final File dir2 = new File("tmpDir2/");
+        final File exeAIn1 = new File(dir1, "exeA");
+        final File exeAIn2 = new File(dir2, "exeA");
+        final File exeBIn2 = new File(dir2, "exeB");
+        final File[] exes = { exeAIn1, exeAIn2, exeBIn2 };
+        dir1.mkdirs();
+        dir2.mkdirs();
+        try {
+            for (final File exe : exes) {
+                exe.createNewFile();
+                exe.setExecutable(true);
+            }
+            final String path = dir1.getAbsolutePath() + File.pathSeparator + dir2.getAbsolutePath();
+
+            // When
+            final Map<String, FoundExecutable> actual = FindOnPathCallable
+                    .findAllOnPath(Arrays.asList("exeA", "exeB", "exeC"), path);
+
+            // Then
+            assertThat(actual.keySet(), contains("exeA", "exeB"));
+            assertThat(actual.get("exeA").getAbsolutePath(), equalTo(exeAIn1.getAbsolutePath()));
+            assertThat(actual.get("exeB").getAbsolutePath(), equalTo(exeBIn2.getAbsolutePath()));
+        } finally {
+            for (final File exe : exes) {
+                exe.delete();
+            }
+            dir1.delete();
+            dir2.delete();
+        }
+    }
+
+    @Test
+    void calcCandidateNamesGivenPathExtThenAddsExtensionsWhereMissing() {
+        // Given
+        final String pathExt = ".COM;.EXE;;.CMD";
+        final List<String> alternatives = Arrays.asList("gcc.cmd", "", "cc");
+        final List<String> expected = Arrays.asList("gcc.COM", "gcc.EXE", "gcc.CMD", "gcc.cmd", "cc.COM", "cc.EXE",
+                "cc.CMD");
+
+        // When
+        final List<String> actual = FindOnPathCallable.calcCandidateNames("gcc", alternatives, pathExt);
+
+        // Then
+        assertThat(actual, equalTo(expected));
+    }
+
+    @Test
+    void calcCandidateNamesGivenNoPathExtThenReturnsNamesAsIs() {
+        // When
+        final List<String> actual = FindOnPathCallable.calcCandidateNames("gcc", Arrays.asList("cc"), null);
+
+        // Then
+        assertThat(actual, equalTo(Arrays.asList("gcc", "cc")));
+    }
+
+    @Test
+    void findOnPathGivenCandidatesThenFindsFirstDirContainingAnyOfThem() throws Exception {
+        // Given
+        final File dir1 = new File("tmpDir1/");
+        final File dir2 = new File("tmpDir2/");
+        final File cmdIn1 = new File(dir1, "gcc.cmd");
+        final File exeIn2 = new File(dir2, "gcc.exe");
+        final File[] exes = { cmdIn1, exeIn2 };
+        dir1.mkdirs();
+        dir2.mkdirs();
+        try {
+            for (final File exe : exes) {
+                exe.createNewFile();
+                exe.setExecutable(true);
+            }
+            final String path = dir1.getAbsolutePath() + File.pathSeparator + dir2.getAbsolutePath();
+            final List<String> candidates = FindOnPathCallable.calcCandidateNames("gcc", null, ".exe;.cmd");
+
+            // When
+            final FoundExecutable actual = FindOnPathCallable.findOnPath(candidates, "gcc", path);
+
+            // Then
+            assertThat(actual.getAbsolutePath(), equalTo(cmdIn1.getAbsolutePath()));
+        } finally {
+            for (final File exe : exes) {
+                exe.delete();
+            }
+            dir1.delete();
+            dir2.delete();
+        }
+    }
+
+    @Test
+    void getEffectivePathGivenOverridesAndExtrasThenAppliesThemInOrder() {
+        // Given
+        final String sep = File.pathSeparator;
+        final TestFOPCallable callable = new TestFOPCallable("someexe", null);
+        when(callable.mock.getPath()).thenReturn("agentDir");
+        final EnvVars globalOverrides = new EnvVars("PATH+GLOBAL", "globalDir", "EXTRAS", "extrasDir");
+        final EnvVars nodeOverrides = new EnvVars("PATH+NODE", "nodeDir");
+        callable.setSearchPathOverrides(Arrays.asList(globalOverrides, nodeOverrides),
+                Arrays.asList("extraDir", "${EXTRAS}/bin", ""));
+        final String expected = "nodeDir" + sep + "globalDir" + sep + "agentDir" + sep + "extraDir" + sep
+                + "extrasDir/bin";
+
+        // When
+        final String actual = callable.getEffectivePath();
+
+        // Then
+        assertThat(actual, equalTo(expected));
+    }
+
+    @Test
+    void getEffectivePathGivenNoOverridesThenReturnsPath() {
+        // Given
+        final TestFOPCallable callable = new TestFOPCallable("someexe", null);
+        when(callable.mock.getPath()).thenReturn("agentDir");
+
+        // When
+        final String actual = callable.getEffectivePath();
+
+        // Then
+        assertThat(actual, equalTo("agentDir"));
+    }
+
     private FilePath doPerformInstallationSucceeds(final TestFOPInstaller instance, final File exeParentDir,
             final FilePath expected, final Boolean mkFileNotDir, final boolean setExecutable)
             throws IOException, InterruptedException {
@@ -430,6 +700,38 @@ class IsAlreadyOnPathTest {
         return tl;
     }
 
+    /** A {@link Proc} that has already finished. */
+    private static class FinishedProc extends Proc {
+        @Override
+        public boolean isAlive() {
+            return false;
+        }
+
+        @Override
+        public void kill() {
+        }
+
+        @Override
+        public int join() {
+            return 0;
+        }
+
+        @Override
+        public InputStream getStdout() {
+            return null;
+        }
+
+        @Override
+        public InputStream getStderr() {
+            return null;
+        }
+
+        @Override
+        public OutputStream getStdin() {
+            return null;
+        }
+    }
+
     private static class TestFOPCallable extends FindOnPathCallable {
         @Serial
         private static final long serialVersionUID = 2L;
@@ -454,6 +756,7 @@ class IsAlreadyOnPathTest {
         private interface IMock {
             FindOnPathCallable mkCallable(String exeName, TaskListener logOrNull);
             void launchCmd(String[] cmd, OutputStream output);
+            Proc startCmd(String[] cmd, OutputStream output);
         }
 
         public final IMock mock = mock(IMock.class);
@@ -470,8 +773,15 @@ class IsAlreadyOnPathTest {
 
         @Override
         void runCommandOnNode(final Launcher launcher, final FilePath pwd, final String[] cmd,
-                final OutputStream output) {
+                final VersionCmdOutput output) {
             mock.launchCmd(cmd, output);
         }
+
+        @Override
+        @NonNull
+        Proc startCommandOnNode(final Launcher launcher, final FilePath pwd, final String[] cmd,
+                final VersionCmdOutput output) {
+            return mock.startCmd(cmd, output);
+        }
     }
 }
@@ -0,0 +1,119 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/** Unit test for the {@link PathIndex} class. */
+class PathIndexTest {
+
+    @TempDir
+    private File tmpDir;
+
+    @AfterEach
+    void tearDown() {
+        PathIndex.clear();
+    }
+
+    @Test
+    void mightContainGivenPresentFileThenReturnsTrue() throws Exception {
+        // Given
+        final String dir = tmpDir.getAbsolutePath();
+        new File(tmpDir, "someexe").createNewFile();
+
+        // When
+        final boolean actual = PathIndex.mightContain(dir, "someexe");
+
+        // Then
+        assertThat(actual, equalTo(true));
+    }
+
+    @Test
+    void mightContainGivenAbsentFileThenReturnsFalse() throws Exception {
+        // Given
+        final String dir = tmpDir.getAbsolutePath();
+        new File(tmpDir, "someexe").createNewFile();
+
+        // When
+        final boolean actual = PathIndex.mightContain(dir, "someotherexe");
+
+        // Then
+        assertThat(actual, equalTo(false));
+    }
+
+    @Test
+    void mightContainGivenNameWithinSubdirectoryThenReturnsTrue() throws Exception {
+        // Given
+        final String dir = tmpDir.getAbsolutePath();
+        new File(tmpDir, "bin").mkdir();
+        new File(tmpDir, "bin" + File.separator + "someexe").createNewFile();
+
+        // When
+        final boolean actual = PathIndex.mightContain(dir, "bin/someexe");
+        final boolean actualWithSeparator = PathIndex.mightContain(dir, "bin" + File.separator + "someexe");
+
+        // Then
+        assertThat(actual, equalTo(true));
+        assertThat(actualWithSeparator, equalTo(true));
+    }
+
+    @Test
+    void mightContainGivenFileAddedAfterDirWasIndexedThenReturnsTrue() throws Exception {
+        // Given
+        final String dir = tmpDir.getAbsolutePath();
+        assertThat(PathIndex.mightContain(dir, "someexe"), equalTo(false));
+        new File(tmpDir, "someexe").createNewFile();
+
+        // When
+        final boolean actual = PathIndex.mightContain(dir, "someexe");
+
+        // Then
+        assertThat(actual, equalTo(true));
+    }
+
+    @Test
+    void mightContainGivenUnchangedOldDirThenReusesListing() throws Exception {
+        // Given
+        final File exe = new File(tmpDir, "someexe");
+        exe.createNewFile();
+        final long longAgo = System.currentTimeMillis() - 60000L;
+        tmpDir.setLastModified(longAgo);
+        final String dir = tmpDir.getAbsolutePath();
+        assertThat(PathIndex.mightContain(dir, "someexe"), equalTo(true));
+        // sneakily remove the file without the dir's timestamp changing
+        exe.delete();
+        tmpDir.setLastModified(longAgo);
+
+        // When
+        final boolean actual = PathIndex.mightContain(dir, "someexe");
+
+        // Then
+        assertThat(actual, equalTo(true));
+    }
+
+    @Test
+    void mightContainGivenMissingDirThenReturnsFalse() {
+        // Given
+        final String dir = new File(tmpDir, "doesNotExist").getAbsolutePath();
+
+        // When
+        final boolean actual = PathIndex.mightContain(dir, "someexe");
+
+        // Then
+        assertThat(actual, equalTo(false));
+    }
+
+    @Test
+    void mightContainGivenRelativeDirThenReturnsTrue() {
+        // When
+        final boolean actual = PathIndex.mightContain("relative", "someexe");
+
+        // Then
+        assertThat(actual, equalTo(true));
+    }
+}
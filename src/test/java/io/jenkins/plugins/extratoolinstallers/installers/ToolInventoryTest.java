@@ -0,0 +1,126 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import hudson.XmlFile;
+import hudson.model.labels.LabelAtom;
+import hudson.util.XStream2;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+/** Unit test for the {@link ToolInventory} class. */
+class ToolInventoryTest {
+
+    @TempDir
+    private File tmpDir;
+
+    @Test
+    void lookupGivenRecordedEntryThenReturnsIt() {
+        // Given
+        final ToolInventory instance = new ToolInventory(null);
+        final ToolInventory.Entry expected = mkEntry("/usr/bin/foo", "1.2.3", System.currentTimeMillis());
+        instance.record("node1", "key", expected);
+
+        // When
+        final ToolInventory.Entry actual = instance.lookup("node1", "key");
+        final ToolInventory.Entry otherNode = instance.lookup("node2", "key");
+        final ToolInventory.Entry otherKey = instance.lookup("node1", "otherKey");
+
+        // Then
+        assertThat(actual, equalTo(expected));
+        assertThat(otherNode, nullValue());
+        assertThat(otherKey, nullValue());
+    }
+
+    @Test
+    void lookupGivenStaleEntryThenReturnsNull() {
+        // Given
+        final ToolInventory instance = new ToolInventory(null);
+        final long longAgo = System.currentTimeMillis()
+                - TimeUnit.MINUTES.toMillis(2L * Math.max(1, ToolInventory.DISCOVERY_PERIOD_MINUTES) + 1L);
+        instance.record("node1", "key", mkEntry("/usr/bin/foo", "1.2.3", longAgo));
+
+        // When
+        final ToolInventory.Entry actual = instance.lookup("node1", "key");
+
+        // Then
+        assertThat(actual, nullValue());
+    }
+
+    @Test
+    void loadGivenSavedInventoryThenRestoresEntries() {
+        // Given
+        final File file = new File(tmpDir, "inventory.xml");
+        final ToolInventory original = new ToolInventory(new XmlFile(new XStream2(), file));
+        original.record("node1", "key", mkEntry("/usr/bin/foo", "1.2.3", System.currentTimeMillis()));
+        original.record("node2", "key", mkEntry("/opt/foo/bin/foo", null, System.currentTimeMillis()));
+        original.save();
+        final ToolInventory instance = new ToolInventory(new XmlFile(new XStream2(), file));
+
+        // When
+        instance.load();
+
+        // Then
+        final ToolInventory.Entry actual1 = instance.lookup("node1", "key");
+        assertThat(actual1, not(nullValue()));
+        assertThat(actual1.getExecutable().getAbsolutePath(), equalTo("/usr/bin/foo"));
+        assertThat(actual1.getVersion(), equalTo("1.2.3"));
+        final ToolInventory.Entry actual2 = instance.lookup("node2", "key");
+        assertThat(actual2, not(nullValue()));
+        assertThat(actual2.getVersion(), nullValue());
+    }
+
+    @Test
+    void retainNodesGivenRemovedNodeThenForgetsIt() {
+        // Given
+        final ToolInventory instance = new ToolInventory(null);
+        instance.record("node1", "key", mkEntry("/usr/bin/foo", "1", System.currentTimeMillis()));
+        instance.record("node2", "key", mkEntry("/usr/bin/foo", "2", System.currentTimeMillis()));
+
+        // When
+        instance.retainNodes(Collections.singleton("node2"));
+
+        // Then
+        assertThat(instance.getEntries("node1").isEmpty(), equalTo(true));
+        assertThat(instance.getEntries("node2").size(), equalTo(1));
+    }
+
+    @Test
+    void getLabelsGivenEntriesChangeThenReturnsLabelsWorkedOutWhenTheyChanged() {
+        // Given
+        final ToolInventory instance = new ToolInventory(null);
+        instance.record("node1", "key", mkEntry("/usr/bin/foo", "1.2", System.currentTimeMillis()));
+        instance.record("node2", "key", mkEntry("/usr/bin/foo", "2", System.currentTimeMillis()));
+
+        // When
+        final Set<LabelAtom> recorded = instance.getLabels("node1");
+        final Set<LabelAtom> askedAgain = instance.getLabels("node1");
+        instance.forget("node1", "key");
+        final Set<LabelAtom> afterForget = instance.getLabels("node1");
+        instance.retainNodes(Collections.singleton("node1"));
+        final Set<LabelAtom> afterNodeRemoved = instance.getLabels("node2");
+
+        // Then
+        assertThat(recorded, contains(new LabelAtom("tool:foo"), new LabelAtom("tool:foo:1"),
+                new LabelAtom("tool:foo:1.2")));
+        assertThat(askedAgain, sameInstance(recorded));
+        assertThat(afterForget, empty());
+        assertThat(afterNodeRemoved, empty());
+    }
+
+    private static ToolInventory.Entry mkEntry(String path, String version, long when) {
+        return new ToolInventory.Entry("foo", new FoundExecutable(path, 1234L, 5678L, 42), version, when);
+    }
+}
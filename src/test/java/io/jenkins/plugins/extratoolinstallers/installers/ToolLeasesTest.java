@@ -0,0 +1,95 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+
+/** Unit test for the {@link ToolLeases} class. */
+class ToolLeasesTest {
+    @TempDir
+    File tmpDir;
+
+    @Test
+    void releaseAllGivenLeasesThenReleasesOnlyThatOwnersLeases() {
+        // Given
+        final ToolLeases instance = new ToolLeases();
+        instance.acquire("job#1", "node", "/tools/a", "version-1");
+        instance.acquire("job#2", "node", "/tools/a", "version-1");
+        instance.acquire("job#2", "node", "/tools/a", "version-2");
+        instance.acquire("job#1", "other", "/tools/a", "version-3");
+
+        // When
+        final List<ToolLeases.Lease> actual = instance.releaseAll("job#2");
+
+        // Then
+        assertThat(actual, containsInAnyOrder(new ToolLeases.Lease("node", "/tools/a", "version-1"),
+                new ToolLeases.Lease("node", "/tools/a", "version-2")));
+        assertThat(instance.getLeasedVersions("node", "/tools/a"), equalTo(Collections.singleton("version-1")));
+        assertThat(instance.getLeasedVersions("other", "/tools/a"), equalTo(Collections.singleton("version-3")));
+        instance.releaseAll("job#1");
+        assertThat(instance.getLeasedVersions("node", "/tools/a"), empty());
+    }
+
+    @Test
+    void deleteUnusedVersionsGivenVersionsThenDeletesOnlyOldUnleasedNonCurrentOnes() throws Exception {
+        // Given
+        final long cutoff = System.currentTimeMillis() - 60000L;
+        final File current = mkVersion("version-4", cutoff - 1000L);
+        final File leased = mkVersion("version-3", cutoff - 1000L);
+        final File recentlyUsed = mkVersion("version-2", cutoff + 1000L);
+        final File unused = mkVersion("version-1", cutoff - 1000L);
+        final File notAVersion = mkVersion("bin", cutoff - 1000L);
+        Files.write(new File(tmpDir, AuthenticatedZipExtractionInstaller.CURRENT_VERSION_FILENAME).toPath(),
+                "version-4\n".getBytes(StandardCharsets.UTF_8));
+        final ToolLeases.DeleteUnusedVersions instance = new ToolLeases.DeleteUnusedVersions(
+                new HashSet<>(Arrays.asList("version-3")), cutoff);
+
+        // When
+        final List<String> actual = instance.invoke(tmpDir, null);
+
+        // Then
+        assertThat(actual, equalTo(Collections.singletonList(unused.getAbsolutePath())));
+        assertThat(unused.exists(), equalTo(false));
+        assertThat(current.exists(), equalTo(true));
+        assertThat(leased.exists(), equalTo(true));
+        assertThat(recentlyUsed.exists(), equalTo(true));
+        assertThat(notAVersion.exists(), equalTo(true));
+    }
+
+    @Test
+    void deleteUnusedVersionsGivenNoCurrentVersionThenDeletesNothing() throws Exception {
+        // Given
+        final File unused = mkVersion("version-1", 0L);
+        final ToolLeases.DeleteUnusedVersions instance = new ToolLeases.DeleteUnusedVersions(
+                Collections.emptySet(), System.currentTimeMillis());
+
+        // When
+        final List<String> actual = instance.invoke(tmpDir, null);
+
+        // Then
+        assertThat(actual, empty());
+        assertThat(unused.exists(), equalTo(true));
+    }
+
+    private File mkVersion(String name, long lastUsed) throws IOException {
+        final File version = new File(tmpDir, name);
+        Files.createDirectories(version.toPath());
+        final File lastUsedFile = new File(version, UnusedToolInstallationsCleaner.LAST_USED_FILENAME);
+        Files.write(lastUsedFile.toPath(), new byte[0]);
+        lastUsedFile.setLastModified(lastUsed);
+        return version;
+    }
+}
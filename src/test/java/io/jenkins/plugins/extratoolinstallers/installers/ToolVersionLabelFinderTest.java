@@ -0,0 +1,44 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+/** Unit test for the {@link ToolVersionLabelFinder} class. */
+class ToolVersionLabelFinderTest {
+
+    @Test
+    void calcLabelNamesGivenVersionsThenReturnsLabelForEachVersionPrefix() {
+        // Given
+        final ToolInventory.Entry gcc = mkEntry("gcc", "12.3.0");
+        final ToolInventory.Entry make = mkEntry("make", null);
+
+        // When
+        final Set<String> actual = ToolVersionLabelFinder.calcLabelNames(Arrays.asList(gcc, make));
+
+        // Then
+        assertThat(actual, contains("tool:gcc", "tool:gcc:12", "tool:gcc:12.3", "tool:gcc:12.3.0", "tool:make"));
+    }
+
+    @Test
+    void calcLabelNamesGivenNothingFoundThenReturnsNothing() {
+        // Given
+
+        // When
+        final Set<String> actual = ToolVersionLabelFinder.calcLabelNames(Collections.emptyList());
+
+        // Then
+        assertThat(actual, empty());
+    }
+
+    private static ToolInventory.Entry mkEntry(String exeName, String version) {
+        return new ToolInventory.Entry(exeName, new FoundExecutable("/usr/bin/" + exeName, 1L, 2L, 3), version,
+                System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,123 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import hudson.Functions;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/** Unit test for the {@link UnusedToolInstallationsCleaner} class. */
+class UnusedToolInstallationsCleanerTest {
+    @TempDir
+    File toolsDir;
+
+    @Test
+    void invokeGivenInstallationsThenDeletesOnlyThoseUnusedSinceCutoff() throws Exception {
+        // Given
+        final long cutoff = System.currentTimeMillis() - 60000L;
+        final File unused = mkInstallation("type/unused", cutoff - 1000L);
+        final File recentlyUsed = mkInstallation("type/recent", cutoff + 1000L);
+        final File otherTypeUnused = mkInstallation("other/unused", cutoff - 1000L);
+        final File tooShallow = mkInstallation("shallow", cutoff - 1000L);
+        final File tooDeep = mkInstallation("type/parent/tooDeep", cutoff - 1000L);
+        final UnusedToolInstallationsCleaner.DeleteUnusedInstallations instance
+                = new UnusedToolInstallationsCleaner.DeleteUnusedInstallations(cutoff, Collections.emptySet());
+
+        // When
+        final List<String> actual = instance.invoke(toolsDir, null);
+
+        // Then
+        assertThat(actual, containsInAnyOrder(unused.getAbsolutePath(), otherTypeUnused.getAbsolutePath()));
+        assertThat(unused.exists(), equalTo(false));
+        assertThat(otherTypeUnused.exists(), equalTo(false));
+        assertThat(recentlyUsed.exists(), equalTo(true));
+        assertThat(tooShallow.exists(), equalTo(true));
+        assertThat(tooDeep.exists(), equalTo(true));
+    }
+
+    @Test
+    void invokeGivenInstallationsWithoutLastUsedThenKeepsThem() throws Exception {
+        // Given
+        final File notOurs = new File(toolsDir, "type/notOurs");
+        mkFile(new File(notOurs, "bin/tool"), 0L);
+        final UnusedToolInstallationsCleaner.DeleteUnusedInstallations instance
+                = new UnusedToolInstallationsCleaner.DeleteUnusedInstallations(Long.MAX_VALUE,
+                        Collections.emptySet());
+
+        // When
+        final List<String> actual = instance.invoke(toolsDir, null);
+
+        // Then
+        assertThat(actual, empty());
+        assertThat(new File(notOurs, "bin/tool").exists(), equalTo(true));
+    }
+
+    @Test
+    void invokeGivenLeasedInstallationsThenKeepsThem() throws Exception {
+        // Given
+        final long cutoff = System.currentTimeMillis() - 60000L;
+        final File leased = mkInstallation("type/leased", cutoff - 1000L);
+        final File containsLeased = mkInstallation("type/containsLeased", cutoff - 1000L);
+        final File unused = mkInstallation("type/unused", cutoff - 1000L);
+        final UnusedToolInstallationsCleaner.DeleteUnusedInstallations instance
+                = new UnusedToolInstallationsCleaner.DeleteUnusedInstallations(cutoff, new HashSet<>(
+                        Arrays.asList(leased.getAbsolutePath(),
+                                new File(containsLeased, "sub").getAbsolutePath())));
+
+        // When
+        final List<String> actual = instance.invoke(toolsDir, null);
+
+        // Then
+        assertThat(actual, containsInAnyOrder(unused.getAbsolutePath()));
+        assertThat(leased.exists(), equalTo(true));
+        assertThat(containsLeased.exists(), equalTo(true));
+    }
+
+    @Test
+    void invokeGivenInstallationLeasedViaSymlinkThenKeepsIt() throws Exception {
+        // Given
+        assumeFalse(Functions.isWindows(), "Symlinks need special privileges on Windows");
+        final long cutoff = System.currentTimeMillis() - 60000L;
+        final File leased = mkInstallation("real/type/leased", cutoff - 1000L);
+        final File unused = mkInstallation("real/type/unused", cutoff - 1000L);
+        final File realToolsDir = new File(toolsDir, "real");
+        final File linkedToolsDir = new File(toolsDir, "linked");
+        Files.createSymbolicLink(linkedToolsDir.toPath(), realToolsDir.toPath());
+        final UnusedToolInstallationsCleaner.DeleteUnusedInstallations instance
+                = new UnusedToolInstallationsCleaner.DeleteUnusedInstallations(cutoff,
+                        Collections.singleton(new File(linkedToolsDir, "type/leased").getAbsolutePath()));
+
+        // When
+        final List<String> actual = instance.invoke(realToolsDir, null);
+
+        // Then
+        assertThat(actual, containsInAnyOrder(unused.getAbsolutePath()));
+        assertThat(leased.exists(), equalTo(true));
+    }
+
+    private File mkInstallation(String relativePath, long lastUsedMillis) throws IOException {
+        final File installation = new File(toolsDir, relativePath);
+        mkFile(new File(installation, "bin/tool"), lastUsedMillis);
+        mkFile(new File(installation, UnusedToolInstallationsCleaner.LAST_USED_FILENAME), lastUsedMillis);
+        return installation;
+    }
+
+    private static void mkFile(File file, long lastModifiedMillis) throws IOException {
+        file.getParentFile().mkdirs();
+        file.createNewFile();
+        file.setLastModified(lastModifiedMillis);
+    }
+}
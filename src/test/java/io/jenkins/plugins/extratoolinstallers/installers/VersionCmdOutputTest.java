@@ -0,0 +1,76 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/** Unit test for the {@link VersionCmdOutput} class. */
+class VersionCmdOutputTest {
+    private static final Pattern VERSION_PATTERN = Pattern.compile("Version ([0-9.]*).*");
+
+    @Test
+    void writeGivenMatchingLineThenMatches() throws Exception {
+        // Given
+        final VersionCmdOutput instance = new VersionCmdOutput(VERSION_PATTERN);
+
+        // When
+        instance.write("SomeExe\r\nVersion 1.2.3 (build 4)\nVersion 5.6\n".getBytes(StandardCharsets.UTF_8));
+
+        // Then
+        assertThat(instance.hasMatched(), equalTo(true));
+        assertThat(instance.awaitMatch(1, TimeUnit.MILLISECONDS), equalTo(true));
+        assertThat(instance.getVersion(), equalTo("1.2.3"));
+    }
+
+    @Test
+    void closeGivenUnterminatedMatchingLineThenMatches() {
+        // Given
+        final VersionCmdOutput instance = new VersionCmdOutput(VERSION_PATTERN);
+        instance.write("SomeExe\nVersion 1.2.3".getBytes(StandardCharsets.UTF_8), 0, 20);
+        assertThat(instance.hasMatched(), equalTo(false));
+
+        // When
+        instance.close();
+
+        // Then
+        assertThat(instance.getVersion(), equalTo("1.2.3"));
+    }
+
+    @Test
+    void writeGivenNoMatchingLineThenDoesNotMatch() throws Exception {
+        // Given
+        final VersionCmdOutput instance = new VersionCmdOutput(VERSION_PATTERN);
+
+        // When
+        instance.write("SomeExe\nBuild 2022\n".getBytes(StandardCharsets.UTF_8));
+        instance.close();
+
+        // Then
+        assertThat(instance.hasMatched(), equalTo(false));
+        assertThat(instance.getVersion(), nullValue());
+    }
+
+    @Test
+    void writeGivenOverlongLineThenTruncatesIt() throws Exception {
+        // Given
+        final int oldMaxBytes = VersionCmdOutput.MAX_BYTES;
+        VersionCmdOutput.MAX_BYTES = 11;
+        try {
+            final VersionCmdOutput instance = new VersionCmdOutput(VERSION_PATTERN);
+
+            // When
+            instance.write("Version 1.2.3.4.5.6\n".getBytes(StandardCharsets.UTF_8));
+
+            // Then
+            assertThat(instance.getVersion(), equalTo("1.2"));
+        } finally {
+            VersionCmdOutput.MAX_BYTES = oldMaxBytes;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the old and new ways of checking a version against the configured
+ * minimum and maximum. Run using {@link BenchmarkRunner}.
+ */
+@State(Scope.Benchmark)
+public class VersionComparisonBenchmark {
+    private String versionMin;
+    private String versionMax;
+    private String detectedVersionString;
+    private Version detectedVersion;
+    private VersionRange compiledRange;
+
+    @Setup
+    public void setup() {
+        versionMin = "1.8.0";
+        versionMax = "11.0.99";
+        detectedVersionString = "11.0.21";
+        detectedVersion = Version.parse(detectedVersionString);
+        compiledRange = VersionRange.between(versionMin, versionMax);
+    }
+
+    @Benchmark
+    public int legacyCheckVersionIsInRange() {
+        return legacyCheckVersionIsInRange(versionMin, versionMax, detectedVersionString);
+    }
+
+    @Benchmark
+    public int currentCheckVersionIsInRange() {
+        return IsAlreadyOnPath.checkVersionIsInRange(versionMin, versionMax, detectedVersionString);
+    }
+
+    @Benchmark
+    public int compiledRangeWithParsing() {
+        return compiledRange.check(Version.parse(detectedVersionString));
+    }
+
+    @Benchmark
+    public int compiledRangeWithoutParsing() {
+        return compiledRange.check(detectedVersion);
+    }
+
+    /*
+     * How IsAlreadyOnPath used to compare versions, for comparison.
+     */
+
+    private static int legacyCheckVersionIsInRange(String versionMin, String versionMax, String actualVersion) {
+        if (versionMin != null && !versionMin.isEmpty()) {
+            if (legacyCompareVersions(actualVersion, versionMin) < 0) {
+                return -1;
+            }
+        }
+        if (versionMax != null && !versionMax.isEmpty()) {
+            if (legacyCompareVersions(actualVersion, versionMax) > 0) {
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    private static int legacyCompareVersions(String compoundVersionA, String compoundVersionB) {
+        final String[] splitA = compoundVersionA == null ? new String[0] : compoundVersionA.split("\\.", -1);
+        final String[] splitB = compoundVersionB == null ? new String[0] : compoundVersionB.split("\\.", -1);
+        final int highestLength = Math.max(splitA.length, splitB.length);
+        for (int i = 0; i < highestLength; i++) {
+            final String partA = splitA.length > i ? splitA[i] : null;
+            final String partB = splitB.length > i ? splitB[i] : null;
+            final int result;
+            if (partA == null) {
+                result = partB == null ? 0 : -1;
+            } else if (partB == null) {
+                result = 1;
+            } else {
+                result = legacyCompareVersionParts(partA, partB);
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private static int legacyCompareVersionParts(String a, String b) {
+        final int ai = legacyFindIndexOfFirstNonnumericalCharacter(a);
+        final int bi = legacyFindIndexOfFirstNonnumericalCharacter(b);
+        final String aNumberString = ai >= 0 ? a.substring(0, ai) : a;
+        final String aRemainder = ai >= 0 ? a.substring(ai) : "";
+        final String bNumberString = bi >= 0 ? b.substring(0, bi) : b;
+        final String bRemainder = bi >= 0 ? b.substring(bi) : "";
+        final long aNumber = aNumberString.isEmpty() ? -1L : Long.parseLong(aNumberString);
+        final long bNumber = bNumberString.isEmpty() ? -1L : Long.parseLong(bNumberString);
+        if (aNumber > bNumber) {
+            return 1;
+        }
+        if (aNumber < bNumber) {
+            return -1;
+        }
+        return aRemainder.compareTo(bRemainder);
+    }
+
+    private static int legacyFindIndexOfFirstNonnumericalCharacter(String s) {
+        final int l = s.length();
+        for (int i = 0; i < l; i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return i;
+            }
+        }
+        return -l;
+    }
+}
@@ -0,0 +1,72 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the old and new ways of parsing version command output. Run using
+ * {@link BenchmarkRunner}.
+ */
+@State(Scope.Benchmark)
+public class VersionParsingBenchmark {
+    private Pattern versionPattern;
+    private String shortOutput;
+    private String longOutput;
+
+    @Setup
+    public void setup() {
+        versionPattern = Pattern.compile("^gcc version ([0-9]+\\.[0-9]+\\.[0-9]+).*$");
+        shortOutput = "Using built-in specs.\nTarget: x86_64-linux-gnu\nThread model: posix\n"
+                + "gcc version 12.2.0 (Debian 12.2.0-14)\n";
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            sb.append("COLLECT_GCC_OPTIONS='-v' '-mtune=generic' '-march=x86-64' line ").append(i).append('\n');
+        }
+        sb.append(shortOutput);
+        longOutput = sb.toString();
+    }
+
+    @Benchmark
+    public String legacyShortOutput() {
+        return legacyParseVersionCmdOutputForVersion(versionPattern, shortOutput);
+    }
+
+    @Benchmark
+    public String currentShortOutput() {
+        return IsAlreadyOnPath.parseVersionCmdOutputForVersion(versionPattern, shortOutput);
+    }
+
+    @Benchmark
+    public String legacyLongOutput() {
+        return legacyParseVersionCmdOutputForVersion(versionPattern, longOutput);
+    }
+
+    @Benchmark
+    public String currentLongOutput() {
+        return IsAlreadyOnPath.parseVersionCmdOutputForVersion(versionPattern, longOutput);
+    }
+
+    /** How IsAlreadyOnPath used to parse the output, for comparison. */
+    private static String legacyParseVersionCmdOutputForVersion(Pattern versionPattern, String cmdOutput) {
+        for (final String cmdLine : cmdOutput.split("\\R")) {
+            final Matcher matcher = versionPattern.matcher(cmdLine);
+            if (matcher.matches()) {
+                final int gc = matcher.groupCount();
+                final StringBuilder result = new StringBuilder();
+                for (int g = 1; g <= gc; g++) {
+                    final String group = matcher.group(g);
+                    if (group != null) {
+                        result.append(group);
+                    }
+                }
+                return result.toString();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,94 @@
+package io.jenkins.plugins.extratoolinstallers.installers;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** Unit test for the {@link VersionRange} and {@link Version} classes. */
+class VersionRangeTest {
+
+    @Test
+    void compareToGivenPreReleaseQualifierThenRanksBelowRelease() {
+        // Given
+        final String[] versionsInOrder = { "1.2", "1.2.3-alpha", "1.2.3-rc1", "1.2.3-rc2", "1.2.3", "1.2.3-4",
+                "1.2.3A", "1.2.4-beta", "1.10" };
+
+        for (int i = 0; i < versionsInOrder.length; i++) {
+            for (int j = 0; j < versionsInOrder.length; j++) {
+                // When
+                final int actual = Version.parse(versionsInOrder[i]).compareTo(Version.parse(versionsInOrder[j]));
+
+                // Then
+                assertThat("Compare " + versionsInOrder[i] + " to " + versionsInOrder[j], Integer.signum(actual),
+                        equalTo(Integer.compare(i, j)));
+            }
+        }
+    }
+
+    @Test
+    void checkGivenIntervalThenHonoursInclusivity() {
+        // Given
+        final VersionRange instance = VersionRange.parse("[1.8,11)");
+
+        // When/Then
+        assertThat(instance.check(Version.parse("1.7.9")), equalTo(-1));
+        assertThat(instance.check(Version.parse("1.8")), equalTo(0));
+        assertThat(instance.check(Version.parse("10.0.2")), equalTo(0));
+        assertThat(instance.check(Version.parse("11")), equalTo(1));
+        assertThat(instance.check(Version.parse("11.0.1")), equalTo(1));
+    }
+
+    @Test
+    void checkGivenOpenEndedIntervalThenHasNoLowerBound() {
+        // Given
+        final VersionRange instance = VersionRange.parse("(,11]");
+
+        // When/Then
+        assertThat(instance.check(Version.parse("0.1")), equalTo(0));
+        assertThat(instance.check(Version.parse("11")), equalTo(0));
+        assertThat(instance.check(Version.parse("11.0")), equalTo(1));
+    }
+
+    @Test
+    void checkGivenExactVersionThenOnlyAcceptsThat() {
+        // Given
+        final VersionRange instance = VersionRange.parse("[1.8]");
+
+        // When/Then
+        assertThat(instance.check(Version.parse("1.7")), equalTo(-1));
+        assertThat(instance.check(Version.parse("1.8")), equalTo(0));
+        assertThat(instance.check(Version.parse("1.8.0")), equalTo(1));
+    }
+
+    @Test
+    void parseGivenTildeThenAcceptsUpToNextMinorVersion() {
+        // When/Then
+        assertThat(VersionRange.parse("~1.2").toString(), equalTo("[1.2,1.3)"));
+        assertThat(VersionRange.parse("~1.2.3").toString(), equalTo("[1.2.3,1.3)"));
+        assertThat(VersionRange.parse("~1").toString(), equalTo("[1,2)"));
+        assertThat(VersionRange.parse(" 1.8 ").toString(), equalTo("[1.8,)"));
+    }
+
+    @Test
+    void parseGivenInvalidSpecThenThrows() {
+        // When/Then
+        for (final String spec : new String[] { "", "[1.2", "(1.2)", "[1,2,3]", "[2,1]", "~", "~A" }) {
+            assertThrows(IllegalArgumentException.class, () -> VersionRange.parse(spec), spec);
+        }
+    }
+
+    @Test
+    void intersectGivenOverlappingRangesThenKeepsTightestBounds() {
+        // Given
+        final VersionRange a = VersionRange.between("1.0", "2.0");
+        final VersionRange b = VersionRange.parse("(1.0,3)");
+
+        // When
+        final VersionRange actual = a.intersect(b);
+
+        // Then
+        assertThat(actual.toString(), equalTo("(1.0,2.0]"));
+    }
+}